@@ -11,6 +11,7 @@ import java.util.stream.IntStream;
 
 import lombok.Getter;
 import sampling.RandomSampler;
+import tools.data.BinaryDataset;
 import tools.data.Dataset;
 import tools.functions.singlevariate.FunctionParameters;
 import tools.functions.singlevariate.LinearScoreFunction;
@@ -157,7 +158,7 @@ public class ExperimentActiveLearning {
                 for (File file : files) {
                     // Only consider files with a .dat extension
                     if (file.isFile() && file.getName().endsWith(".dat")) {
-                        Dataset dataset = new Dataset(file.getName(), folderPath, getClassItems(datasetName));
+                        Dataset dataset = BinaryDataset.read(file.getName(), folderPath, getClassItems(datasetName));
                         datasets.add(dataset);
                     }
                 }
@@ -11,6 +11,7 @@ import java.util.stream.IntStream;
 
 import lombok.Getter;
 import sampling.RandomSampler;
+import tools.data.BinaryDataset;
 import tools.data.Dataset;
 import tools.functions.singlevariate.FunctionParameters;
 import tools.functions.singlevariate.LinearScoreFunction;
@@ -137,8 +138,8 @@ public class ExperimentActiveNormalization {
 
             if (files != null) {
                 for (File file : files) {
-                    if (file.isFile()) {
-                        Dataset dataset = new Dataset(file.getName(), folderPath, getClassItems(datasetName));
+                    if (file.isFile() && file.getName().endsWith(".dat")) {
+                        Dataset dataset = BinaryDataset.read(file.getName(), folderPath, getClassItems(datasetName));
                         datasets.add(dataset);
                     }
                 }
@@ -11,6 +11,7 @@ import java.util.List;
 import java.util.Set;
 
 import tools.alternatives.IAlternative;
+import tools.data.BinaryDataset;
 import tools.data.Dataset;
 import tools.functions.singlevariate.ISinglevariateFunction;
 import tools.functions.singlevariate.LinearScoreFunction;
@@ -22,6 +23,7 @@ import tools.utils.RandomUtil;
 import tools.functions.multivariate.PairwiseUncertainty;
 import tools.functions.multivariate.outRankingCertainties.ScoreDifference;
 import tools.rules.DecisionRule;
+import tools.rules.RuleKeySet;
 
 public class ExperimentBaselines {
 
@@ -36,7 +38,7 @@ public class ExperimentBaselines {
 
             String expDir = "src/test/resources/";
             Set<String> consequents = new HashSet<>(Arrays.asList("positive", "negative", "class", "28", "29"));
-            Dataset dataset = new Dataset(filenamePath(expDir, FILENAME), expDir, consequents);
+            Dataset dataset = BinaryDataset.read(filenamePath(expDir, FILENAME), expDir, consequents);
             
             if (dataset.getNbTransactions() == 0) return;
             System.out.println("Dataset chargé : " + dataset.getNbTransactions());
@@ -210,9 +212,9 @@ public class ExperimentBaselines {
     private static List<DecisionRule> generateTestSet(Dataset dataset) {
         List<DecisionRule> raw = dataset.getRandomValidRules(400, 0.1, MEASURES);
         List<DecisionRule> unique = new ArrayList<>();
+        RuleKeySet seen = new RuleKeySet(raw.size());
         for(DecisionRule r : raw) {
-            boolean ex = false; for(DecisionRule u : unique) if(u.equals(r)) ex = true;
-            if(!ex) unique.add(r);
+            if(seen.add(r.getKey())) unique.add(r);
             if(unique.size() >= 200) break;
         }
         return unique;
@@ -9,6 +9,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import tools.data.BinaryDataset;
 import tools.data.Dataset;
 import tools.functions.singlevariate.FunctionParameters;
 import tools.functions.singlevariate.ISinglevariateFunction;
@@ -37,7 +38,7 @@ public class ExperimentNoisyLETRID {
             String filename = "tictactoe.dat";
             Set<String> consequents = new HashSet<>(Arrays.asList("28", "29", "positive", "negative", "class"));
             
-            Dataset dataset = new Dataset(filename, expDir, consequents);
+            Dataset dataset = BinaryDataset.read(filename, expDir, consequents);
             System.out.println("Dataset chargé. Transactions : " + dataset.getNbTransactions());
             
             if (dataset.getNbTransactions() == 0) return;
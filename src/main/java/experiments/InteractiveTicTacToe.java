@@ -7,13 +7,16 @@ import static tools.rules.RuleMeasures.cosine;
 import static tools.rules.RuleMeasures.kruskal;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import sampling.ISampler;
 import sampling.SMAS;
+import tools.data.BinaryDataset;
 import tools.data.Dataset;
+import tools.data.DatasetView;
 import tools.functions.singlevariate.FunctionParameters;
 import tools.functions.singlevariate.ISinglevariateFunction;
 import tools.functions.singlevariate.LinearScoreFunction;
@@ -59,26 +62,14 @@ public class InteractiveTicTacToe {
      */
     private List<Dataset[]> cutDatasetIntoKFolds(Dataset dataset, double trainTestRatio) {
         List<Dataset[]> datasets = new ArrayList<>();
-        String[][] transactionalDataset = dataset.getTransactions();
-        int size = transactionalDataset.length;
-        int[][] indexOfTransactionsPerFold = random.kFolds(k, size);
+        // Views select rows, which are fewer than the transactions of a deduplicated dataset
+        int[][] indexOfTransactionsPerFold = random.kFolds(k, dataset.getNbRows());
 
         for (int[] foldIndices : indexOfTransactionsPerFold) {
-            List<String[]> trainTransactions = new ArrayList<>();
-            List<String[]> testTransactions = new ArrayList<>();
             int trainThreshold = (int) (foldIndices.length * trainTestRatio);
-
-            for (int i = 0; i < trainThreshold; i++) {
-                trainTransactions.add(transactionalDataset[i]);
-            }
-            for (int i = trainThreshold; i < foldIndices.length; i++) {
-                testTransactions.add(transactionalDataset[foldIndices[i]]);
-            }
-
-            Dataset trainDataset = new Dataset(trainTransactions.toArray(new String[0][0]),
-                    dataset.getConsequentItemsSet());
-            Dataset testDataset = new Dataset(testTransactions.toArray(new String[0][0]),
-                    dataset.getConsequentItemsSet());
+            Dataset trainDataset = DatasetView.of(dataset, Arrays.copyOfRange(foldIndices, 0, trainThreshold));
+            Dataset testDataset = DatasetView.of(dataset,
+                    Arrays.copyOfRange(foldIndices, trainThreshold, foldIndices.length));
             datasets.add(new Dataset[] { trainDataset, testDataset });
         }
         return datasets;
@@ -112,7 +103,7 @@ public class InteractiveTicTacToe {
         classItemValues.add("28");
         classItemValues.add("29");
 
-        Dataset dataset = new Dataset("tictactoe.dat", datasetPath, classItemValues);
+        Dataset dataset = BinaryDataset.read("tictactoe.dat", datasetPath, classItemValues);
 
         List<Dataset[]> fold_datasets = cutDatasetIntoKFolds(dataset, trainTestRatio);
 
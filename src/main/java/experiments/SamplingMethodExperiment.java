@@ -9,8 +9,10 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -22,10 +24,13 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import sampling.BatchSampler;
+import sampling.EarlyStopping;
+import sampling.ReplicaExchangeSMAS;
 import sampling.SMAS;
 import sampling.UnrestrictedSampler;
 import sampling.Sampler;
 import tools.alternatives.IAlternative;
+import tools.data.BinaryDataset;
 import tools.data.Dataset;
 import tools.functions.multivariate.CertaintyFunction;
 import tools.functions.multivariate.outRankingCertainties.BradleyTerry;
@@ -35,8 +40,10 @@ import tools.functions.singlevariate.ISinglevariateFunction;
 import tools.functions.singlevariate.OWA.OWALexmin;
 import tools.normalization.Normalizer.NormalizationMethod;
 import tools.rules.DecisionRule;
+import tools.rules.MeasureCache;
 import tools.utils.AlternativeUtil;
 import tools.utils.RuleUtil;
+import tools.utils.statistics.SamplingStatistics;
 
 public class SamplingMethodExperiment {
 
@@ -46,6 +53,8 @@ public class SamplingMethodExperiment {
 
     private static String dataDirectory = "data/folds/";
 
+    private static double[] temperatures = ReplicaExchangeSMAS.geometricLadder(4, 8);
+
     private static ISinglevariateFunction owa_score_function = new OWALexmin(0.01, allMeasureNames.length);
 
     /**
@@ -69,6 +78,7 @@ public class SamplingMethodExperiment {
                 maxIterations);
         smas.setScoringFunction(scoringFunction);
         smas.setNormalizationTechnique(NormalizationMethod.NO_NORMALIZATION);
+        smas.setEarlyStopping(new EarlyStopping());
         return smas;
     }
 
@@ -79,6 +89,7 @@ public class SamplingMethodExperiment {
                 maxIterations);
         BatchSampler.setScoringFunction(scoringFunction);
         BatchSampler.setNormalizationTechnique(NormalizationMethod.NO_NORMALIZATION);
+        BatchSampler.setEarlyStopping(new EarlyStopping());
         return BatchSampler;
     }
 
@@ -159,6 +170,10 @@ public class SamplingMethodExperiment {
         processSamplingForCertainties(dataset, scoreFunction, measureNames, datasetName, foldIdx, samplingIterations,
                 outputDirectory);
 
+        // Process tempered SMAS sampling
+        processTemperedSamplingForCertainties(dataset, scoreFunction, measureNames, datasetName, foldIdx,
+                samplingIterations, outputDirectory);
+
         // Process Unrestricted Sampler
         // processUnrestrictedSampling(dataset, scoreFunction, datasetName, foldIdx,
         // samplingIterations, outputDirectory,
@@ -185,6 +200,42 @@ public class SamplingMethodExperiment {
             // Process the results after sampling
             String filename = createFileName(datasetName, foldIdx, scoreFunction, sampler, certaintyFunction);
             List<Double> approxScores = computeApproxScores(sample, scoreFunction);
+            reportConvergence(filename, sampler.getStatistics());
+
+            // Write the results to CSV
+            writeSampleToCSV(sample, approxScores, filename, samplingIterations, outputDirectory);
+        }
+    }
+
+    /**
+     * Runs SMAS with replica exchange, the iterations being shared by the
+     * replicas.
+     */
+    private static void processTemperedSamplingForCertainties(Dataset dataset, ISinglevariateFunction scoreFunction,
+            String[] measureNames, String datasetName, int foldIdx, int samplingIterations, String outputDirectory) {
+
+        int replicaIterations = Math.max(1, samplingIterations / temperatures.length);
+        int nbCertainties = createOutRankingCertainties(scoreFunction).length;
+        for (int k = 0; k < nbCertainties; k++) {
+            final int certaintyIdx = k;
+            // Each replica has its own certainty function, bound to its chain
+            ReplicaExchangeSMAS sampler = new ReplicaExchangeSMAS(
+                    c -> createSMAS(replicaIterations, dataset,
+                            createOutRankingCertainties(scoreFunction)[certaintyIdx], scoreFunction, measureNames,
+                            0.01d),
+                    temperatures, foldIdx, samplingIterations);
+            sampler.setEarlyStopping(new EarlyStopping());
+
+            // Run the sampling with a timeout
+            List<DecisionRule> sample = executeSamplingWithTimeout(sampler, 30);
+            System.out.println(sampler);
+
+            // Process the results after sampling
+            String filename = datasetName + "_" + foldIdx + "_" + scoreFunction.getName() + "_"
+                    + samplingIterations + "_" + createOutRankingCertainties(scoreFunction)[k].getName()
+                    + "_ReplicaExchange";
+            List<Double> approxScores = computeApproxScores(sample, scoreFunction);
+            reportConvergence(filename, sampler.getStatistics());
 
             // Write the results to CSV
             writeSampleToCSV(sample, approxScores, filename, samplingIterations, outputDirectory);
@@ -204,6 +255,7 @@ public class SamplingMethodExperiment {
                 + samplingIterations + "_UnrestrictedSampling";
 
         List<Double> approxScores = computeValidRuleScores(unrestrictedSample, dataset, measureNames, scoreFunction);
+        reportMeasureCaches(dataset);
 
         // Write the results to CSV
         writeSampleToCSV(unrestrictedSample, approxScores, filename, samplingIterations, outputDirectory);
@@ -225,12 +277,30 @@ public class SamplingMethodExperiment {
         String filename = datasetName + "_" + foldIdx + "_" + scoreFunction.getName() + "_"
                 + samplingIterations + "_BatchSampling";
         List<Double> approxScores = computeApproxScores(sample, scoreFunction);
+        reportConvergence(filename, sampler.getStatistics());
+        reportMeasureCaches(dataset);
 
         // Write the results to CSV
         writeSampleToCSV(sample, approxScores, filename, samplingIterations, outputDirectory);
         // }
     }
 
+    private static void reportConvergence(String samplingName, SamplingStatistics statistics) {
+        if (statistics == null) {
+            // The sampling timed out or failed
+            return;
+        }
+        int convergenceIteration = statistics.getConvergenceIteration();
+        System.out.println(samplingName + (convergenceIteration < 0 ? ": ran all the iterations"
+                : ": converged after " + convergenceIteration + " iterations"));
+    }
+
+    private static void reportMeasureCaches(Dataset dataset) {
+        for (MeasureCache cache : dataset.getMeasureCaches()) {
+            System.out.println(cache);
+        }
+    }
+
     private static List<DecisionRule> executeSamplingWithTimeout(Sampler sampler, int timeoutInMinutes) {
         ExecutorService executor = Executors.newSingleThreadExecutor();
         Future<List<DecisionRule>> future = executor.submit(() -> sampler.sample());
@@ -306,8 +376,8 @@ public class SamplingMethodExperiment {
 
             if (files != null) {
                 for (File file : files) {
-                    if (file.isFile()) {
-                        Dataset dataset = new Dataset(file.getName(), folderPath, getClassItems(datasetName));
+                    if (file.isFile() && file.getName().endsWith(".dat")) {
+                        Dataset dataset = BinaryDataset.read(file.getName(), folderPath, getClassItems(datasetName));
                         datasets.add(dataset);
                     }
                 }
@@ -331,8 +401,8 @@ public class SamplingMethodExperiment {
 
             if (files != null) {
                 for (File file : files) {
-                    if (file.isFile()) {
-                        Dataset dataset = new Dataset(file.getName(), folderPath, getClassItems(datasetName));
+                    if (file.isFile() && file.getName().endsWith(".dat")) {
+                        Dataset dataset = BinaryDataset.read(file.getName(), folderPath, getClassItems(datasetName));
                         datasets.add(dataset);
                     }
                 }
@@ -349,12 +419,21 @@ public class SamplingMethodExperiment {
     public static void runOnFolds() {
         ExecutorService executor = Executors.newFixedThreadPool(10);
         try {
+            // Each fold is loaded once and shared by all the iteration budgets
+            Map<String, List<Dataset>> testDatasetsByName = new HashMap<>();
+            for (String datasetName : datasetNames) {
+                try {
+                    testDatasetsByName.put(datasetName, readDatasetsFromFold(datasetName, "/test/"));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
             for (int samplingIterations = 1; samplingIterations < 100_001; samplingIterations *= 10) {
                 for (String datasetName : datasetNames) {
                     final int samplingIterationsFinal = samplingIterations;
                     System.out.println("Dataset: " + datasetName + " - Iterations: " + samplingIterations);
                     try {
-                        List<Dataset> testDatasets = readDatasetsFromFold(datasetName, "/test/");
+                        List<Dataset> testDatasets = testDatasetsByName.getOrDefault(datasetName, new ArrayList<>());
 
                         IntStream.range(0, testDatasets.size()).parallel().forEach(foldIdx -> {
                             Dataset testDataset = testDatasets.get(foldIdx);
@@ -384,7 +463,8 @@ public class SamplingMethodExperiment {
         // Process dataset names in parallel
         datasetNames.parallelStream().forEach(datasetName -> {
             try {
-                Dataset dataset = new Dataset(datasetName + ".dat", "data/dat-files/", getClassItems(datasetName));
+                Dataset dataset = BinaryDataset.read(datasetName + ".dat", "data/dat-files/",
+                        getClassItems(datasetName));
 
                 // Process sampling iterations in sequential order, but each dataset runs in
                 // parallel
@@ -2,7 +2,6 @@ package sampling;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -10,6 +9,7 @@ import java.util.Set;
 import tools.data.Dataset;
 import tools.functions.singlevariate.ISinglevariateFunction;
 import tools.rules.DecisionRule;
+import tools.utils.RandomUtil;
 
 public class BatchSampler extends SMAS {
 
@@ -24,45 +24,33 @@ public class BatchSampler extends SMAS {
         // Random skip to half the rule
         skipToHalf(rule);
 
-        for (int i = 0; i < antecedentShuffle.length; ++i) {
-            updateNormalization(rule);
-
-            double originalScore = getValidRuleScore(rule);
-
-            rule.addToX(antecedentItems[antecedentShuffle[i]]);
-
-            double modifiedScore = getValidRuleScore(rule);
-
-            if (isCertaintyHighEnough(modifiedScore, originalScore)) {
-                break;
-            }
-
-            rule.removeFromX(antecedentItems[antecedentShuffle[i]]);
-        }
+        super.processAntecedents(rule, antecedentItems, antecedentShuffle);
     }
 
     private void skipToHalf(DecisionRule rule) {
-        Set<String> halfAntecedent = splitSet(rule.getItemsInX()).get(0);
+        Set<String> halfAntecedent = splitSet(rule.getItemsInX(), getRandom()).get(0);
 
         double originalScore = getValidRuleScore(rule);
 
-        for (String item : halfAntecedent)
-            rule.removeFromX(item);
+        rule.mutate(editor -> halfAntecedent.forEach(editor::removeFromX));
 
         double modifiedScore = getValidRuleScore(rule);
 
         if (!isCertaintyHighEnough(modifiedScore, originalScore)) {
-            for (String item : halfAntecedent)
-                rule.addToX(item);
+            rule.mutate(editor -> halfAntecedent.forEach(editor::addToX));
         }
     }
 
     public static <T> List<Set<T>> splitSet(Set<T> originalSet) {
+        return splitSet(originalSet, new RandomUtil());
+    }
+
+    public static <T> List<Set<T>> splitSet(Set<T> originalSet, RandomUtil random) {
         // Convert the set to a list
         List<T> list = new ArrayList<>(originalSet);
 
         // Shuffle the list to randomize the order
-        Collections.shuffle(list);
+        random.shuffle(list);
 
         // Calculate the size of each subset
         int size = list.size() / 2;
@@ -0,0 +1,50 @@
+package sampling;
+
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+import tools.utils.statistics.ConvergenceDiagnostics;
+
+/**
+ * Early-stop policy of the samplers: every {@link #getCheckInterval()}
+ * iterations past {@link #getMinIterations()}, the run stops once the
+ * split-R-hat of the score histories is low enough, their effective sample
+ * size large enough, and the top rules stable enough (see
+ * {@link ConvergenceDiagnostics}).
+ *
+ * A chain stuck on one rule has a constant history, which passes the R-hat
+ * and sample size thresholds: the minimum number of iterations and the
+ * stability of the top rules guard against stopping it too early.
+ */
+public class EarlyStopping {
+
+    /** Number of iterations between two checks. */
+    private @Getter @Setter int checkInterval = 100;
+    /** Number of iterations before the first check. */
+    private @Getter @Setter int minIterations = 1000;
+    /** Maximum split-R-hat of the score histories. */
+    private @Getter @Setter double maxRHat = 1.05;
+    /** Minimum effective sample size of the score histories, summed over the chains. */
+    private @Getter @Setter double minEffectiveSampleSize = 400;
+    /** Minimum share of the top rules already top rules at the previous check. */
+    private @Getter @Setter double minTopKStability = 1;
+
+    /**
+     * @param histories     The score histories of the chains since the start
+     *                      of the run.
+     * @param topKStability The stability of the top rules since the previous
+     *                      check.
+     * @return Whether the run has converged.
+     */
+    public boolean isConverged(List<double[]> histories, double topKStability) {
+        if (topKStability < minTopKStability) {
+            return false;
+        }
+        double rHat = ConvergenceDiagnostics.splitRHat(histories);
+        if (!(rHat <= maxRHat)) {
+            return false;
+        }
+        return ConvergenceDiagnostics.effectiveSampleSize(histories) >= minEffectiveSampleSize;
+    }
+}
@@ -0,0 +1,124 @@
+package sampling;
+
+import java.util.Arrays;
+
+import tools.data.Dataset;
+import tools.functions.multivariate.CertaintyFunction;
+import tools.functions.multivariate.outRankingCertainties.ScoreDifference;
+import tools.functions.singlevariate.ISinglevariateFunction;
+import tools.rules.DecisionRule;
+import tools.rules.RuleMoves;
+import tools.utils.AliasTable;
+
+/**
+ * SMAS with heat-bath steps: instead of proposing the items in a random order
+ * until one passes a Bernoulli test, each step evaluates all the neighbours of
+ * the rule at once (adding an antecedent item, removing one, or replacing the
+ * consequent, see {@link RuleMoves}), and draws the next rule among them and
+ * the current one with probability proportional to exp(score / temperature),
+ * from an {@link AliasTable}. Each step thus makes exactly one move, with no
+ * bias from the order of the items.
+ *
+ * The softmax is the full conditional of the Bradley-Terry acceptance; the
+ * out-ranking certainty of the sampler is not used by the steps.
+ */
+public class GibbsSMAS extends SMAS {
+
+    public GibbsSMAS(int maximumIterations, Dataset dataset, CertaintyFunction outRankingCertainty,
+            ISinglevariateFunction scoringFunction, String[] measureNames, double smoothCounts, int topK) {
+        super(maximumIterations, dataset, outRankingCertainty, scoringFunction, measureNames, smoothCounts, topK);
+    }
+
+    public GibbsSMAS(int maximumIterations, Dataset dataset, ISinglevariateFunction scoringFunction,
+            String[] measureNames, int topK) {
+        this(maximumIterations, dataset, new ScoreDifference(scoringFunction), scoringFunction, measureNames,
+                DEFAULT_SMOOTH_COUNTS, topK);
+    }
+
+    @Override
+    protected DecisionRule updateRule(DecisionRule rule) {
+        updateNormalization(rule);
+
+        RuleMoves[] moves = new RuleMoves[] {
+                rule.evaluateAdditions(candidateAdditions(rule)),
+                rule.evaluateRemovals(),
+                rule.evaluateConsequents(candidateConsequents(rule)) };
+        int nbMoves = 0;
+        for (RuleMoves group : moves) {
+            nbMoves += group.size();
+        }
+
+        // Scores of the current rule (index 0) and of the valid neighbours. The
+        // supports and measures of the neighbours were computed in batches by
+        // the moves; only the scoring function is applied one neighbour at a
+        // time, on the thread of the sampler, as it may keep state (e.g.
+        // MinGapsScoreFunction)
+        double[] scores = new double[1 + nbMoves];
+        boolean[] valid = new boolean[1 + nbMoves];
+        scores[0] = getValidRuleScore(rule);
+        valid[0] = true;
+        double maxScore = scores[0];
+        int index = 1;
+        for (RuleMoves group : moves) {
+            for (int i = 0; i < group.size(); i++, index++) {
+                if (group.isValid(i)) {
+                    valid[index] = true;
+                    scores[index] = getValidRuleScore(rule.neighbour(group, i));
+                    maxScore = Math.max(maxScore, scores[index]);
+                }
+            }
+        }
+
+        double[] weights = new double[scores.length];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = valid[i] ? Math.exp((scores[i] - maxScore) / temperature) : 0;
+        }
+        int chosen = new AliasTable(weights).sample(getRandom()) - 1;
+        for (RuleMoves group : moves) {
+            if (chosen < 0) {
+                break;
+            }
+            if (chosen < group.size()) {
+                rule.apply(group, chosen);
+                break;
+            }
+            chosen -= group.size();
+        }
+
+        return rule;
+    }
+
+    /**
+     * @return The ids of the antecedent items not in X that can appear with
+     *         the items of Z.
+     */
+    protected int[] candidateAdditions(DecisionRule rule) {
+        String[] items = getDataset().getAntecedentItemsArray();
+        int[] ids = getDataset().getAntecedentItemIds();
+        int[] candidates = new int[ids.length];
+        int n = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (!rule.getItemsInX().contains(items[i]) && canCoOccur(rule.getItemsInZ(), items[i])) {
+                candidates[n++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(candidates, n);
+    }
+
+    /**
+     * @return The ids of the consequent items other than Y that can appear
+     *         with the items of X.
+     */
+    protected int[] candidateConsequents(DecisionRule rule) {
+        String[] items = getDataset().getConsequentItemsArray();
+        int[] ids = getDataset().getConsequentItemIds();
+        int[] candidates = new int[ids.length];
+        int n = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (!items[i].equals(rule.getY()) && canCoOccur(rule.getItemsInX(), items[i])) {
+                candidates[n++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(candidates, n);
+    }
+}
@@ -0,0 +1,238 @@
+package sampling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import lombok.Getter;
+import lombok.Setter;
+import tools.rules.DecisionRule;
+import tools.rules.RuleKey;
+import tools.rules.RuleKeyMap;
+import tools.rules.RuleKeySet;
+import tools.utils.RandomUtil;
+import tools.utils.SamplingUtil;
+import tools.utils.statistics.ConvergenceDiagnostics;
+import tools.utils.statistics.SamplingStatistics;
+
+/**
+ * Runs several independent {@link SMAS} chains on an executor and merges their
+ * top rules into a global top-K.
+ *
+ * Each chain is built by a factory, so that chains share the dataset of the
+ * fold (and its cover and measure caches) but have their own rule, normalizer
+ * and, for stateful functions, scoring function. Chain c draws its random
+ * values from the c-th stream split from a master {@link SplittableRandom}
+ * seeded with {@link #getSeed()}. The chains run by segments of
+ * {@link #getMergeInterval()} iterations; between segments their top rules are
+ * merged in the order of the chains, each rule being ranked by the score its
+ * chain gives it. The sample thus only depends on the seed and the number of
+ * chains, not on the executor or the scheduling of the threads.
+ */
+public class ParallelSMAS implements Sampler {
+
+    private final IntFunction<? extends SMAS> chainFactory;
+    private final @Getter int nbChains;
+    private @Getter @Setter long seed;
+    private @Getter @Setter int topK;
+    private @Getter @Setter int mergeInterval = 100;
+    private @Setter Executor executor = ForkJoinPool.commonPool();
+    /**
+     * Policy ending the sample once the chains converged, checked at each
+     * merge (its check interval is not used), null to run all the iterations.
+     */
+    private @Getter @Setter EarlyStopping earlyStopping;
+    /** Iterations of each chain when the last sample converged, -1 if it did not stop early. */
+    private @Getter int convergenceIteration = -1;
+    /** Statistics of the last sample, null before the first one. */
+    private @Getter SamplingStatistics statistics;
+
+    /**
+     * @param chainFactory Builds the chain of a given index, with the number of
+     *                     iterations it runs.
+     * @param nbChains     The number of chains.
+     * @param seed         The master seed of the random streams of the chains.
+     * @param topK         The number of rules sampled.
+     */
+    public ParallelSMAS(IntFunction<? extends SMAS> chainFactory, int nbChains, long seed, int topK) {
+        if (nbChains <= 0) {
+            throw new IllegalArgumentException("The number of chains must be positive.");
+        }
+        this.chainFactory = chainFactory;
+        this.nbChains = nbChains;
+        this.seed = seed;
+        this.topK = topK;
+    }
+
+    @Override
+    public List<DecisionRule> sample() {
+        SplittableRandom master = new SplittableRandom(seed);
+        List<SMAS> chains = new ArrayList<>(nbChains);
+        for (int c = 0; c < nbChains; c++) {
+            SMAS chain = chainFactory.apply(c);
+            chain.setRandom(new RandomUtil(master.split()));
+            chains.add(chain);
+        }
+
+        SplittableRandom exchangeRandom = master.split();
+
+        runAll(chains, SMAS::start);
+        RuleKeyMap<Ranked> top = new RuleKeyMap<>();
+        RuleKeySet previousTop = new RuleKeySet();
+        convergenceIteration = -1;
+        int[] done = new int[nbChains];
+        boolean running = true;
+        while (running) {
+            running = false;
+            List<Runnable> segments = new ArrayList<>(nbChains);
+            for (int c = 0; c < nbChains; c++) {
+                SMAS chain = chains.get(c);
+                int iterations = Math.min(mergeInterval, chain.getMaximumIterations() - done[c]);
+                if (iterations > 0) {
+                    done[c] += iterations;
+                    segments.add(() -> chain.run(iterations));
+                    running = true;
+                }
+            }
+            runAll(segments);
+            merge(chains, top);
+            if (earlyStopping != null && running) {
+                List<RuleKey> topKeys = top.keys();
+                double stability = ConvergenceDiagnostics.topKStability(previousTop, topKeys);
+                previousTop = new RuleKeySet(topKeys.size());
+                topKeys.forEach(previousTop::add);
+                int iterations = Arrays.stream(done).max().getAsInt();
+                if (iterations >= earlyStopping.getMinIterations()
+                        && earlyStopping.isConverged(convergenceHistories(chains), stability)) {
+                    convergenceIteration = iterations;
+                    break;
+                }
+            }
+            if (hasRemainingIterations(chains, done)) {
+                exchange(chains, exchangeRandom);
+            }
+        }
+
+        // Expand the rules so they contain all the required data
+        List<DecisionRule> finalRules = new ArrayList<>();
+        Map<DecisionRule, Double> scores = new HashMap<>();
+        for (Ranked ranked : sorted(top)) {
+            ranked.rule.expandSimpleCopy(chains.get(ranked.chain).initialRule);
+            finalRules.add(ranked.rule);
+            scores.put(ranked.rule, ranked.score);
+        }
+        statistics = SamplingUtil.computeStatistics(finalRules, scores::get, convergenceIteration);
+        return finalRules;
+    }
+
+    private static boolean hasRemainingIterations(List<SMAS> chains, int[] done) {
+        for (int c = 0; c < chains.size(); c++) {
+            if (done[c] < chains.get(c).getMaximumIterations()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The score histories checked by the early-stop policy: those of
+     *         all the chains since their start.
+     */
+    protected List<double[]> convergenceHistories(List<SMAS> chains) {
+        List<double[]> histories = new ArrayList<>(chains.size());
+        for (SMAS chain : chains) {
+            histories.add(chain.getRunHistory());
+        }
+        return histories;
+    }
+
+    /**
+     * Called between two segments, once the chains are merged, to let the
+     * chains interact. Does nothing by default.
+     *
+     * @param chains The chains, in their order.
+     * @param random The stream split from the master one after the streams of
+     *               the chains.
+     */
+    protected void exchange(List<SMAS> chains, SplittableRandom random) {
+    }
+
+    private void runAll(List<SMAS> chains, Consumer<SMAS> task) {
+        List<Runnable> tasks = new ArrayList<>(chains.size());
+        for (SMAS chain : chains) {
+            tasks.add(() -> task.accept(chain));
+        }
+        runAll(tasks);
+    }
+
+    /**
+     * Runs tasks on the executor and waits for all of them.
+     */
+    private void runAll(List<Runnable> tasks) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[tasks.size()];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = CompletableFuture.runAsync(tasks.get(i), executor);
+        }
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Merges the top rules of the chains, in their order, into the global top,
+     * cut down to the top-K.
+     */
+    private void merge(List<SMAS> chains, RuleKeyMap<Ranked> top) {
+        for (int c = 0; c < chains.size(); c++) {
+            SMAS chain = chains.get(c);
+            for (DecisionRule rule : chain.getTopRules()) {
+                double score = chain.getValidRuleScore(rule);
+                Ranked ranked = top.get(rule.getKey());
+                if (ranked == null || score > ranked.score) {
+                    top.put(rule.getKey(), new Ranked(rule, score, c));
+                }
+            }
+        }
+        List<Ranked> ranking = sorted(top);
+        for (int i = topK; i < ranking.size(); i++) {
+            top.remove(ranking.get(i).rule.getKey());
+        }
+    }
+
+    private static List<Ranked> sorted(RuleKeyMap<Ranked> top) {
+        List<Ranked> ranking = top.values();
+        ranking.sort(Comparator.comparingDouble((Ranked ranked) -> ranked.score).reversed()
+                .thenComparing(ranked -> ranked.rule.getKey()));
+        return ranking;
+    }
+
+    /**
+     * Top rule of a chain, with the score given by the chain.
+     */
+    private static final class Ranked {
+        final DecisionRule rule;
+        final double score;
+        final int chain;
+
+        Ranked(DecisionRule rule, double score, int chain) {
+            this.rule = rule;
+            this.score = score;
+            this.chain = chain;
+        }
+    }
+}
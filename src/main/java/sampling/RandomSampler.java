@@ -6,11 +6,8 @@ import static java.lang.Math.min;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -19,9 +16,11 @@ import com.google.gson.Gson;
 
 import lombok.Getter;
 import lombok.Setter;
-import tools.alternatives.IAlternative;
 import tools.data.Dataset;
+import tools.data.ItemDictionary;
 import tools.rules.DecisionRule;
+import tools.rules.RuleKeyMap;
+import tools.rules.RuleSnapshot;
 import tools.utils.RandomUtil;
 import tools.utils.RuleUtil;
 import tools.utils.SetUtil;
@@ -71,11 +70,30 @@ public class RandomSampler {
      */
     public Set<DecisionRule> sample(int numberOfRules, Set<String> consequentItems,
             Set<String> antecedentItems, int maxAntecedentSize) {
+        Set<DecisionRule> rules = new HashSet<>();
+        for (RuleSnapshot snapshot : sampleSnapshots(numberOfRules, consequentItems, antecedentItems,
+                maxAntecedentSize)) {
+            rules.add(snapshot.toRule(dataset, maxSizeX, maxSizeZ, smoothCounts, measureNames));
+        }
+        return rules;
+    }
 
-        Map<IAlternative, DecisionRule> rulesSample = new HashMap<>();
+    /**
+     * Samples a set of valid decision rules, recorded as snapshots.
+     *
+     * @param numberOfRules     The number of rules to sample.
+     * @param consequentItems   Available consequent items.
+     * @param antecedentItems   Available antecedent items.
+     * @param maxAntecedentSize Maximum size for the antecedent.
+     * @return The snapshots of the distinct sampled rules.
+     */
+    public List<RuleSnapshot> sampleSnapshots(int numberOfRules, Set<String> consequentItems,
+            Set<String> antecedentItems, int maxAntecedentSize) {
+
+        RuleKeyMap<RuleSnapshot> rulesSample = new RuleKeyMap<>(numberOfRules);
 
         // Sample rules until the desired number of rules is reached
-        while (rulesSample.keySet().size() < numberOfRules) {
+        while (rulesSample.size() < numberOfRules) {
             DecisionRule rule = new DecisionRule(new HashSet<>(), "", dataset, maxSizeX, maxSizeZ, smoothCounts,
                     measureNames);
 
@@ -85,11 +103,13 @@ public class RandomSampler {
             // Sample antecedent items
             sampleAntecedents(rule, antecedentItems, maxAntecedentSize);
 
-            // Add the sampled rule to the set
-            rulesSample.put(rule.getAlternative(),RuleUtil.deepCopy(rule));
+            // Record the sampled rule, unless it was already sampled
+            if (!rulesSample.containsKey(rule.getKey())) {
+                rulesSample.put(rule.getKey(), RuleSnapshot.of(rule));
+            }
         }
 
-        return new HashSet<DecisionRule>(rulesSample.values());
+        return rulesSample.values();
     }
 
     /**
@@ -156,16 +176,26 @@ public class RandomSampler {
      */
     private List<String> computeValidValues(DecisionRule rule, Set<String> values, String type) {
         List<String> validValues = new ArrayList<>();
-        DecisionRule ruleCopy = RuleUtil.deepCopy(rule);
+        Set<String> otherItems = "antecedent".equals(type) ? rule.getItemsInZ() : rule.getItemsInX();
+        String lastClass = rule.getY();
 
         for (String value : values) {
-            RuleUtil.addItemToRule(ruleCopy, value, type);
+            // Values that never appear with the items of the rule give a support of 0
+            if (!dataset.canCoOccur(otherItems, value)) {
+                continue;
+            }
+            if ("antecedent".equals(type) && rule.getItemsInX().contains(value)) {
+                continue;
+            }
+            // The rule itself is changed and restored: undoing the last change
+            // from the journal of the rule performs no set operation
+            RuleUtil.addItemToRule(rule, value, type);
 
-            if (RuleUtil.isValid(ruleCopy)) {
+            if (RuleUtil.isValid(rule)) {
                 validValues.add(value);
             }
 
-            RuleUtil.removeItemFromRule(ruleCopy, value, type, rule.getY());
+            RuleUtil.removeItemFromRule(rule, value, type, lastClass);
         }
 
         return validValues;
@@ -217,9 +247,21 @@ public class RandomSampler {
      * @return Maximum size for the antecedent.
      */
     private int calculateMaxAntecedentSize() {
-        return (int) Math.round(Arrays.stream(dataset.getTransactions())
-                .mapToDouble(row -> Arrays.stream(row).mapToInt(String::length).average().orElse(0))
-                .average().orElse(0));
+        // Read from the encoded rows, each one counted once per copy
+        ItemDictionary dictionary = dataset.getDictionary();
+        double sum = 0;
+        for (int row = 0; row < dataset.getNbRows(); row++) {
+            int[] transaction = dataset.getTransaction(row);
+            if (transaction.length == 0) {
+                continue;
+            }
+            double length = 0;
+            for (int item : transaction) {
+                length += dictionary.getItem(item).length();
+            }
+            sum += dataset.getWeight(row) * length / transaction.length;
+        }
+        return dataset.getNbTransactions() == 0 ? 0 : (int) Math.round(sum / dataset.getNbTransactions());
     }
 
     /**
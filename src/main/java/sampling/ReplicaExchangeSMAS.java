@@ -0,0 +1,159 @@
+package sampling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+
+import tools.rules.DecisionRule;
+
+/**
+ * Parallel tempering of {@link SMAS}: replica c runs at the c-th temperature of
+ * a ladder (see {@link SMAS#getTemperature()}), and the replicas of
+ * neighbouring temperatures swap their rules between segments, so that rules
+ * found by hot replicas, which move freely, reach the cold ones, which
+ * climb towards high scores.
+ *
+ * At each exchange, the pairs (c, c + 1) with c even, then with c odd on the
+ * next exchange, propose to swap their rules. Taking the scores of the rules
+ * as negative energies (which is the distribution of the Bradley-Terry
+ * acceptance), the swap is accepted with probability
+ * min(1, exp((1 / T_c - 1 / T_c+1) * (f(r_c+1) - f(r_c)))), both rules being
+ * scored by the colder replica.
+ *
+ * The top rules of all the replicas are merged as by {@link ParallelSMAS}, and
+ * the early-stop policy only checks the coldest replicas.
+ */
+public class ReplicaExchangeSMAS extends ParallelSMAS {
+
+    private final double[] temperatures;
+    private final long[] swapAttempts;
+    private final long[] swapAcceptances;
+    private int parity;
+
+    /**
+     * @param chainFactory Builds the replica of a given index.
+     * @param temperatures The temperatures of the replicas, neighbours on the
+     *                     ladder being swapped.
+     * @param seed         The master seed of the random streams.
+     * @param topK         The number of rules sampled.
+     */
+    public ReplicaExchangeSMAS(IntFunction<? extends SMAS> chainFactory, double[] temperatures, long seed, int topK) {
+        super(c -> {
+            SMAS chain = chainFactory.apply(c);
+            chain.setTemperature(temperatures[c]);
+            return chain;
+        }, checkTemperatures(temperatures).length, seed, topK);
+        this.temperatures = temperatures.clone();
+        this.swapAttempts = new long[Math.max(0, temperatures.length - 1)];
+        this.swapAcceptances = new long[swapAttempts.length];
+    }
+
+    private static double[] checkTemperatures(double[] temperatures) {
+        for (double temperature : temperatures) {
+            if (!(temperature > 0)) {
+                throw new IllegalArgumentException("The temperatures must be positive.");
+            }
+        }
+        return temperatures;
+    }
+
+    /**
+     * @return A ladder of temperatures from 1 to maxTemperature, in
+     *         geometric progression.
+     */
+    public static double[] geometricLadder(int nbReplicas, double maxTemperature) {
+        double[] ladder = new double[nbReplicas];
+        for (int c = 0; c < nbReplicas; c++) {
+            ladder[c] = nbReplicas == 1 ? 1 : Math.pow(maxTemperature, (double) c / (nbReplicas - 1));
+        }
+        return ladder;
+    }
+
+    @Override
+    public List<DecisionRule> sample() {
+        Arrays.fill(swapAttempts, 0);
+        Arrays.fill(swapAcceptances, 0);
+        parity = 0;
+        return super.sample();
+    }
+
+    @Override
+    protected void exchange(List<SMAS> chains, SplittableRandom random) {
+        for (int c = parity; c + 1 < chains.size(); c += 2) {
+            SMAS cold = chains.get(c);
+            SMAS hot = chains.get(c + 1);
+            DecisionRule coldRule = cold.getRule();
+            DecisionRule hotRule = hot.getRule();
+
+            double delta = (1 / temperatures[c] - 1 / temperatures[c + 1])
+                    * (cold.getValidRuleScore(hotRule) - cold.getValidRuleScore(coldRule));
+            swapAttempts[c]++;
+            if (delta >= 0 || random.nextDouble() < Math.exp(delta)) {
+                swapAcceptances[c]++;
+                cold.setRule(hotRule);
+                hot.setRule(coldRule);
+            }
+        }
+        parity = 1 - parity;
+    }
+
+    /**
+     * @return The score histories of the replicas at the lowest temperature:
+     *         the hotter ones do not sample the same distribution.
+     */
+    @Override
+    protected List<double[]> convergenceHistories(List<SMAS> chains) {
+        double coldest = Arrays.stream(temperatures).min().getAsDouble();
+        List<double[]> histories = new ArrayList<>();
+        for (int c = 0; c < chains.size(); c++) {
+            if (temperatures[c] == coldest) {
+                histories.add(chains.get(c).getRunHistory());
+            }
+        }
+        return histories;
+    }
+
+    public double[] getTemperatures() {
+        return temperatures.clone();
+    }
+
+    /**
+     * @return The number of swaps proposed between replicas c and c + 1 during
+     *         the last sample.
+     */
+    public long getSwapAttempts(int c) {
+        return swapAttempts[c];
+    }
+
+    /**
+     * @return The number of swaps accepted between replicas c and c + 1 during
+     *         the last sample.
+     */
+    public long getSwapAcceptances(int c) {
+        return swapAcceptances[c];
+    }
+
+    /**
+     * @return The rate of accepted swaps between replicas c and c + 1 during
+     *         the last sample, 0 if none was proposed.
+     */
+    public double getSwapAcceptanceRate(int c) {
+        return swapAttempts[c] == 0 ? 0 : (double) swapAcceptances[c] / swapAttempts[c];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("ReplicaExchangeSMAS[temperatures=");
+        builder.append(Arrays.toString(temperatures)).append(", swapAcceptanceRates=[");
+        for (int c = 0; c < swapAttempts.length; c++) {
+            if (c > 0) {
+                builder.append(", ");
+            }
+            builder.append(String.format(Locale.ROOT, "%.3f", getSwapAcceptanceRate(c)));
+        }
+        return builder.append("]]").toString();
+    }
+}
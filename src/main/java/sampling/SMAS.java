@@ -1,8 +1,10 @@
 package sampling;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 import java.util.TreeSet;
 
 import lombok.Getter;
@@ -10,14 +12,21 @@ import lombok.Setter;
 import tools.alternatives.Alternative;
 import tools.alternatives.IAlternative;
 import tools.data.Dataset;
+import tools.data.ItemDictionary;
 import tools.functions.multivariate.CertaintyFunction;
 import tools.functions.multivariate.outRankingCertainties.ScoreDifference;
 import tools.functions.singlevariate.ISinglevariateFunction;
 import tools.normalization.Normalizer;
 import tools.normalization.Normalizer.NormalizationMethod;
 import tools.rules.DecisionRule;
+import tools.rules.RuleKey;
+import tools.rules.RuleMoves;
+import tools.rules.RuleKeySet;
 import tools.utils.RandomUtil;
 import tools.utils.RuleUtil;
+import tools.utils.SamplingUtil;
+import tools.utils.statistics.ConvergenceDiagnostics;
+import tools.utils.statistics.SamplingStatistics;
 
 public class SMAS implements ISampler {
     protected static final double DEFAULT_SMOOTH_COUNTS = 1e-6d;
@@ -31,10 +40,27 @@ public class SMAS implements ISampler {
     protected @Getter ISinglevariateFunction scoringFunction;
     protected @Getter @Setter String[] measureNames;
     protected @Getter @Setter double smoothCounts = 1e-6d;
-    protected @Getter RandomUtil random = new RandomUtil();
+    protected @Getter @Setter RandomUtil random = new RandomUtil();
     protected @Getter List<Double> scoreHistory = new ArrayList<>();
     protected @Getter @Setter Normalizer.NormalizationMethod normalizationTechnique = NormalizationMethod.MIN_MAX_SCALING;
     protected @Getter Normalizer normalizer = new Normalizer();
+    /**
+     * Temperature of the acceptance: the scores are divided by it before the
+     * out-ranking certainty is computed, so that hotter chains accept worse
+     * rules more often.
+     */
+    protected @Getter @Setter double temperature = 1;
+    /** Rule the current run started from, and keys of its top rules. */
+    protected DecisionRule initialRule;
+    protected RuleKeySet topKeys;
+    /** Index in the score history of the first score of the current run. */
+    protected int runStart;
+    /** Policy ending the runs once converged, null to run all the iterations. */
+    protected @Getter @Setter EarlyStopping earlyStopping;
+    /** Iteration at which the last run converged, -1 if it did not stop early. */
+    protected @Getter int convergenceIteration = -1;
+    /** Statistics of the last sample, null before the first one. */
+    protected @Getter SamplingStatistics statistics;
 
     public SMAS(int maximumIterations, Dataset dataset, CertaintyFunction outRankingCertainty,
             ISinglevariateFunction scoringFunction, String[] measureNames, double smoothCounts, int topK) {
@@ -45,8 +71,16 @@ public class SMAS implements ISampler {
         this.measureNames = measureNames;
         this.smoothCounts = smoothCounts;
         this.topK = topK;
-        this.topRules = new TreeSet<>(Comparator.comparingDouble(this::getValidRuleScore).reversed()
-                .thenComparingInt(System::identityHashCode));
+        this.topRules = newTopRules();
+    }
+
+    /**
+     * @return An empty set of top rules, best score first. Rules with the same
+     *         score are all kept, in the order of their keys.
+     */
+    protected TreeSet<DecisionRule> newTopRules() {
+        return new TreeSet<>(Comparator.comparingDouble(this::getValidRuleScore).reversed()
+                .thenComparing(DecisionRule::getKey));
     }
 
     public SMAS(int maximumIterations, Dataset dataset, ISinglevariateFunction scoringFunction, String[] measureNames,
@@ -57,30 +91,95 @@ public class SMAS implements ISampler {
 
     @Override
     public List<DecisionRule> sample() {
+        start();
+        if (earlyStopping == null) {
+            run(getMaximumIterations());
+        } else {
+            runUntilConverged();
+        }
+        List<DecisionRule> sample = finish();
+        statistics = SamplingUtil.computeStatistics(sample, this::getValidRuleScore, convergenceIteration);
+        return sample;
+    }
+
+    /**
+     * Starts a run from a random valid rule, with an empty memory.
+     */
+    protected void start() {
         initNormalization();
-        DecisionRule initialRule = getDataset().getRandomValidRules(1, smoothCounts, measureNames).get(0);
+        initialRule = getDataset().getRandomValidRules(1, smoothCounts, measureNames, getRandom()).get(0);
         setRule(initialRule);
 
         // Erase the memory before each run
-        topRules = new TreeSet<>(Comparator.comparingDouble(this::getValidRuleScore).reversed());
-        
+        topRules = newTopRules();
+        topKeys = new RuleKeySet();
+
         topRules.add(RuleUtil.simpleCopy(getRule()));
+        topKeys.add(getRule().getKey());
+        runStart = scoreHistory.size();
+        convergenceIteration = -1;
+    }
 
-        for (int i = 0; i < getMaximumIterations(); i++) {
+    /**
+     * Moves the rule of the current run a number of times, keeping the top
+     * rules visited.
+     */
+    protected void run(int iterations) {
+        for (int i = 0; i < iterations; i++) {
             setRule(updateRule(getRule()));
             double currentScore = getValidRuleScore(getRule());
             scoreHistory.add(currentScore);
 
-            if (!topRules.contains(getRule())) {
+            if (topKeys.add(getRule().getKey())) {
                 topRules.add(RuleUtil.simpleCopy(getRule()));
 
                 if (topRules.size() > topK) {
-                    topRules.pollLast();
+                    topKeys.remove(topRules.pollLast().getKey());
                 }
             }
         }
+    }
+
+    /**
+     * Runs the iterations by intervals, checking after each one whether the
+     * run has converged according to the early-stop policy.
+     */
+    protected void runUntilConverged() {
+        RuleKeySet previousTop = new RuleKeySet();
+        int done = 0;
+        while (done < getMaximumIterations()) {
+            int iterations = Math.min(earlyStopping.getCheckInterval(), getMaximumIterations() - done);
+            run(iterations);
+            done += iterations;
+
+            List<RuleKey> top = topKeys.keys();
+            double stability = ConvergenceDiagnostics.topKStability(previousTop, top);
+            previousTop = new RuleKeySet(top.size());
+            top.forEach(previousTop::add);
+            if (done >= earlyStopping.getMinIterations()
+                    && earlyStopping.isConverged(Collections.singletonList(getRunHistory()), stability)) {
+                convergenceIteration = done;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The scores of the rules of the current run, in order.
+     */
+    public double[] getRunHistory() {
+        double[] history = new double[scoreHistory.size() - runStart];
+        for (int i = 0; i < history.length; i++) {
+            history[i] = scoreHistory.get(runStart + i);
+        }
+        return history;
+    }
 
-        // Expand the rules so they contain all the required data
+    /**
+     * @return The top rules of the current run, expanded so they contain all
+     *         the required data.
+     */
+    protected List<DecisionRule> finish() {
         List<DecisionRule> finalRules = new ArrayList<>();
         for (DecisionRule rule : topRules) {
             rule.expandSimpleCopy(initialRule);
@@ -116,8 +215,8 @@ public class SMAS implements ISampler {
         String[] antecedentItems = getDataset().getAntecedentItemsArray();
         String[] consequentItems = getDataset().getConsequentItemsArray();
 
-        int[] antecedentShuffle = RandomUtil.randomShuffle(antecedentItems.length);
-        int[] consequentShuffle = RandomUtil.randomShuffle(consequentItems.length);
+        int[] antecedentShuffle = getRandom().randomPermutation(antecedentItems.length);
+        int[] consequentShuffle = getRandom().randomPermutation(consequentItems.length);
 
         processAntecedents(rule, antecedentItems, antecedentShuffle);
         processConsequents(rule, consequentItems, consequentShuffle);
@@ -125,29 +224,68 @@ public class SMAS implements ISampler {
         return rule;
     }
 
+    /**
+     * Proposes the antecedent items in turn until one is accepted. The
+     * additions are evaluated all at once beforehand (see
+     * {@link DecisionRule#evaluateAdditions(int[])}): an addition giving an
+     * invalid rule, of score 0, is rejected without touching the rule, and the
+     * other ones are applied with their evaluated frequencies and measures.
+     */
     protected void processAntecedents(DecisionRule rule, String[] antecedentItems, int[] antecedentShuffle) {
+        int[] candidates = itemIds(antecedentItems, antecedentShuffle);
+        RuleMoves moves = rule.evaluateAdditions(candidates);
         for (int i = 0; i < antecedentShuffle.length; i++) {
             updateNormalization(rule);
 
+            String item = antecedentItems[antecedentShuffle[i]];
+            if (!canCoOccur(rule.getItemsInZ(), item)) {
+                continue;
+            }
+
             double originalScore = getValidRuleScore(rule);
-            rule.addToX(antecedentItems[antecedentShuffle[i]]);
+            if (rule.getItemsInX().contains(item)) {
+                // Proposing an item of X leaves the rule unchanged, and the item
+                // is removed when the proposal is rejected
+                if (isCertaintyHighEnough(originalScore, originalScore)) {
+                    break;
+                }
+                rule.removeFromX(item);
+                moves = rule.evaluateAdditions(candidates);
+                continue;
+            }
+            if (!moves.isValid(i)) {
+                continue;
+            }
+            rule.apply(moves, i);
             double modifiedScore = getValidRuleScore(rule);
 
             if (isCertaintyHighEnough(modifiedScore, originalScore)) {
                 break;
             }
 
-            rule.removeFromX(antecedentItems[antecedentShuffle[i]]);
+            rule.removeFromX(item);
         }
     }
 
+    /**
+     * Proposes the consequent items in turn until one is accepted, evaluated
+     * all at once beforehand as the antecedent items.
+     */
     protected void processConsequents(DecisionRule rule, String[] consequentItems, int[] consequentShuffle) {
+        RuleMoves moves = rule.evaluateConsequents(itemIds(consequentItems, consequentShuffle));
         for (int i = 0; i < consequentShuffle.length; i++) {
             updateNormalization(rule);
 
+            if (!canCoOccur(rule.getItemsInX(), consequentItems[consequentShuffle[i]])) {
+                continue;
+            }
+            if (!moves.isValid(i)) {
+                continue;
+            }
+
             double originalScore = getValidRuleScore(rule);
             String originalConsequent = rule.getY();
-            rule.setY(consequentItems[consequentShuffle[i]]);
+            rule.apply(moves, i);
             double modifiedScore = getValidRuleScore(rule);
 
             if (isCertaintyHighEnough(modifiedScore, originalScore)) {
@@ -158,8 +296,35 @@ public class SMAS implements ISampler {
         }
     }
 
+    /**
+     * @return The ids of the items, in the order of the shuffle.
+     */
+    protected int[] itemIds(String[] items, int[] shuffle) {
+        ItemDictionary dictionary = getDataset().getDictionary();
+        int[] ids = new int[shuffle.length];
+        for (int i = 0; i < shuffle.length; i++) {
+            ids[i] = dictionary.getId(items[shuffle[i]]);
+        }
+        return ids;
+    }
+
+    /**
+     * Items of different equivalence classes, or frequent items counted in no
+     * common transaction, never appear in the same transaction: a proposal
+     * mixing them gives a rule of support 0, which is always rejected, so it is
+     * skipped without being evaluated.
+     *
+     * @param items The items of the rule the item would be added to.
+     * @param item  The proposed item.
+     * @return Whether the item can appear in a transaction with the items.
+     */
+    protected boolean canCoOccur(Set<String> items, String item) {
+        return getDataset().canCoOccur(items, item);
+    }
+
     protected boolean isCertaintyHighEnough(double modifiedScore, double originalScore) {
-        double certainty = modifiedScore == 0 ? 0 : getOutRankingCertainty().computeScore(modifiedScore, originalScore);
+        double certainty = modifiedScore == 0 ? 0
+                : getOutRankingCertainty().computeScore(modifiedScore / temperature, originalScore / temperature);
         return getRandom().Bernoulli(certainty);
     }
 
@@ -168,7 +333,7 @@ public class SMAS implements ISampler {
     }
 
     protected void initNormalization() {
-        List<DecisionRule> validRules = getDataset().getRandomValidRules(100, smoothCounts, measureNames);
+        List<DecisionRule> validRules = getDataset().getRandomValidRules(100, smoothCounts, measureNames, getRandom());
 
         for (DecisionRule rule : validRules)
             updateNormalization(rule);
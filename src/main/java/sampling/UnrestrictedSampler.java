@@ -5,10 +5,14 @@ import java.util.List;
 
 import tools.data.Dataset;
 import tools.rules.DecisionRule;
+import tools.rules.RuleMoves;
+import tools.rules.RuleSnapshot;
 import tools.utils.RandomUtil;
 import tools.utils.RuleUtil;
 
 public class UnrestrictedSampler implements Sampler {
+    private static final double CSI = 1000;
+
     private Dataset dataset;
     private int numIterations;
 
@@ -20,45 +24,97 @@ public class UnrestrictedSampler implements Sampler {
     public List<DecisionRule> sample() {
         // Initialize with a random rule
         DecisionRule currentRule = dataset.getRandomValidRules(1, 1.0, new String[] { "support", "confidence" }).get(0);
-        List<DecisionRule> sample = new ArrayList<>();
+        List<RuleSnapshot> snapshots = new ArrayList<>();
+
+        String[] conseauentsArray = dataset.getConsequentItemsArray();
+        String[] antecedentsArray = dataset.getAntecedentItemsArray();
+        int[] consequentIds = itemIds(conseauentsArray);
+        int[] antecedentIds = itemIds(antecedentsArray);
 
         for (int iter = 0; iter < numIterations; iter++) {
-            String[] conseauentsArray = dataset.getConsequentItemsArray();
+            // The conditional probabilities of all the items are computed from
+            // one evaluation of the moves, renewed when the rule changes
+            RuleMoves moves = currentRule.evaluateConsequents(consequentIds);
 
             for (int i = 0; i < conseauentsArray.length; i++) {
-                String consequentValue = conseauentsArray[i];
-
-                double probability = getConditionalProb(currentRule, consequentValue, "consequent", 1000);
+                double probability = getConditionalProb(currentRule, moves, i, CSI);
 
                 if (new RandomUtil().Bernoulli(probability)) {
-                    currentRule.setY(consequentValue);
+                    currentRule.apply(moves, i);
+                    moves = currentRule.evaluateConsequents(consequentIds);
                 }
             }
 
-            String[] antecedentsArray = dataset.getAntecedentItemsArray();
+            moves = currentRule.evaluateAdditions(antecedentIds);
 
             for (int i = 0; i < antecedentsArray.length; i++) {
                 String antecedentValue = antecedentsArray[i];
 
-                double probability = getConditionalProb(currentRule, antecedentValue, "antecedent", 1000);
+                double probability = getConditionalProb(currentRule, moves, i, CSI);
 
+                // The item of X is removed, then added back with the
+                // probability (as getConditionalProb does)
+                boolean inX = currentRule.getItemsInX().contains(antecedentValue);
+                if (inX) {
+                    currentRule.removeFromX(antecedentValue);
+                }
                 if (new RandomUtil().Bernoulli(probability)) {
-                    currentRule.addToX(antecedentValue);
+                    if (inX) {
+                        currentRule.addToX(antecedentValue);
+                    } else {
+                        currentRule.apply(moves, i);
+                    }
+                    moves = currentRule.evaluateAdditions(antecedentIds);
+                } else if (inX) {
+                    moves = currentRule.evaluateAdditions(antecedentIds);
                 }
             }
             if (RuleUtil.isValid(currentRule))
-                sample.add(RuleUtil.deepCopy(currentRule));
+                snapshots.add(RuleSnapshot.of(currentRule));
         }
 
+        List<DecisionRule> sample = new ArrayList<>(snapshots.size());
+        for (RuleSnapshot snapshot : snapshots) {
+            sample.add(snapshot.toRule(dataset, currentRule.getMaxSizeX(), currentRule.getMaxSizeZ(),
+                    currentRule.getSmoothCounts(), currentRule.getMeasureNames()));
+        }
         return sample;
     }
 
     private double g(DecisionRule rule) {
-        double support = rule.getFreqX() / (double) dataset.getNbTransactions();
-        double confidence = rule.getFreqY() / (double) rule.getFreqX();
+        return g(rule.getFreqX(), rule.getFreqY());
+    }
+
+    private double g(int freqX, int freqY) {
+        double support = freqX / (double) dataset.getNbTransactions();
+        double confidence = freqY / (double) freqX;
         return support * confidence;
     }
 
+    private int[] itemIds(String[] items) {
+        int[] ids = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            ids[i] = dataset.getDictionary().getId(items[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * Computes the conditional probability P(J_s = 1 | J_-s) of an evaluated
+     * move, without changing the rule.
+     *
+     * @param J     The rule that will be conditioned.
+     * @param moves The moves evaluated from the rule.
+     * @param i     The index of the move adding the item.
+     * @param csi   The value of csi.
+     * @return The probability that the conditioned item is present.
+     */
+    public double getConditionalProb(DecisionRule J, RuleMoves moves, int i, double csi) {
+        double without = Math.exp(csi * g(J));
+        double with = Math.exp(csi * g(moves.getFreqX(i), moves.getFreqY(i)));
+        return with / (with + without);
+    }
+
     /**
      * Computes the conditional probability P(J_s = 1 | J_-s).
      * 
@@ -0,0 +1,69 @@
+package tools.data;
+
+/**
+ * Equality, hashing and printing shared by every cover representation: two
+ * covers are equal when they contain the same transactions, whatever their
+ * representation.
+ */
+abstract class AbstractCover implements Cover {
+
+    protected final int size;
+    protected final int cardinality;
+    private int hash;
+
+    protected AbstractCover(int size, int cardinality) {
+        this.size = size;
+        this.cardinality = cardinality;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int cardinality() {
+        return cardinality;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof Cover)) return false;
+        Cover other = (Cover) obj;
+        if (cardinality != other.cardinality()) return false;
+        int tid = nextSetBit(0);
+        int otherTid = other.nextSetBit(0);
+        while (tid >= 0) {
+            if (tid != otherTid) return false;
+            tid = nextSetBit(tid + 1);
+            otherTid = other.nextSetBit(otherTid + 1);
+        }
+        return otherTid < 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0 && cardinality > 0) {
+            h = 1;
+            for (int tid = nextSetBit(0); tid >= 0; tid = nextSetBit(tid + 1)) {
+                h = 31 * h + tid;
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int tid = nextSetBit(0); tid >= 0; tid = nextSetBit(tid + 1)) {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(tid);
+        }
+        return builder.append('}').toString();
+    }
+}
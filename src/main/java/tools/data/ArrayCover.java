@@ -0,0 +1,53 @@
+package tools.data;
+
+import java.util.Arrays;
+
+/**
+ * Cover stored as the sorted array of its transaction indexes, used for rare
+ * items whose cover is only a handful of transactions.
+ */
+public final class ArrayCover extends AbstractCover {
+
+    final int[] tids;
+
+    ArrayCover(int[] tids, int size) {
+        super(size, tids.length);
+        this.tids = tids;
+    }
+
+    @Override
+    public boolean contains(int tid) {
+        return Arrays.binarySearch(tids, tid) >= 0;
+    }
+
+    @Override
+    public int nextSetBit(int fromIndex) {
+        int i = Arrays.binarySearch(tids, Math.max(fromIndex, 0));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return i < tids.length ? tids[i] : -1;
+    }
+
+    @Override
+    public long word(int wordIndex) {
+        long from = (long) wordIndex << 6;
+        if (from < 0 || from > Integer.MAX_VALUE) {
+            return 0L;
+        }
+        int i = Arrays.binarySearch(tids, (int) from);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        long word = 0L;
+        for (; i < tids.length && tids[i] >>> 6 == wordIndex; i++) {
+            word |= 1L << tids[i];
+        }
+        return word;
+    }
+
+    @Override
+    public int[] toArray() {
+        return tids.clone();
+    }
+}
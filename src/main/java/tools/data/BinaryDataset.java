@@ -0,0 +1,440 @@
+package tools.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary on-disk snapshot of a built dataset, loaded through a memory
+ * mapping so that no text has to be parsed, no cover has to be rebuilt and the
+ * OS page cache is shared between the JVMs reading the same file: the covers
+ * of a loaded dataset are {@link OffHeapCover}s reading the mapping in place.
+ * Only the dictionary and the transactions, scanned row by row, are decoded
+ * to the heap.
+ *
+ * Layout (big endian):
+ * <ul>
+ * <li>header: magic, version, number of items, number of transactions (rows
+ * of a deduplicated dataset), number of (transaction, item) entries, flags
+ * (1 when the rows are weighted), then the length, modification time and
+ * CRC32 checksum of the source .dat file (zeros when there is none)</li>
+ * <li>item dictionary: for each id, the length of the UTF-8 value followed by
+ * its bytes, padded to a multiple of 4 bytes</li>
+ * <li>equivalence classes: the class index of each item</li>
+ * <li>transactions in CSR form: offsets (nbTransactions + 1) then item ids</li>
+ * <li>cover table: for each item, the representation of its cover, its support
+ * and its number of non zero words</li>
+ * <li>covers, each in its own representation: sorted transaction indexes,
+ * all the words of a bitmap, or the indexes then the bits of the non zero
+ * words</li>
+ * <li>when weighted, the number of copies of each row</li>
+ * </ul>
+ *
+ * A snapshot is tied to its source file by the checksum: {@link #read} only
+ * uses it while the .dat file is unchanged, and rebuilds it otherwise.
+ */
+public class BinaryDataset {
+
+    public static final String EXTENSION = ".bin";
+
+    /** System property making {@link #read} write the missing snapshots. */
+    public static final String WRITE_PROPERTY = "dataset.writeSnapshots";
+
+    private static final int MAGIC = 0x4E4F4453; // "NODS"
+    private static final int VERSION = 4;
+    private static final int WEIGHTED = 1;
+    private static final int HEADER_BYTES = 6 * 4 + 3 * 8;
+
+    /**
+     * Writes a snapshot of a dataset to a binary file. The snapshot is written
+     * to a temporary file first, then moved, so that readers never see a
+     * partial snapshot.
+     *
+     * @param dataset The dataset to write.
+     * @param path    The path of the binary file.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Dataset dataset, Path path) throws IOException {
+        ItemDictionary dictionary = dataset.getDictionary();
+        Cover[] covers = dataset.getCovers().clone();
+        for (int id = 0; id < covers.length; id++) {
+            if (covers[id] instanceof OffHeapCover) {
+                covers[id] = ((OffHeapCover) covers[id]).toHeap();
+            }
+        }
+        int[] classOf = dataset.getClassOf();
+        int nbItems = dictionary.size();
+        int nbTransactions = dataset.getNbRows();
+        int[] weights = dataset.getWeights();
+
+        int nbEntries = 0;
+        for (Cover cover : covers) {
+            nbEntries += cover.cardinality();
+        }
+        // A view only holds part of the transactions of its source file
+        Path source = dataset instanceof DatasetView || dataset.getFilename() == null ? null
+                : Paths.get(dataset.getExpDir() + dataset.getFilename());
+        boolean hasSource = source != null && Files.isRegularFile(source);
+
+        Path absolutePath = path.toAbsolutePath();
+        Path temporary = Files.createTempFile(absolutePath.getParent(), absolutePath.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temporary.toFile()), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(nbItems);
+                out.writeInt(nbTransactions);
+                out.writeInt(nbEntries);
+                out.writeInt(weights != null ? WEIGHTED : 0);
+                out.writeLong(hasSource ? Files.size(source) : 0);
+                out.writeLong(hasSource ? Files.getLastModifiedTime(source).toMillis() : 0);
+                out.writeLong(hasSource ? checksum(source) : 0);
+
+                int dictionaryBytes = 0;
+                for (int id = 0; id < nbItems; id++) {
+                    byte[] value = dictionary.getItem(id).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(value.length);
+                    out.write(value);
+                    dictionaryBytes += 4 + value.length;
+                }
+                for (int i = dictionaryBytes; i % 4 != 0; i++) {
+                    out.writeByte(0);
+                }
+
+                for (int id = 0; id < nbItems; id++) {
+                    out.writeInt(classOf[id]);
+                }
+
+                int offset = 0;
+                out.writeInt(offset);
+                for (int tid = 0; tid < nbTransactions; tid++) {
+                    offset += dataset.getTransaction(tid).length;
+                    out.writeInt(offset);
+                }
+                for (int tid = 0; tid < nbTransactions; tid++) {
+                    for (int item : dataset.getTransaction(tid)) {
+                        out.writeInt(item);
+                    }
+                }
+
+                for (int id = 0; id < nbItems; id++) {
+                    Cover cover = covers[id];
+                    out.writeInt(representation(cover).ordinal());
+                    out.writeInt(cover.cardinality());
+                    out.writeInt(cover instanceof SparseCover ? ((SparseCover) cover).words.length : 0);
+                }
+                for (int id = 0; id < nbItems; id++) {
+                    writeCover(out, covers[id]);
+                }
+                if (weights != null) {
+                    for (int weight : weights) {
+                        out.writeInt(weight);
+                    }
+                }
+            }
+            Files.move(temporary, absolutePath, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static Covers.Representation representation(Cover cover) {
+        if (cover instanceof DenseCover) {
+            return Covers.Representation.DENSE;
+        }
+        return cover instanceof SparseCover ? Covers.Representation.SPARSE : Covers.Representation.ARRAY;
+    }
+
+    private static void writeCover(DataOutputStream out, Cover cover) throws IOException {
+        if (cover instanceof DenseCover) {
+            for (long word : ((DenseCover) cover).words) {
+                out.writeLong(word);
+            }
+        } else if (cover instanceof SparseCover) {
+            SparseCover sparse = (SparseCover) cover;
+            for (int wordIndex : sparse.wordIndexes) {
+                out.writeInt(wordIndex);
+            }
+            for (long word : sparse.words) {
+                out.writeLong(word);
+            }
+        } else {
+            for (int tid = cover.nextSetBit(0); tid >= 0; tid = cover.nextSetBit(tid + 1)) {
+                out.writeInt(tid);
+            }
+        }
+    }
+
+    /**
+     * Converts a .dat transaction file to the binary format.
+     *
+     * @param datPath The path of the .dat file.
+     * @param binPath The path of the binary file to write.
+     * @throws IOException If a file cannot be read or written.
+     */
+    public static void convert(Path datPath, Path binPath) throws IOException {
+        Path parent = datPath.toAbsolutePath().getParent();
+        Dataset dataset = new Dataset(datPath.getFileName().toString(), parent.toString() + File.separator,
+                Collections.emptySet());
+        write(dataset, binPath);
+    }
+
+    /**
+     * Memory maps a binary dataset file and builds the corresponding dataset.
+     * Its covers are views of the mapping, which stays valid while the
+     * dataset is reachable, even if the file is replaced.
+     *
+     * @param path               The path of the binary file.
+     * @param consequentItemsSet The consequent (class) items.
+     * @return The dataset.
+     * @throws IOException If the file cannot be read or is not a binary dataset.
+     */
+    public static Dataset load(Path path, Set<String> consequentItemsSet) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a binary dataset file: " + path);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary dataset version " + version + " in " + path);
+        }
+        int nbItems = buffer.getInt();
+        int nbTransactions = buffer.getInt();
+        int nbEntries = buffer.getInt();
+        int flags = buffer.getInt();
+        buffer.position(HEADER_BYTES);
+
+        ItemDictionary dictionary = new ItemDictionary();
+        byte[] value = new byte[64];
+        for (int id = 0; id < nbItems; id++) {
+            int length = buffer.getInt();
+            if (value.length < length) {
+                value = new byte[length];
+            }
+            buffer.get(value, 0, length);
+            dictionary.getOrAdd(new String(value, 0, length, StandardCharsets.UTF_8));
+        }
+        while (buffer.position() % 4 != 0) {
+            buffer.get();
+        }
+
+        int[] classOf = getInts(buffer, nbItems);
+        UnionFind equivalenceClasses = new UnionFind(dictionary.getItems());
+        int[] classRep = new int[nbItems];
+        Arrays.fill(classRep, ItemDictionary.UNKNOWN_ITEM);
+        for (int id = 0; id < nbItems; id++) {
+            if (classRep[classOf[id]] == ItemDictionary.UNKNOWN_ITEM) {
+                classRep[classOf[id]] = id;
+            } else {
+                equivalenceClasses.union(id, classRep[classOf[id]]);
+            }
+        }
+
+        int[] transactionOffsets = getInts(buffer, nbTransactions + 1);
+        int[] transactionItems = getInts(buffer, transactionOffsets[nbTransactions]);
+        int[][] transactions = new int[nbTransactions][];
+        for (int tid = 0; tid < nbTransactions; tid++) {
+            transactions[tid] = Arrays.copyOfRange(transactionItems, transactionOffsets[tid],
+                    transactionOffsets[tid + 1]);
+        }
+
+        int[] coverTable = getInts(buffer, 3 * nbItems);
+        Covers.Representation[] representations = Covers.Representation.values();
+        Cover[] covers = new Cover[nbItems];
+        int entries = 0;
+        for (int id = 0; id < nbItems; id++) {
+            Covers.Representation representation = representations[coverTable[3 * id]];
+            int cardinality = coverTable[3 * id + 1];
+            switch (representation) {
+                case DENSE:
+                    int nbDenseWords = Covers.wordCount(nbTransactions);
+                    covers[id] = OffHeapCover.wrap(representation, mapLongs(buffer, nbDenseWords), null,
+                            nbDenseWords, nbTransactions, cardinality);
+                    break;
+                case SPARSE:
+                    int nbWords = coverTable[3 * id + 2];
+                    IntBuffer wordIndexes = mapInts(buffer, nbWords);
+                    covers[id] = OffHeapCover.wrap(representation, mapLongs(buffer, nbWords), wordIndexes, nbWords,
+                            nbTransactions, cardinality);
+                    break;
+                default:
+                    covers[id] = OffHeapCover.wrap(representation, null, mapInts(buffer, cardinality), cardinality,
+                            nbTransactions, cardinality);
+            }
+            entries += cardinality;
+        }
+        if (entries != nbEntries || transactionOffsets[nbTransactions] != nbEntries) {
+            throw new IOException("Corrupted binary dataset file: " + path);
+        }
+        int[] weights = (flags & WEIGHTED) != 0 ? getInts(buffer, nbTransactions) : null;
+
+        String fileName = path.getFileName().toString();
+        String datName = fileName.substring(0, fileName.length() - EXTENSION.length()) + ".dat";
+        Path parent = path.toAbsolutePath().getParent();
+        return new Dataset(datName, parent.toString() + File.separator, dictionary, transactions, covers,
+                equivalenceClasses, weights, consequentItemsSet);
+    }
+
+    private static int[] getInts(ByteBuffer buffer, int length) {
+        int[] values = new int[length];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + 4 * length);
+        return values;
+    }
+
+    /**
+     * @return A view of the next ints of the buffer, which is moved past them.
+     */
+    private static IntBuffer mapInts(ByteBuffer buffer, int length) {
+        IntBuffer values = CoverArena.slice(buffer, buffer.position(), 4 * length).asIntBuffer();
+        buffer.position(buffer.position() + 4 * length);
+        return values;
+    }
+
+    /**
+     * @return A view of the next longs of the buffer, which is moved past them.
+     */
+    private static LongBuffer mapLongs(ByteBuffer buffer, int length) {
+        LongBuffer values = CoverArena.slice(buffer, buffer.position(), 8 * length).asLongBuffer();
+        buffer.position(buffer.position() + 8 * length);
+        return values;
+    }
+
+    /**
+     * Reads a dataset, memory mapping its binary snapshot ({@code name.bin}
+     * next to {@code name.dat}) when it was built from the current .dat file,
+     * and parsing the .dat file otherwise. The missing or outdated snapshot is
+     * only (re)built when the system property {@value #WRITE_PROPERTY} is
+     * true.
+     *
+     * @param filename           The name of the .dat file.
+     * @param expDir             The directory of the file.
+     * @param consequentItemsSet The consequent (class) items.
+     * @return The dataset.
+     * @throws IOException If the dataset cannot be read.
+     */
+    public static Dataset read(String filename, String expDir, Set<String> consequentItemsSet) throws IOException {
+        return read(filename, expDir, consequentItemsSet, Boolean.getBoolean(WRITE_PROPERTY));
+    }
+
+    /**
+     * Reads a dataset as {@link #read(String, String, Set)}.
+     *
+     * @param writeSnapshot Whether to write the snapshot next to the .dat file
+     *                      when it is missing or outdated, for the next runs.
+     */
+    public static Dataset read(String filename, String expDir, Set<String> consequentItemsSet,
+            boolean writeSnapshot) throws IOException {
+        Path datPath = Paths.get(expDir + filename);
+        Path binPath = Paths.get(expDir + getBinaryName(filename));
+        if (Files.isRegularFile(binPath) && (!Files.isRegularFile(datPath) || isSnapshotOf(binPath, datPath))) {
+            return load(binPath, consequentItemsSet);
+        }
+        Dataset dataset = new Dataset(filename, expDir, consequentItemsSet);
+        if (writeSnapshot) {
+            try {
+                write(dataset, binPath);
+            } catch (IOException e) {
+                // Read only directory: the .dat file will be parsed again next time
+            }
+        }
+        return dataset;
+    }
+
+    /**
+     * @param binPath The path of a binary snapshot.
+     * @param datPath The path of a .dat file.
+     * @return Whether the snapshot is in the current format and was built from
+     *         the current content of the .dat file. The checksum of the .dat
+     *         file is only computed when its modification time changed.
+     */
+    public static boolean isSnapshotOf(Path binPath, Path datPath) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        try (FileChannel channel = FileChannel.open(binPath, StandardOpenOption.READ)) {
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    break;
+                }
+            }
+        }
+        header.flip();
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+            return false;
+        }
+        header.position(6 * 4);
+        long sourceLength = header.getLong();
+        long sourceModified = header.getLong();
+        long sourceChecksum = header.getLong();
+        if (sourceLength != Files.size(datPath)) {
+            return false;
+        }
+        return sourceModified == Files.getLastModifiedTime(datPath).toMillis()
+                || sourceChecksum == checksum(datPath);
+    }
+
+    /**
+     * @return The CRC32 checksum of the content of a file.
+     */
+    static long checksum(Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(path)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static String getBinaryName(String filename) {
+        int extensionIndex = filename.lastIndexOf('.');
+        return (extensionIndex < 0 ? filename : filename.substring(0, extensionIndex)) + EXTENSION;
+    }
+
+    /**
+     * Converts every .dat file given as argument (or every .dat file of the given
+     * directories) to the binary format.
+     */
+    public static void main(String[] args) throws IOException {
+        for (String arg : args) {
+            File file = new File(arg);
+            File[] files = file.isDirectory() ? file.listFiles((dir, name) -> name.endsWith(".dat"))
+                    : new File[] { file };
+            if (files == null) {
+                continue;
+            }
+            for (File datFile : files) {
+                Path binPath = Paths.get(datFile.getParent() == null ? "." : datFile.getParent(),
+                        getBinaryName(datFile.getName()));
+                convert(datFile.toPath(), binPath);
+                System.out.println("Converted " + datFile + " to " + binPath);
+            }
+        }
+    }
+}
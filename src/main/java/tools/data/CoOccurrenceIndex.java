@@ -0,0 +1,188 @@
+package tools.data;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Supports of the items of a dataset and co-occurrence counts of the pairs of
+ * its most frequent items, so that proposals which cannot reach a non zero
+ * support are rejected without intersecting any cover.
+ *
+ * The counts are stored as the upper triangle (diagonal included) of the
+ * matrix of the indexed items, row after row. They are counted over chunks of
+ * transactions in parallel when the transactions are stored, and by
+ * intersecting the covers of the pairs otherwise.
+ */
+public final class CoOccurrenceIndex {
+
+    /** Co-support of a pair of items of which one is not indexed. */
+    public static final int UNKNOWN = -1;
+
+    private final int[] supports;
+    /** For each item id, its index among the indexed items, or -1. */
+    private final int[] slots;
+    private final int nbIndexedItems;
+    private final int[] counts;
+
+    private CoOccurrenceIndex(int[] supports, int[] slots, int nbIndexedItems, int[] counts) {
+        this.supports = supports;
+        this.slots = slots;
+        this.nbIndexedItems = nbIndexedItems;
+        this.counts = counts;
+    }
+
+    /**
+     * @param dataset  The dataset to index.
+     * @param maxItems The maximum number of indexed items: the pairs of the
+     *                 {@code maxItems} most frequent items are counted.
+     * @return The index of the dataset.
+     */
+    public static CoOccurrenceIndex build(Dataset dataset, int maxItems) {
+        int nbItems = dataset.getDictionary().size();
+        int[] supports = new int[nbItems];
+        for (int id = 0; id < nbItems; id++) {
+            supports[id] = dataset.support(dataset.getCover(id));
+        }
+
+        // Most frequent items first, items never seen are not indexed
+        int[] indexed = IntStream.range(0, nbItems).boxed()
+                .filter(id -> supports[id] > 0)
+                .sorted((a, b) -> supports[b] != supports[a] ? Integer.compare(supports[b], supports[a])
+                        : Integer.compare(a, b))
+                .limit(Math.max(0, maxItems))
+                .mapToInt(Integer::intValue).toArray();
+        int[] slots = new int[nbItems];
+        Arrays.fill(slots, -1);
+        for (int slot = 0; slot < indexed.length; slot++) {
+            slots[indexed[slot]] = slot;
+        }
+
+        int n = indexed.length;
+        int[] counts;
+        if (dataset.hasTransactions()) {
+            counts = countTransactions(dataset, slots, n);
+        } else {
+            counts = new int[n * (n + 1) / 2];
+            IntStream.range(0, n).parallel().forEach(i -> {
+                Cover cover = dataset.getCover(indexed[i]);
+                int row = offset(i, n);
+                counts[row] = supports[indexed[i]];
+                for (int j = i + 1; j < n; j++) {
+                    counts[row + j - i] = dataset.support(cover, dataset.getCover(indexed[j]));
+                }
+            });
+        }
+        return new CoOccurrenceIndex(supports, slots, n, counts);
+    }
+
+    /**
+     * Counts the pairs of each chunk of transactions in its own triangle, then
+     * sums the triangles.
+     */
+    private static int[] countTransactions(Dataset dataset, int[] slots, int n) {
+        int nbRows = dataset.getNbRows();
+        int nbChunks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), nbRows / 1024));
+        int chunkSize = (nbRows + nbChunks - 1) / nbChunks;
+        List<int[]> chunksCounts = IntStream.range(0, nbChunks).parallel().mapToObj(chunk -> {
+            int[] chunkCounts = new int[n * (n + 1) / 2];
+            int[] transactionSlots = new int[16];
+            int end = Math.min(nbRows, (chunk + 1) * chunkSize);
+            for (int tid = chunk * chunkSize; tid < end; tid++) {
+                int[] transaction = dataset.getTransaction(tid);
+                int weight = dataset.getWeight(tid);
+                if (transactionSlots.length < transaction.length) {
+                    transactionSlots = new int[transaction.length];
+                }
+                int size = 0;
+                for (int item : transaction) {
+                    if (slots[item] >= 0) {
+                        transactionSlots[size++] = slots[item];
+                    }
+                }
+                Arrays.sort(transactionSlots, 0, size);
+                // An item repeated in a transaction is counted once
+                int distinct = 0;
+                for (int a = 0; a < size; a++) {
+                    if (distinct == 0 || transactionSlots[distinct - 1] != transactionSlots[a]) {
+                        transactionSlots[distinct++] = transactionSlots[a];
+                    }
+                }
+                size = distinct;
+                for (int a = 0; a < size; a++) {
+                    int row = offset(transactionSlots[a], n) - transactionSlots[a];
+                    for (int b = a; b < size; b++) {
+                        chunkCounts[row + transactionSlots[b]] += weight;
+                    }
+                }
+            }
+            return chunkCounts;
+        }).collect(Collectors.toList());
+        int[] counts = chunksCounts.get(0);
+        for (int chunk = 1; chunk < chunksCounts.size(); chunk++) {
+            int[] chunkCounts = chunksCounts.get(chunk);
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += chunkCounts[i];
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return The position of the diagonal cell of row i in the triangle.
+     */
+    private static int offset(int i, int n) {
+        return i * n - i * (i - 1) / 2;
+    }
+
+    /**
+     * @param id The id of an item.
+     * @return The number of transactions containing the item.
+     */
+    public int support(int id) {
+        return supports[id];
+    }
+
+    /**
+     * @param id The id of an item.
+     * @return Whether the pairs of the item are counted.
+     */
+    public boolean isIndexed(int id) {
+        return slots[id] >= 0;
+    }
+
+    public int getNbIndexedItems() {
+        return nbIndexedItems;
+    }
+
+    /**
+     * @param i The id of an item.
+     * @param j The id of an item.
+     * @return The number of transactions containing both items, or
+     *         {@link #UNKNOWN} if one of them is not indexed.
+     */
+    public int coSupport(int i, int j) {
+        int a = slots[i];
+        int b = slots[j];
+        if (a < 0 || b < 0) {
+            return i == j ? supports[i] : UNKNOWN;
+        }
+        if (a > b) {
+            int tmp = a;
+            a = b;
+            b = tmp;
+        }
+        return counts[offset(a, nbIndexedItems) + b - a];
+    }
+
+    /**
+     * @param i The id of an item.
+     * @param j The id of an item.
+     * @return False when the two items are known to never appear in the same
+     *         transaction.
+     */
+    public boolean mayCoOccur(int i, int j) {
+        return supports[i] > 0 && supports[j] > 0 && coSupport(i, j) != 0;
+    }
+}
@@ -0,0 +1,85 @@
+package tools.data;
+
+import com.zaxxer.sparsebits.SparseBitSet;
+
+/**
+ * Immutable set of transaction indexes (the cover of an item or an itemset)
+ * ranging over {@code [0, size())}.
+ *
+ * Several representations exist depending on the density of the cover (see
+ * {@link Covers}): {@link DenseCover} stores one bit per transaction,
+ * {@link ArrayCover} stores the sorted transaction indexes and
+ * {@link SparseCover} stores only the non zero 64 bits words. Set operations
+ * between any two representations go through the kernels of {@link Covers}.
+ */
+public interface Cover {
+
+    /**
+     * @return The number of transactions the cover ranges over.
+     */
+    int size();
+
+    /**
+     * @return The number of transactions in the cover (cached).
+     */
+    int cardinality();
+
+    default boolean isEmpty() {
+        return cardinality() == 0;
+    }
+
+    /**
+     * @param tid A transaction index.
+     * @return Whether the transaction is in the cover.
+     */
+    boolean contains(int tid);
+
+    /**
+     * @param fromIndex The transaction index to start from (inclusive).
+     * @return The first transaction index of the cover greater or equal to
+     *         {@code fromIndex}, or -1 if there is none.
+     */
+    int nextSetBit(int fromIndex);
+
+    /**
+     * @param wordIndex The index of a 64 bits word.
+     * @return The bits of the transactions {@code [64 * wordIndex, 64 * wordIndex + 64)}.
+     */
+    long word(int wordIndex);
+
+    /**
+     * @return The sorted transaction indexes of the cover.
+     */
+    default int[] toArray() {
+        int[] tids = new int[cardinality()];
+        int i = 0;
+        for (int tid = nextSetBit(0); tid >= 0; tid = nextSetBit(tid + 1)) {
+            tids[i++] = tid;
+        }
+        return tids;
+    }
+
+    default SparseBitSet toSparseBitSet() {
+        SparseBitSet bits = new SparseBitSet(size());
+        for (int tid = nextSetBit(0); tid >= 0; tid = nextSetBit(tid + 1)) {
+            bits.set(tid);
+        }
+        return bits;
+    }
+
+    default Cover and(Cover other) {
+        return Covers.and(this, other);
+    }
+
+    default Cover andNot(Cover other) {
+        return Covers.andNot(this, other);
+    }
+
+    default int andCardinality(Cover other) {
+        return Covers.andCardinality(this, other);
+    }
+
+    default int andNotCardinality(Cover other) {
+        return cardinality() - Covers.andCardinality(this, other);
+    }
+}
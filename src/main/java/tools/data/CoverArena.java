@@ -0,0 +1,166 @@
+package tools.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Off-heap storage for the item covers of one or several datasets (e.g. the
+ * folds of an experiment), so that large covers neither count against the
+ * heap nor slow down the garbage collector.
+ *
+ * Covers are copied into blocks of direct memory, or of a temporary file
+ * mapped in memory when the covers do not fit in RAM either, and read through
+ * {@link OffHeapCover}s. Once the arena is closed, its covers throw when read
+ * and its blocks are released by the garbage collector with the last cover
+ * referring to them. They are not freed eagerly: a reader that checked the
+ * arena just before it was closed could otherwise read freed memory.
+ */
+public final class CoverArena implements AutoCloseable {
+
+    private static final int BLOCK_SIZE = 64 << 20;
+
+    /** Temporary file backing the blocks, or null for direct memory. */
+    private final Path file;
+    private final FileChannel channel;
+    private final List<ByteBuffer> blocks = new ArrayList<>();
+    private ByteBuffer current;
+    private long allocatedBytes;
+    private long usedBytes;
+    private volatile boolean closed;
+
+    private CoverArena(Path file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    /**
+     * @return An arena allocating direct (native) memory.
+     */
+    public static CoverArena direct() {
+        return new CoverArena(null, null);
+    }
+
+    /**
+     * @param directory The directory of the temporary file backing the arena.
+     * @return An arena allocating memory mapped regions of a temporary file,
+     *         deleted when the arena is closed.
+     * @throws IOException If the file cannot be created.
+     */
+    public static CoverArena mapped(Path directory) throws IOException {
+        Path file = Files.createTempFile(directory, "covers", ".arena");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+        return new CoverArena(file, channel);
+    }
+
+    /**
+     * Copies a cover to the arena.
+     *
+     * @param cover The cover to copy.
+     * @return The off-heap copy of the cover.
+     */
+    public OffHeapCover store(Cover cover) {
+        return OffHeapCover.copy(this, cover);
+    }
+
+    /**
+     * @param bytes The size of the region.
+     * @return A region of the given size, 8 bytes aligned, in native order.
+     */
+    synchronized ByteBuffer allocate(long bytes) {
+        if (closed) {
+            throw new IllegalStateException("The cover arena is closed.");
+        }
+        long aligned = (bytes + 7) & ~7L;
+        if (aligned > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cover too large for an arena block: " + bytes + " bytes.");
+        }
+        if (current == null || current.remaining() < aligned) {
+            // Covers larger than a block get a block of their own
+            current = newBlock((int) Math.max(BLOCK_SIZE, aligned));
+        }
+        int position = current.position();
+        ByteBuffer region = slice(current, position, (int) bytes).order(ByteOrder.nativeOrder());
+        current.position(position + (int) aligned);
+        usedBytes += aligned;
+        return region;
+    }
+
+    /**
+     * @return A view of the given bytes of a buffer, from an index independent
+     *         of its position, in the same byte order.
+     */
+    static ByteBuffer slice(ByteBuffer buffer, int index, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(index);
+        view.limit(index + length);
+        return view.slice().order(buffer.order());
+    }
+
+    private ByteBuffer newBlock(int size) {
+        ByteBuffer block;
+        if (channel == null) {
+            block = ByteBuffer.allocateDirect(size);
+        } else {
+            try {
+                block = channel.map(MapMode.READ_WRITE, allocatedBytes, size);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot map the cover arena file " + file, e);
+            }
+        }
+        blocks.add(block);
+        allocatedBytes += size;
+        return block;
+    }
+
+    /**
+     * @return The bytes reserved by the arena.
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return The bytes holding covers.
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes the arena: its covers can no longer be read, and its blocks are
+     * released by the garbage collector once the covers are unreachable.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        blocks.clear();
+        current = null;
+        allocatedBytes = 0;
+        usedBytes = 0;
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CoverArena[" + (file == null ? "direct" : file.toString()) + ", used=" + getUsedBytes()
+                + ", allocated=" + getAllocatedBytes() + "]";
+    }
+}
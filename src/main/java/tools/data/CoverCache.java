@@ -0,0 +1,347 @@
+package tools.data;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Concurrent cache of itemset covers shared by every rule of a
+ * {@link Dataset}, bounded both in number of entries and in (estimated) bytes.
+ *
+ * Eviction follows the W-TinyLFU policy: new covers enter a small LRU window;
+ * covers leaving the window compete with the least recently used cover of the
+ * main space, and the one with the lower access frequency (estimated by a
+ * {@link FrequencySketch}) is evicted. The main space is a segmented LRU: a
+ * cover hit while on probation is promoted to the protected segment, so that
+ * covers used over and over survive bursts of one shot itemsets.
+ *
+ * Lookups are lock free. Recording a hit in the policy needs the eviction lock
+ * and is dropped when the lock is contended; insertions always take it.
+ */
+public final class CoverCache {
+
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.8;
+    /** Estimated bytes of an entry besides its cover (key, node, map entry). */
+    private static final long ENTRY_OVERHEAD = 128;
+
+    private final long maximumEntries;
+    private final long maximumBytes;
+    private final long windowMaximum;
+    private final long windowMaximumEntries;
+    private final long protectedMaximum;
+    private final long protectedMaximumEntries;
+
+    private final ConcurrentHashMap<ItemsetKey, Node> data;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final AccessQueue window = new AccessQueue();
+    private final AccessQueue probation = new AccessQueue();
+    private final AccessQueue protectedQueue = new AccessQueue();
+    private long windowBytes;
+    private long windowEntries;
+    private long protectedBytes;
+    private long protectedEntries;
+    private long totalBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maximumEntries The maximum number of cached covers.
+     * @param maximumBytes   The maximum estimated size of the cached covers.
+     */
+    public CoverCache(long maximumEntries, long maximumBytes) {
+        if (maximumEntries <= 0 || maximumBytes <= 0) {
+            throw new IllegalArgumentException("The bounds of the cover cache must be positive.");
+        }
+        this.maximumEntries = maximumEntries;
+        this.maximumBytes = maximumBytes;
+        this.windowMaximum = Math.max(1, (long) (WINDOW_RATIO * maximumBytes));
+        this.windowMaximumEntries = Math.max(1, (long) (WINDOW_RATIO * maximumEntries));
+        this.protectedMaximum = (long) (PROTECTED_RATIO * (maximumBytes - windowMaximum));
+        this.protectedMaximumEntries = (long) (PROTECTED_RATIO * (maximumEntries - windowMaximumEntries));
+        this.data = new ConcurrentHashMap<>();
+        this.sketch = new FrequencySketch(maximumEntries);
+    }
+
+    /**
+     * @return A cache bounded to 65536 covers and to an eighth of the maximum
+     *         heap size (at most 256 MB).
+     */
+    public static CoverCache withDefaultBounds() {
+        return new CoverCache(1 << 16, Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 8));
+    }
+
+    /**
+     * @param key The key of the itemset.
+     * @return The cached cover of the itemset, or null if it is not cached.
+     */
+    public Cover getIfPresent(ItemsetKey key) {
+        Node node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            recordAccess(key, null);
+            return null;
+        }
+        hits.increment();
+        recordAccess(key, node);
+        return node.cover;
+    }
+
+    /**
+     * Returns the cached cover of an itemset, computing and caching it if
+     * needed. Two threads missing the same key may both compute the cover, the
+     * first one inserted wins.
+     *
+     * @param key    The key of the itemset.
+     * @param loader Computes the cover of the itemset.
+     * @return The cover of the itemset.
+     */
+    public Cover computeIfAbsent(ItemsetKey key, Function<ItemsetKey, Cover> loader) {
+        Cover cover = getIfPresent(key);
+        return cover != null ? cover : put(key, loader.apply(key));
+    }
+
+    /**
+     * Caches the cover of an itemset, unless it is already cached.
+     *
+     * @param key   The key of the itemset.
+     * @param cover The cover of the itemset.
+     * @return The cover now associated with the key.
+     */
+    public Cover put(ItemsetKey key, Cover cover) {
+        long weight = ENTRY_OVERHEAD + Covers.sizeInBytes(cover);
+        if (weight > maximumBytes) {
+            return cover;
+        }
+        Node node = new Node(key, cover, weight);
+        Node prior = data.putIfAbsent(key, node);
+        if (prior != null) {
+            return prior.cover;
+        }
+        evictionLock.lock();
+        try {
+            if (data.get(key) == node) {
+                node.queue = window;
+                window.addLast(node);
+                windowBytes += weight;
+                windowEntries++;
+                totalBytes += weight;
+                evict();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        return cover;
+    }
+
+    /**
+     * Removes every cover, keeping the counters.
+     */
+    public void clear() {
+        evictionLock.lock();
+        try {
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+            windowBytes = 0;
+            windowEntries = 0;
+            protectedBytes = 0;
+            protectedEntries = 0;
+            totalBytes = 0;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public long size() {
+        return data.size();
+    }
+
+    /**
+     * @return The estimated size of the cached covers, in bytes.
+     */
+    public long weightedSize() {
+        evictionLock.lock();
+        try {
+            return totalBytes;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public double hitRate() {
+        long hitCount = hitCount();
+        long requests = hitCount + missCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CoverCache[size=" + size() + ", hits=" + hitCount() + ", misses=" + missCount() + ", evictions="
+                + evictionCount() + "]";
+    }
+
+    // --------------------------------------------------------------- policy
+
+    private void recordAccess(ItemsetKey key, Node node) {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            sketch.increment(key.hashCode());
+            if (node == null || node.queue == null) {
+                return;
+            }
+            if (node.queue == probation) {
+                probation.remove(node);
+                node.queue = protectedQueue;
+                protectedQueue.addLast(node);
+                protectedBytes += node.weight;
+                protectedEntries++;
+                while ((protectedBytes > protectedMaximum || protectedEntries > protectedMaximumEntries)
+                        && protectedQueue.first() != node) {
+                    Node demoted = protectedQueue.first();
+                    protectedQueue.remove(demoted);
+                    protectedBytes -= demoted.weight;
+                    protectedEntries--;
+                    demoted.queue = probation;
+                    probation.addLast(demoted);
+                }
+            } else {
+                node.queue.moveToLast(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Moves the overflow of the window to probation, then evicts until the
+     * bounds are met. Called under the eviction lock.
+     */
+    private void evict() {
+        while ((windowBytes > windowMaximum || windowEntries > windowMaximumEntries) && window.first() != null) {
+            Node node = window.first();
+            window.remove(node);
+            windowBytes -= node.weight;
+            windowEntries--;
+            node.queue = probation;
+            probation.addLast(node);
+        }
+        while (totalBytes > maximumBytes || data.size() > maximumEntries) {
+            Node candidate = probation.last();
+            Node victim = probation.first();
+            if (victim == null) {
+                victim = protectedQueue.first() != null ? protectedQueue.first() : window.first();
+                if (victim == null) {
+                    return;
+                }
+            } else if (candidate != victim
+                    && sketch.frequency(candidate.key.hashCode()) <= sketch.frequency(victim.key.hashCode())) {
+                victim = candidate;
+            }
+            remove(victim);
+        }
+    }
+
+    private void remove(Node node) {
+        node.queue.remove(node);
+        if (node.queue == window) {
+            windowBytes -= node.weight;
+            windowEntries--;
+        } else if (node.queue == protectedQueue) {
+            protectedBytes -= node.weight;
+            protectedEntries--;
+        }
+        node.queue = null;
+        totalBytes -= node.weight;
+        data.remove(node.key, node);
+        evictions.increment();
+    }
+
+    private static final class Node {
+        final ItemsetKey key;
+        final Cover cover;
+        final long weight;
+        AccessQueue queue;
+        Node previous;
+        Node next;
+
+        Node(ItemsetKey key, Cover cover, long weight) {
+            this.key = key;
+            this.cover = cover;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Intrusive doubly linked list of nodes, least recently used first.
+     */
+    private static final class AccessQueue {
+        private Node head;
+        private Node tail;
+
+        Node first() {
+            return head;
+        }
+
+        Node last() {
+            return tail;
+        }
+
+        void addLast(Node node) {
+            node.previous = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        void remove(Node node) {
+            if (node.previous == null) {
+                head = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+        }
+
+        void moveToLast(Node node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+        }
+    }
+}
@@ -0,0 +1,746 @@
+package tools.data;
+
+import java.util.Arrays;
+
+import com.zaxxer.sparsebits.SparseBitSet;
+
+/**
+ * Factories and set operation kernels of the {@link Cover} representations.
+ *
+ * The representation of a cover is the smallest one for its support and
+ * spread: a bitmap costs one bit per transaction, a sorted array 32 bits per
+ * transaction of the cover and a sparse cover 96 bits per non zero word
+ * (index + bits), bitmaps being preferred when close. Each AND / AND NOT /
+ * intersection count has a dedicated kernel for every pair of representations,
+ * so that two dense covers are intersected word by word and a rare item only
+ * probes the transactions it contains.
+ */
+public final class Covers {
+
+    private Covers() {
+    }
+
+    /**
+     * @param size The number of transactions.
+     * @return The empty cover.
+     */
+    public static Cover empty(int size) {
+        return new ArrayCover(new int[0], size);
+    }
+
+    /**
+     * @param size The number of transactions.
+     * @return The cover holding every transaction.
+     */
+    public static Cover full(int size) {
+        long[] words = new long[wordCount(size)];
+        Arrays.fill(words, -1L);
+        if ((size & 63) != 0) {
+            words[words.length - 1] = (1L << size) - 1;
+        }
+        return new DenseCover(words, size, size);
+    }
+
+    /**
+     * Converts a bitset to the most compact cover representation.
+     *
+     * @param bits The transaction indexes.
+     * @param size The number of transactions.
+     * @return The cover.
+     */
+    public static Cover of(SparseBitSet bits, int size) {
+        int[] tids = new int[bits.cardinality()];
+        int i = 0;
+        for (int tid = bits.nextSetBit(0); tid >= 0; tid = bits.nextSetBit(tid + 1)) {
+            tids[i++] = tid;
+        }
+        return fromSortedTids(tids, tids.length, size);
+    }
+
+    /**
+     * Builds the most compact cover holding the given transactions.
+     *
+     * @param tids   Sorted transaction indexes (the array may be kept).
+     * @param length The number of valid entries of {@code tids}.
+     * @param size   The number of transactions.
+     * @return The cover.
+     */
+    public static Cover fromSortedTids(int[] tids, int length, int size) {
+        int nonZeroWords = 0;
+        int lastWord = -1;
+        for (int i = 0; i < length; i++) {
+            if (tids[i] >>> 6 != lastWord) {
+                lastWord = tids[i] >>> 6;
+                nonZeroWords++;
+            }
+        }
+        switch (choose(length, nonZeroWords, size)) {
+            case DENSE:
+                long[] words = new long[wordCount(size)];
+                for (int i = 0; i < length; i++) {
+                    words[tids[i] >>> 6] |= 1L << tids[i];
+                }
+                return new DenseCover(words, size, length);
+            case SPARSE:
+                int[] wordIndexes = new int[nonZeroWords];
+                long[] sparseWords = new long[nonZeroWords];
+                int w = -1;
+                lastWord = -1;
+                for (int i = 0; i < length; i++) {
+                    if (tids[i] >>> 6 != lastWord) {
+                        lastWord = tids[i] >>> 6;
+                        wordIndexes[++w] = lastWord;
+                    }
+                    sparseWords[w] |= 1L << tids[i];
+                }
+                return new SparseCover(wordIndexes, sparseWords, size, length);
+            default:
+                return new ArrayCover(length == tids.length ? tids : Arrays.copyOf(tids, length), size);
+        }
+    }
+
+    /**
+     * Builds the most compact cover from a bitmap.
+     *
+     * @param words The bitmap (the array may be kept).
+     * @param size  The number of transactions.
+     * @return The cover.
+     */
+    public static Cover fromWords(long[] words, int size) {
+        int cardinality = 0;
+        int nonZeroWords = 0;
+        for (long word : words) {
+            if (word != 0) {
+                cardinality += Long.bitCount(word);
+                nonZeroWords++;
+            }
+        }
+        switch (choose(cardinality, nonZeroWords, size)) {
+            case DENSE:
+                return new DenseCover(words, size, cardinality);
+            case SPARSE:
+                int[] wordIndexes = new int[nonZeroWords];
+                long[] sparseWords = new long[nonZeroWords];
+                for (int i = 0, w = 0; i < words.length; i++) {
+                    if (words[i] != 0) {
+                        wordIndexes[w] = i;
+                        sparseWords[w++] = words[i];
+                    }
+                }
+                return new SparseCover(wordIndexes, sparseWords, size, cardinality);
+            default:
+                int[] tids = new int[cardinality];
+                for (int i = 0, t = 0; i < words.length; i++) {
+                    for (long word = words[i]; word != 0; word &= word - 1) {
+                        tids[t++] = (i << 6) + Long.numberOfTrailingZeros(word);
+                    }
+                }
+                return new ArrayCover(tids, size);
+        }
+    }
+
+    /**
+     * Builds the most compact cover from non zero words (zero words among the
+     * given ones are dropped).
+     */
+    static Cover fromSparseWords(int[] wordIndexes, long[] words, int length, int size) {
+        int cardinality = 0;
+        int nonZeroWords = 0;
+        for (int i = 0; i < length; i++) {
+            if (words[i] != 0) {
+                cardinality += Long.bitCount(words[i]);
+                wordIndexes[nonZeroWords] = wordIndexes[i];
+                words[nonZeroWords++] = words[i];
+            }
+        }
+        switch (choose(cardinality, nonZeroWords, size)) {
+            case DENSE:
+                long[] denseWords = new long[wordCount(size)];
+                for (int i = 0; i < nonZeroWords; i++) {
+                    denseWords[wordIndexes[i]] = words[i];
+                }
+                return new DenseCover(denseWords, size, cardinality);
+            case SPARSE:
+                return new SparseCover(Arrays.copyOf(wordIndexes, nonZeroWords), Arrays.copyOf(words, nonZeroWords),
+                        size, cardinality);
+            default:
+                int[] tids = new int[cardinality];
+                for (int i = 0, t = 0; i < nonZeroWords; i++) {
+                    for (long word = words[i]; word != 0; word &= word - 1) {
+                        tids[t++] = (wordIndexes[i] << 6) + Long.numberOfTrailingZeros(word);
+                    }
+                }
+                return new ArrayCover(tids, size);
+        }
+    }
+
+    enum Representation {
+        DENSE, ARRAY, SPARSE
+    }
+
+    static Representation choose(int cardinality, int nonZeroWords, int size) {
+        long denseBits = 64L * wordCount(size);
+        long arrayBits = 32L * cardinality;
+        long sparseBits = 96L * nonZeroWords;
+        // Bitmaps are favoured over sparse covers up to twice their size since
+        // their kernels need no word index lookup
+        if (denseBits <= arrayBits && denseBits <= 2 * sparseBits) {
+            return Representation.DENSE;
+        }
+        return sparseBits < arrayBits ? Representation.SPARSE : Representation.ARRAY;
+    }
+
+    static int wordCount(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    /**
+     * @return The estimated heap footprint of a cover, in bytes.
+     */
+    static long sizeInBytes(Cover cover) {
+        if (cover instanceof DenseCover) return 48 + 8L * ((DenseCover) cover).words.length;
+        if (cover instanceof ArrayCover) return 48 + 4L * ((ArrayCover) cover).tids.length;
+        if (cover instanceof SparseCover) return 64 + 12L * ((SparseCover) cover).words.length;
+        // Only the handle of an off-heap cover is on the heap
+        if (cover instanceof OffHeapCover) return 64;
+        return 48 + 8L * wordCount(cover.size());
+    }
+
+    static int bitCount(long[] words) {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    // ------------------------------------------------------------------ AND
+
+    /**
+     * @return The transactions in both covers.
+     */
+    public static Cover and(Cover a, Cover b) {
+        if (a instanceof ArrayCover) return and((ArrayCover) a, b);
+        if (b instanceof ArrayCover) return and((ArrayCover) b, a);
+        if (a instanceof SparseCover) return and((SparseCover) a, b);
+        if (b instanceof SparseCover) return and((SparseCover) b, a);
+        if (a instanceof DenseCover && b instanceof DenseCover) return and((DenseCover) a, (DenseCover) b);
+        if (a instanceof OffHeapCover || b instanceof OffHeapCover) return and(new Cover[] { a, b });
+        return filter(a, b, true);
+    }
+
+    private static Cover and(ArrayCover a, Cover b) {
+        int[] tids = a.tids;
+        int[] result = new int[tids.length];
+        int n = 0;
+        if (b instanceof ArrayCover) {
+            int[] other = ((ArrayCover) b).tids;
+            if (tids.length > other.length) {
+                return and((ArrayCover) b, a);
+            }
+            if (tids.length * 16 < other.length) {
+                // Skewed sizes: binary search the tids of the small cover
+                int from = 0;
+                for (int tid : tids) {
+                    int i = Arrays.binarySearch(other, from, other.length, tid);
+                    if (i >= 0) {
+                        result[n++] = tid;
+                        from = i + 1;
+                    } else {
+                        from = -i - 1;
+                    }
+                    if (from == other.length) break;
+                }
+            } else {
+                for (int i = 0, j = 0; i < tids.length && j < other.length;) {
+                    if (tids[i] < other[j]) i++;
+                    else if (tids[i] > other[j]) j++;
+                    else {
+                        result[n++] = tids[i];
+                        i++;
+                        j++;
+                    }
+                }
+            }
+        } else if (b instanceof SparseCover) {
+            SparseCover sparse = (SparseCover) b;
+            int w = 0;
+            for (int tid : tids) {
+                int wordIndex = tid >>> 6;
+                while (w < sparse.wordIndexes.length && sparse.wordIndexes[w] < wordIndex) w++;
+                if (w == sparse.wordIndexes.length) break;
+                if (sparse.wordIndexes[w] == wordIndex && (sparse.words[w] & (1L << tid)) != 0) {
+                    result[n++] = tid;
+                }
+            }
+        } else if (b instanceof DenseCover) {
+            long[] words = ((DenseCover) b).words;
+            for (int tid : tids) {
+                if ((words[tid >>> 6] & (1L << tid)) != 0) {
+                    result[n++] = tid;
+                }
+            }
+        } else {
+            for (int tid : tids) {
+                if (b.contains(tid)) {
+                    result[n++] = tid;
+                }
+            }
+        }
+        return new ArrayCover(n == result.length ? result : Arrays.copyOf(result, n), a.size);
+    }
+
+    private static Cover and(SparseCover a, Cover b) {
+        int[] wordIndexes = new int[a.wordIndexes.length];
+        long[] words = new long[a.wordIndexes.length];
+        int n = 0;
+        if (b instanceof SparseCover) {
+            SparseCover other = (SparseCover) b;
+            for (int i = 0, j = 0; i < a.wordIndexes.length && j < other.wordIndexes.length;) {
+                if (a.wordIndexes[i] < other.wordIndexes[j]) i++;
+                else if (a.wordIndexes[i] > other.wordIndexes[j]) j++;
+                else {
+                    wordIndexes[n] = a.wordIndexes[i];
+                    words[n++] = a.words[i++] & other.words[j++];
+                }
+            }
+        } else if (b instanceof DenseCover) {
+            long[] dense = ((DenseCover) b).words;
+            for (int i = 0; i < a.wordIndexes.length; i++) {
+                wordIndexes[n] = a.wordIndexes[i];
+                words[n++] = a.words[i] & dense[a.wordIndexes[i]];
+            }
+        } else {
+            for (int i = 0; i < a.wordIndexes.length; i++) {
+                wordIndexes[n] = a.wordIndexes[i];
+                words[n++] = a.words[i] & b.word(a.wordIndexes[i]);
+            }
+        }
+        return fromSparseWords(wordIndexes, words, n, a.size);
+    }
+
+    private static Cover and(DenseCover a, DenseCover b) {
+        long[] words = new long[Math.min(a.words.length, b.words.length)];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = a.words[i] & b.words[i];
+        }
+        return fromWords(words, a.size);
+    }
+
+    // -------------------------------------------------------------- AND NOT
+
+    /**
+     * @return The transactions of {@code a} that are not in {@code b}.
+     */
+    public static Cover andNot(Cover a, Cover b) {
+        if (a instanceof ArrayCover) return andNot((ArrayCover) a, b);
+        if (a instanceof SparseCover) return andNot((SparseCover) a, b);
+        if (a instanceof DenseCover) return andNot((DenseCover) a, b);
+        return filter(a, b, false);
+    }
+
+    private static Cover andNot(ArrayCover a, Cover b) {
+        int[] tids = a.tids;
+        int[] result = new int[tids.length];
+        int n = 0;
+        if (b instanceof ArrayCover) {
+            int[] other = ((ArrayCover) b).tids;
+            int j = 0;
+            for (int tid : tids) {
+                while (j < other.length && other[j] < tid) j++;
+                if (j == other.length || other[j] != tid) {
+                    result[n++] = tid;
+                }
+            }
+        } else if (b instanceof SparseCover) {
+            SparseCover sparse = (SparseCover) b;
+            int w = 0;
+            for (int tid : tids) {
+                int wordIndex = tid >>> 6;
+                while (w < sparse.wordIndexes.length && sparse.wordIndexes[w] < wordIndex) w++;
+                if (w == sparse.wordIndexes.length || sparse.wordIndexes[w] != wordIndex
+                        || (sparse.words[w] & (1L << tid)) == 0) {
+                    result[n++] = tid;
+                }
+            }
+        } else if (b instanceof DenseCover) {
+            long[] words = ((DenseCover) b).words;
+            for (int tid : tids) {
+                if ((words[tid >>> 6] & (1L << tid)) == 0) {
+                    result[n++] = tid;
+                }
+            }
+        } else {
+            for (int tid : tids) {
+                if (!b.contains(tid)) {
+                    result[n++] = tid;
+                }
+            }
+        }
+        return new ArrayCover(n == result.length ? result : Arrays.copyOf(result, n), a.size);
+    }
+
+    private static Cover andNot(SparseCover a, Cover b) {
+        int[] wordIndexes = a.wordIndexes.clone();
+        long[] words = a.words.clone();
+        if (b instanceof SparseCover) {
+            SparseCover other = (SparseCover) b;
+            for (int i = 0, j = 0; i < wordIndexes.length && j < other.wordIndexes.length;) {
+                if (wordIndexes[i] < other.wordIndexes[j]) i++;
+                else if (wordIndexes[i] > other.wordIndexes[j]) j++;
+                else words[i++] &= ~other.words[j++];
+            }
+        } else if (b instanceof ArrayCover) {
+            int w = 0;
+            for (int tid : ((ArrayCover) b).tids) {
+                int wordIndex = tid >>> 6;
+                while (w < wordIndexes.length && wordIndexes[w] < wordIndex) w++;
+                if (w == wordIndexes.length) break;
+                if (wordIndexes[w] == wordIndex) {
+                    words[w] &= ~(1L << tid);
+                }
+            }
+        } else if (b instanceof DenseCover) {
+            long[] dense = ((DenseCover) b).words;
+            for (int i = 0; i < wordIndexes.length; i++) {
+                words[i] &= ~dense[wordIndexes[i]];
+            }
+        } else {
+            for (int i = 0; i < wordIndexes.length; i++) {
+                words[i] &= ~b.word(wordIndexes[i]);
+            }
+        }
+        return fromSparseWords(wordIndexes, words, words.length, a.size);
+    }
+
+    private static Cover andNot(DenseCover a, Cover b) {
+        long[] words = a.words.clone();
+        if (b instanceof DenseCover) {
+            long[] other = ((DenseCover) b).words;
+            for (int i = 0; i < Math.min(words.length, other.length); i++) {
+                words[i] &= ~other[i];
+            }
+        } else if (b instanceof ArrayCover) {
+            for (int tid : ((ArrayCover) b).tids) {
+                if (tid < a.size) {
+                    words[tid >>> 6] &= ~(1L << tid);
+                }
+            }
+        } else if (b instanceof SparseCover) {
+            SparseCover sparse = (SparseCover) b;
+            for (int i = 0; i < sparse.wordIndexes.length && sparse.wordIndexes[i] < words.length; i++) {
+                words[sparse.wordIndexes[i]] &= ~sparse.words[i];
+            }
+        } else {
+            for (int i = 0; i < words.length; i++) {
+                words[i] &= ~b.word(i);
+            }
+        }
+        return fromWords(words, a.size);
+    }
+
+    private static Cover filter(Cover a, Cover b, boolean keepContained) {
+        int[] result = new int[a.cardinality()];
+        int n = 0;
+        for (int tid = a.nextSetBit(0); tid >= 0; tid = a.nextSetBit(tid + 1)) {
+            if (b.contains(tid) == keepContained) {
+                result[n++] = tid;
+            }
+        }
+        return fromSortedTids(result, n, a.size());
+    }
+
+    // -------------------------------------------------------- AND cardinality
+
+    /**
+     * Counts the transactions in both covers without building the intersection.
+     *
+     * @return The cardinality of {@code a AND b}.
+     */
+    public static int andCardinality(Cover a, Cover b) {
+        if (a instanceof ArrayCover) return andCardinality((ArrayCover) a, b);
+        if (b instanceof ArrayCover) return andCardinality((ArrayCover) b, a);
+        if (a instanceof SparseCover) return andCardinality((SparseCover) a, b);
+        if (b instanceof SparseCover) return andCardinality((SparseCover) b, a);
+        if (a instanceof DenseCover && b instanceof DenseCover) {
+            long[] words = ((DenseCover) a).words;
+            long[] other = ((DenseCover) b).words;
+            int count = 0;
+            for (int i = 0; i < Math.min(words.length, other.length); i++) {
+                count += Long.bitCount(words[i] & other[i]);
+            }
+            return count;
+        }
+        if (a instanceof OffHeapCover || b instanceof OffHeapCover) return andCardinality(new Cover[] { a, b });
+        int count = 0;
+        for (int tid = a.nextSetBit(0); tid >= 0; tid = a.nextSetBit(tid + 1)) {
+            if (b.contains(tid)) count++;
+        }
+        return count;
+    }
+
+    private static int andCardinality(ArrayCover a, Cover b) {
+        int[] tids = a.tids;
+        int count = 0;
+        if (b instanceof ArrayCover) {
+            int[] other = ((ArrayCover) b).tids;
+            for (int i = 0, j = 0; i < tids.length && j < other.length;) {
+                if (tids[i] < other[j]) i++;
+                else if (tids[i] > other[j]) j++;
+                else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+        } else if (b instanceof SparseCover) {
+            SparseCover sparse = (SparseCover) b;
+            int w = 0;
+            for (int tid : tids) {
+                int wordIndex = tid >>> 6;
+                while (w < sparse.wordIndexes.length && sparse.wordIndexes[w] < wordIndex) w++;
+                if (w == sparse.wordIndexes.length) break;
+                if (sparse.wordIndexes[w] == wordIndex && (sparse.words[w] & (1L << tid)) != 0) {
+                    count++;
+                }
+            }
+        } else if (b instanceof DenseCover) {
+            long[] words = ((DenseCover) b).words;
+            for (int tid : tids) {
+                if ((words[tid >>> 6] & (1L << tid)) != 0) count++;
+            }
+        } else {
+            for (int tid : tids) {
+                if (b.contains(tid)) count++;
+            }
+        }
+        return count;
+    }
+
+    private static int andCardinality(SparseCover a, Cover b) {
+        int count = 0;
+        if (b instanceof SparseCover) {
+            SparseCover other = (SparseCover) b;
+            for (int i = 0, j = 0; i < a.wordIndexes.length && j < other.wordIndexes.length;) {
+                if (a.wordIndexes[i] < other.wordIndexes[j]) i++;
+                else if (a.wordIndexes[i] > other.wordIndexes[j]) j++;
+                else count += Long.bitCount(a.words[i++] & other.words[j++]);
+            }
+        } else if (b instanceof DenseCover) {
+            long[] dense = ((DenseCover) b).words;
+            for (int i = 0; i < a.wordIndexes.length; i++) {
+                count += Long.bitCount(a.words[i] & dense[a.wordIndexes[i]]);
+            }
+        } else {
+            for (int i = 0; i < a.wordIndexes.length; i++) {
+                count += Long.bitCount(a.words[i] & b.word(a.wordIndexes[i]));
+            }
+        }
+        return count;
+    }
+
+    // ------------------------------------------------------------ k-way AND
+
+    /**
+     * Intersects any number of covers in a single pass, without building the
+     * intermediate intersections.
+     *
+     * @param covers At least one cover, all over the same transactions.
+     * @return The transactions in every cover.
+     */
+    public static Cover and(Cover... covers) {
+        Cover[] sorted = bySupport(covers);
+        if (sorted.length == 1) return sorted[0];
+        int capacity = nonZeroWordsBound(sorted[0]);
+        int[] wordIndexes = new int[capacity];
+        long[] words = new long[capacity];
+        int n = intersect(sorted, wordIndexes, words, null);
+        return fromSparseWords(wordIndexes, words, n, sorted[0].size());
+    }
+
+    /**
+     * Counts the transactions in every cover in a single pass, without
+     * building any cover.
+     *
+     * @param covers At least one cover, all over the same transactions.
+     * @return The cardinality of the intersection of the covers.
+     */
+    public static int andCardinality(Cover... covers) {
+        Cover[] sorted = bySupport(covers);
+        if (sorted.length == 1) return sorted[0].cardinality();
+        return intersect(sorted, null, null, null);
+    }
+
+    /**
+     * Sums the weights of the transactions of a cover, e.g. the number of
+     * copies of each unique transaction of a deduplicated dataset.
+     *
+     * @param cover   A cover.
+     * @param weights The weight of each transaction.
+     * @return The total weight of the cover.
+     */
+    public static int weightedCardinality(Cover cover, int[] weights) {
+        return intersect(new Cover[] { cover }, null, null, weights);
+    }
+
+    /**
+     * Sums the weights of the transactions in every cover in a single pass,
+     * without building any cover.
+     *
+     * @param weights The weight of each transaction.
+     * @param covers  At least one cover, all over the same transactions.
+     * @return The total weight of the intersection of the covers.
+     */
+    public static int andWeightedCardinality(int[] weights, Cover... covers) {
+        return intersect(bySupport(covers), null, null, weights);
+    }
+
+    /**
+     * Sorts a copy of the covers by increasing cardinality so that the
+     * rarest cover drives the intersection (insertion sort, there are only a
+     * handful of covers).
+     */
+    private static Cover[] bySupport(Cover[] covers) {
+        if (covers.length == 0) {
+            throw new IllegalArgumentException("At least one cover is required.");
+        }
+        Cover[] sorted = covers.clone();
+        for (int i = 1; i < sorted.length; i++) {
+            Cover cover = sorted[i];
+            int j = i - 1;
+            for (; j >= 0 && sorted[j].cardinality() > cover.cardinality(); j--) {
+                sorted[j + 1] = sorted[j];
+            }
+            sorted[j + 1] = cover;
+        }
+        return sorted;
+    }
+
+    private static int nonZeroWordsBound(Cover cover) {
+        if (cover instanceof SparseCover) return ((SparseCover) cover).wordIndexes.length;
+        if (cover instanceof DenseCover) return ((DenseCover) cover).words.length;
+        return Math.min(cover.cardinality(), wordCount(cover.size()));
+    }
+
+    /**
+     * Walks the non zero words of the first (rarest) cover and ANDs each of
+     * them with the same word of the other covers, stopping at the first
+     * cover that clears it. The other covers are probed through cursors since
+     * words are visited in increasing order.
+     *
+     * @param sorted      The covers, the rarest first.
+     * @param wordIndexes Receives the indexes of the resulting words, or null
+     *                    to only count.
+     * @param words       Receives the resulting words, or null to only count.
+     * @param weights     The weights of the transactions when counting, or
+     *                    null to count each transaction once.
+     * @return The number of words written, or the (weighted) cardinality when
+     *         counting.
+     */
+    private static int intersect(Cover[] sorted, int[] wordIndexes, long[] words, int[] weights) {
+        Cover driver = sorted[0];
+        if (driver.isEmpty()) return 0;
+        WordCursor[] cursors = new WordCursor[sorted.length - 1];
+        for (int c = 0; c < cursors.length; c++) {
+            cursors[c] = new WordCursor(sorted[c + 1]);
+        }
+        int n = 0;
+        if (driver instanceof DenseCover) {
+            long[] driverWords = ((DenseCover) driver).words;
+            for (int w = 0; w < driverWords.length; w++) {
+                if (driverWords[w] != 0) {
+                    n = emit(w, probe(cursors, w, driverWords[w]), wordIndexes, words, weights, n);
+                }
+            }
+        } else if (driver instanceof SparseCover) {
+            SparseCover sparse = (SparseCover) driver;
+            for (int i = 0; i < sparse.wordIndexes.length; i++) {
+                int w = sparse.wordIndexes[i];
+                n = emit(w, probe(cursors, w, sparse.words[i]), wordIndexes, words, weights, n);
+            }
+        } else if (driver instanceof ArrayCover) {
+            int[] tids = ((ArrayCover) driver).tids;
+            for (int i = 0; i < tids.length;) {
+                int w = tids[i] >>> 6;
+                long word = 0L;
+                for (; i < tids.length && tids[i] >>> 6 == w; i++) {
+                    word |= 1L << tids[i];
+                }
+                n = emit(w, probe(cursors, w, word), wordIndexes, words, weights, n);
+            }
+        } else {
+            // Other representations (e.g. off-heap covers) are walked word by
+            // word through their set bits
+            for (int tid = driver.nextSetBit(0); tid >= 0;) {
+                int w = tid >>> 6;
+                long word = driver.word(w);
+                n = emit(w, probe(cursors, w, word), wordIndexes, words, weights, n);
+                long next = (w + 1L) << 6;
+                tid = next > Integer.MAX_VALUE ? -1 : driver.nextSetBit((int) next);
+            }
+        }
+        return n;
+    }
+
+    private static long probe(WordCursor[] cursors, int wordIndex, long word) {
+        for (int c = 0; c < cursors.length && word != 0; c++) {
+            word &= cursors[c].word(wordIndex);
+        }
+        return word;
+    }
+
+    private static int emit(int wordIndex, long word, int[] wordIndexes, long[] words, int[] weights, int n) {
+        if (wordIndexes == null) {
+            if (weights == null) {
+                return n + Long.bitCount(word);
+            }
+            for (; word != 0; word &= word - 1) {
+                n += weights[(wordIndex << 6) + Long.numberOfTrailingZeros(word)];
+            }
+            return n;
+        }
+        if (word != 0) {
+            wordIndexes[n] = wordIndex;
+            words[n++] = word;
+        }
+        return n;
+    }
+
+    /**
+     * Reads the words of a cover in increasing word index order, resuming
+     * from the previous position instead of searching the whole cover.
+     */
+    private static final class WordCursor {
+
+        private final Cover cover;
+        private int position;
+
+        WordCursor(Cover cover) {
+            this.cover = cover;
+        }
+
+        long word(int wordIndex) {
+            if (cover instanceof DenseCover) {
+                long[] words = ((DenseCover) cover).words;
+                return wordIndex < words.length ? words[wordIndex] : 0L;
+            }
+            if (cover instanceof SparseCover) {
+                int[] indexes = ((SparseCover) cover).wordIndexes;
+                while (position < indexes.length && indexes[position] < wordIndex) position++;
+                return position < indexes.length && indexes[position] == wordIndex
+                        ? ((SparseCover) cover).words[position]
+                        : 0L;
+            }
+            if (cover instanceof ArrayCover) {
+                int[] tids = ((ArrayCover) cover).tids;
+                while (position < tids.length && tids[position] >>> 6 < wordIndex) position++;
+                long word = 0L;
+                for (int i = position; i < tids.length && tids[i] >>> 6 == wordIndex; i++) {
+                    word |= 1L << tids[i];
+                }
+                return word;
+            }
+            return cover.word(wordIndex);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package tools.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Parallel parser of .dat transaction files. The file is split into byte
+ * ranges aligned on line starts, each range is memory mapped and tokenized by
+ * a worker thread into a {@link Chunk} holding its own item dictionary, item
+ * covers and equivalence classes, numbered from the start of the range. The
+ * chunks are then merged in file order by {@link DatasetBuilder}, which
+ * remaps their item ids and offsets their transaction indexes.
+ *
+ * Tokens are split on commas, spaces, tabs, form feeds and vertical tabs,
+ * lines on '\n' and '\r', and control characters are trimmed from the tokens:
+ * the same items as splitting the lines on {@code [,\s]+} and trimming.
+ */
+final class DatFileParser {
+
+    /** Files smaller than this are parsed by a single thread. */
+    private static final long MIN_PARALLEL_SIZE = 4L << 20;
+    private static final long MIN_RANGE_SIZE = 1L << 20;
+    private static final long MAX_RANGE_SIZE = 1L << 30;
+
+    private DatFileParser() {
+    }
+
+    /**
+     * Parses a file with as many ranges as there are processors, for files
+     * large enough.
+     */
+    static List<Chunk> parse(Path path, boolean storeTransactions) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int nbRanges = 1;
+            if (size >= MIN_PARALLEL_SIZE) {
+                nbRanges = (int) Math.min(Runtime.getRuntime().availableProcessors(), size / MIN_RANGE_SIZE);
+            }
+            return parse(channel, Math.max(nbRanges, (int) ((size + MAX_RANGE_SIZE - 1) / MAX_RANGE_SIZE)),
+                    storeTransactions);
+        }
+    }
+
+    /**
+     * Parses a file split into (about) the given number of ranges.
+     */
+    static List<Chunk> parse(Path path, int nbRanges, boolean storeTransactions) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return parse(channel, nbRanges, storeTransactions);
+        }
+    }
+
+    private static List<Chunk> parse(FileChannel channel, int nbRanges, boolean storeTransactions)
+            throws IOException {
+        long[] bounds = lineAlignedBounds(channel, nbRanges);
+        Charset charset = Charset.defaultCharset();
+        try {
+            return IntStream.range(0, bounds.length - 1).parallel().mapToObj(range -> {
+                try {
+                    long start = bounds[range];
+                    MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, start, bounds[range + 1] - start);
+                    return new Chunk(charset, storeTransactions).parse(buffer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Splits the file into ranges of about the same size, each starting right
+     * after a line end (empty ranges are dropped).
+     */
+    private static long[] lineAlignedBounds(FileChannel channel, int nbRanges) throws IOException {
+        long size = channel.size();
+        long[] bounds = new long[nbRanges + 1];
+        int n = 1;
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        for (int range = 1; range < nbRanges; range++) {
+            long position = Math.max(bounds[n - 1], size * range / nbRanges);
+            long lineStart = size;
+            search: while (position < size) {
+                probe.clear();
+                int read = channel.read(probe, position);
+                if (read <= 0) break;
+                for (int i = 0; i < read; i++) {
+                    byte b = probe.get(i);
+                    if (b == '\n' || b == '\r') {
+                        lineStart = position + i + 1;
+                        break search;
+                    }
+                }
+                position += read;
+            }
+            if (lineStart > bounds[n - 1] && lineStart < size) {
+                bounds[n++] = lineStart;
+            }
+        }
+        bounds[n++] = size;
+        return Arrays.copyOf(bounds, n);
+    }
+
+    /**
+     * Items, covers and classes of the transactions of one range, with item
+     * ids local to the chunk (in order of first appearance) and transaction
+     * indexes counted from the start of the range.
+     */
+    static final class Chunk {
+
+        private final Charset charset;
+        private final boolean storeTransactions;
+        private final Object2IntOpenHashMap<String> idsByItem = new Object2IntOpenHashMap<>();
+        final List<String> items = new ArrayList<>();
+        int[][] itemTids = new int[64][];
+        int[] itemTidCounts = new int[64];
+        final List<int[]> transactions = new ArrayList<>();
+        final UnionFind classes = new UnionFind(new String[0]);
+        int nbTransactions;
+
+        private byte[] token = new byte[32];
+        private int[] transactionBuffer = new int[64];
+        private int transactionSize;
+
+        Chunk(Charset charset, boolean storeTransactions) {
+            this.charset = charset;
+            this.storeTransactions = storeTransactions;
+            this.idsByItem.defaultReturnValue(ItemDictionary.UNKNOWN_ITEM);
+        }
+
+        Chunk parse(ByteBuffer buffer) {
+            int limit = buffer.limit();
+            int tokenLength = 0;
+            for (int i = 0; i < limit; i++) {
+                byte b = buffer.get(i);
+                switch (b) {
+                    case '\n':
+                    case '\r':
+                        endToken(tokenLength);
+                        tokenLength = 0;
+                        endLine();
+                        break;
+                    case ' ':
+                    case ',':
+                    case '\t':
+                    case 0x0B:
+                    case '\f':
+                        endToken(tokenLength);
+                        tokenLength = 0;
+                        break;
+                    default:
+                        if (tokenLength == token.length) {
+                            token = Arrays.copyOf(token, 2 * tokenLength);
+                        }
+                        token[tokenLength++] = b;
+                }
+            }
+            endToken(tokenLength);
+            endLine();
+            return this;
+        }
+
+        private void endToken(int length) {
+            // Same trimming as String.trim()
+            int start = 0;
+            while (start < length && (token[start] & 0xFF) <= ' ') start++;
+            while (length > start && (token[length - 1] & 0xFF) <= ' ') length--;
+            if (start == length) {
+                return;
+            }
+            String item = new String(token, start, length - start, charset);
+            int id = idsByItem.getInt(item);
+            if (id == ItemDictionary.UNKNOWN_ITEM) {
+                id = items.size();
+                idsByItem.put(item, id);
+                items.add(item);
+                classes.add(item);
+                if (id == itemTids.length) {
+                    itemTids = Arrays.copyOf(itemTids, 2 * id);
+                    itemTidCounts = Arrays.copyOf(itemTidCounts, 2 * id);
+                }
+                itemTids[id] = new int[4];
+            }
+            if (transactionSize == transactionBuffer.length) {
+                transactionBuffer = Arrays.copyOf(transactionBuffer, 2 * transactionSize);
+            }
+            transactionBuffer[transactionSize++] = id;
+        }
+
+        private void endLine() {
+            if (transactionSize == 0) {
+                return;
+            }
+            int tid = nbTransactions++;
+            int classRep = transactionBuffer[0];
+            for (int i = 0; i < transactionSize; i++) {
+                int item = transactionBuffer[i];
+                int count = itemTidCounts[item];
+                // An item repeated in a transaction is recorded once
+                if (count == 0 || itemTids[item][count - 1] != tid) {
+                    if (count == itemTids[item].length) {
+                        itemTids[item] = Arrays.copyOf(itemTids[item], 2 * count);
+                    }
+                    itemTids[item][itemTidCounts[item]++] = tid;
+                }
+                classes.union(item, classRep);
+            }
+            if (storeTransactions) {
+                transactions.add(Arrays.copyOf(transactionBuffer, transactionSize));
+            }
+            transactionSize = 0;
+        }
+    }
+}
@@ -3,86 +3,632 @@ package tools.data;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import com.zaxxer.sparsebits.SparseBitSet;
 
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 import tools.rules.DecisionRule;
+import tools.rules.MeasureCache;
 import tools.utils.RandomUtil;
 
+/**
+ * Transactional dataset. Items are dictionary encoded at load time: the
+ * transactions, the item covers and the antecedent / consequent items are all
+ * indexed by the dense item ids of {@link #getDictionary()}. The String based
+ * accessors are kept as a translation layer over the encoded data.
+ *
+ * The covers of the itemsets evaluated by the rules are cached once per
+ * dataset in {@link #getCoverCache()}, so that rules, samplers and threads
+ * working on the same dataset share their intersections.
+ *
+ * The item covers can be moved out of the heap into a {@link CoverArena}
+ * (see {@link #storeCoversOffHeap(CoverArena)}); closing the dataset then
+ * releases them.
+ */
 @Getter
-public class Dataset {
+public class Dataset implements AutoCloseable {
 
     private String filename;
     private String expDir;
-    private @Setter @Getter Map<String, SparseBitSet> itemsMap; 
-    private @Setter @Getter Set<String> consequentItemsSet; 
-    private @Setter @Getter Set<String> antecedentItemsSet; 
-    private @Setter @Getter String[] consequentItemsArray; 
-    private @Setter @Getter String[] antecedentItemsArray; 
-    private @Setter @Getter int nbAntecedentItems; 
-    private @Setter @Getter int nbConsequentItems; 
-    private @Setter @Getter int nbTransactions; 
-    private @Setter @Getter String[][] transactions; 
-    private @Getter UnionFind equivalenceClasses; 
+    private @Getter ItemDictionary dictionary;
+    private @Getter int[][] encodedTransactions;
+    private @Getter Cover[] covers;
+    private @Getter int[] consequentItemIds;
+    private @Getter int[] antecedentItemIds;
+    private boolean[] consequentMask;
+    private @Setter @Getter Set<String> consequentItemsSet;
+    private @Setter @Getter Set<String> antecedentItemsSet;
+    private @Setter @Getter String[] consequentItemsArray;
+    private @Setter @Getter String[] antecedentItemsArray;
+    private @Setter @Getter int nbAntecedentItems;
+    private @Setter @Getter int nbConsequentItems;
+    private @Setter @Getter int nbTransactions;
+    /**
+     * Number of rows of the covers: the number of transactions, or of unique
+     * transactions once deduplicated.
+     */
+    private @Getter int nbRows;
+    /** Number of copies of each row, or null when each row is one transaction. */
+    private @Getter int[] weights;
+    /** Cumulative weights of the rows, to draw a transaction uniformly. */
+    private @Getter(AccessLevel.NONE) int[] rowEnds;
+    private @Getter UnionFind equivalenceClasses;
+    /** For each item id, the index of its equivalence class. */
+    private @Getter int[] classOf;
+    /** Covers of itemsets, shared by all the rules built on this dataset. */
+    private @Setter @Getter CoverCache coverCache = CoverCache.withDefaultBounds();
+    /** Supports and pair counts of the items, built on first use. */
+    private volatile CoOccurrenceIndex coOccurrenceIndex;
+    /** Off-heap storage of the item covers, or null when they are on the heap. */
+    private volatile CoverArena coverArena;
+    /** Measure vectors by supports, one cache per list of measures and smoothing. */
+    private final @Getter(AccessLevel.NONE) Map<List<Object>, MeasureCache> measureCaches = new ConcurrentHashMap<>();
+    /** Last measure cache asked for, found again by identity of the measure names. */
+    private volatile @Getter(AccessLevel.NONE) MeasureCache lastMeasureCache;
+
+    /** Number of most frequent items whose pairs are counted by default. */
+    public static final int DEFAULT_INDEXED_ITEMS = 512;
 
     public Dataset(String filename, String expDir, Set<String> consequentItemsSet) throws IOException {
+        this(new DatasetBuilder().readFile(filename, expDir), consequentItemsSet);
+    }
+
+    public Dataset(String[][] transactionalDataset, Set<String> consequentItemsSet) {
+        this(new DatasetBuilder().addTransactions(transactionalDataset), consequentItemsSet);
+    }
+
+    /**
+     * Builds a dataset from the state of a streaming builder.
+     */
+    Dataset(DatasetBuilder builder, Set<String> consequentItemsSet) {
+        this.filename = builder.getFilename();
+        this.expDir = builder.getExpDir();
+        initialize(builder, consequentItemsSet);
+    }
+
+    private void initialize(DatasetBuilder builder, Set<String> consequentItemsSet) {
+        this.dictionary = builder.getDictionary();
+        this.encodedTransactions = builder.getEncodedTransactions();
+        this.covers = builder.getCoversArray();
+        this.nbRows = builder.getNbTransactions();
+        setWeights(null);
+        this.equivalenceClasses = builder.getEquivalenceClasses();
+        initializeItems(consequentItemsSet);
+        this.classOf = equivalenceClasses.classes();
+    }
+
+    /**
+     * Replaces the transactions of the dataset: the dictionary, the covers and
+     * the equivalence classes are rebuilt, the consequent items are kept.
+     *
+     * @deprecated Build a new dataset from the transactions instead.
+     */
+    @Deprecated
+    public void setTransactions(String[][] transactions) {
+        initialize(new DatasetBuilder().addTransactions(transactions), getConsequentItemsSet());
+        this.coverArena = null;
+        coverCache.clear();
+        coOccurrenceIndex = null;
+        measureCaches.clear();
+        lastMeasureCache = null;
+    }
+
+    /**
+     * Replaces the item covers of the dataset: the transactions are rebuilt
+     * from them (as in {@link #setTransactions(String[][])}), the dataset
+     * keeping at least its number of transactions.
+     *
+     * @deprecated Build a new dataset from the transactions instead.
+     */
+    @Deprecated
+    public void setItemsMap(Map<String, SparseBitSet> itemsMap) {
+        int size = nbTransactions;
+        for (SparseBitSet cover : itemsMap.values()) {
+            size = Math.max(size, cover.length());
+        }
+        List<List<String>> transactions = new ArrayList<>(size);
+        for (int tid = 0; tid < size; tid++) {
+            transactions.add(new ArrayList<>());
+        }
+        for (Map.Entry<String, SparseBitSet> entry : itemsMap.entrySet()) {
+            SparseBitSet cover = entry.getValue();
+            for (int tid = cover.nextSetBit(0); tid >= 0; tid = cover.nextSetBit(tid + 1)) {
+                transactions.get(tid).add(entry.getKey());
+            }
+        }
+        String[][] transactionArray = new String[size][];
+        for (int tid = 0; tid < size; tid++) {
+            transactionArray[tid] = transactions.get(tid).toArray(new String[0]);
+        }
+        setTransactions(transactionArray);
+    }
+
+    /**
+     * Builds a dataset from already encoded transactions and covers (e.g. read
+     * from a binary dataset file).
+     */
+    Dataset(String filename, String expDir, ItemDictionary dictionary, int[][] encodedTransactions,
+            Cover[] covers, Set<String> consequentItemsSet) {
+        this(filename, expDir, dictionary, encodedTransactions, covers, null, null, consequentItemsSet);
+    }
+
+    /**
+     * Builds a dataset from already encoded transactions, covers and
+     * equivalence classes (e.g. read from a snapshot).
+     *
+     * @param equivalenceClasses The classes of the items, or null to find them
+     *                           from the transactions.
+     * @param weights            The number of copies of each transaction, or
+     *                           null for one copy each.
+     */
+    Dataset(String filename, String expDir, ItemDictionary dictionary, int[][] encodedTransactions,
+            Cover[] covers, UnionFind equivalenceClasses, int[] weights, Set<String> consequentItemsSet) {
         this.filename = filename;
         this.expDir = expDir;
-        this.transactions = getTransactionalDataset();
-        this.nbTransactions = this.transactions.length;
-        getItemsFromTransactions();
-        setConsequentItemsSet(consequentItemsSet);
-        setConsequentItemsArray(getConsequentItemsSet().toArray(new String[0]));
-        initializeAntecedentItemsValues();
-        this.nbAntecedentItems = getAntecedentItemsSet().size();
-        this.nbConsequentItems = getConsequentItemsSet().size();
-        findEquivalenceClasses();
+        this.dictionary = dictionary;
+        this.encodedTransactions = encodedTransactions;
+        this.covers = covers;
+        this.nbRows = encodedTransactions.length;
+        setWeights(weights);
+        this.equivalenceClasses = equivalenceClasses;
+        initializeItems(consequentItemsSet);
+        if (equivalenceClasses == null) {
+            findEquivalenceClasses();
+        } else {
+            this.classOf = equivalenceClasses.classes();
+        }
     }
 
-    public Dataset(String[][] transactionalDataset, Set<String> consequentItemsSet) {
-        this.transactions = transactionalDataset;
-        this.nbTransactions = transactionalDataset.length;
-        getItemsFromTransactions();
+    /**
+     * Saves a snapshot of the dataset (see {@link BinaryDataset}).
+     *
+     * @param path The path of the snapshot.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void save(Path path) throws IOException {
+        BinaryDataset.write(this, path);
+    }
+
+    /**
+     * Loads a dataset from a snapshot written by {@link #save(Path)}.
+     *
+     * @param path               The path of the snapshot.
+     * @param consequentItemsSet The consequent (class) items.
+     * @return The dataset.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    public static Dataset load(Path path, Set<String> consequentItemsSet) throws IOException {
+        return BinaryDataset.load(path, consequentItemsSet);
+    }
+
+    /**
+     * Moves the item covers to an arena, out of the heap. The covers of the
+     * cached itemsets stay on the heap.
+     *
+     * @param arena The arena receiving the covers, released when the dataset
+     *              is closed.
+     */
+    public synchronized void storeCoversOffHeap(CoverArena arena) {
+        this.coverArena = arena;
+        if (covers != null) {
+            for (int id = 0; id < covers.length; id++) {
+                covers[id] = arena.store(covers[id]);
+            }
+        }
+        coverCache.clear();
+    }
+
+    /**
+     * Releases the cached covers and the arena of the item covers, if any: the
+     * dataset must not be used afterwards when its covers are off-heap.
+     */
+    @Override
+    public void close() throws IOException {
+        coverCache.clear();
+        if (coverArena != null) {
+            coverArena.close();
+        }
+    }
+
+    /**
+     * @return The memory used by the covers, the cached covers and the
+     *         transactions of the dataset.
+     */
+    public MemoryUsage getMemoryUsage() {
+        long heapCoverBytes = 0;
+        long offHeapCoverBytes = 0;
+        for (Cover cover : storedCovers()) {
+            if (cover == null) continue;
+            heapCoverBytes += Covers.sizeInBytes(cover);
+            if (cover instanceof OffHeapCover) {
+                offHeapCoverBytes += ((OffHeapCover) cover).offHeapBytes();
+            }
+        }
+        long transactionBytes = 0;
+        if (encodedTransactions != null) {
+            transactionBytes = 16 + 8L * encodedTransactions.length;
+            for (int[] transaction : encodedTransactions) {
+                transactionBytes += 16 + 4L * transaction.length;
+            }
+        }
+        return new MemoryUsage(heapCoverBytes, offHeapCoverBytes, coverCache.weightedSize(), transactionBytes);
+    }
+
+    /**
+     * @param measureNames The names of the measures, not changed afterwards.
+     * @param smoothCounts The smoothing factor for the counts.
+     * @return The cache of the measure vectors of the rules of this dataset by
+     *         their supports, created on the first call for these measures and
+     *         smoothing factor.
+     */
+    public MeasureCache getMeasureCache(String[] measureNames, double smoothCounts) {
+        MeasureCache cache = lastMeasureCache;
+        if (cache != null && cache.isScopeOf(measureNames, nbTransactions, smoothCounts)) {
+            return cache;
+        }
+        int transactions = nbTransactions;
+        List<Object> scope = Arrays.asList(Arrays.asList(measureNames.clone()), transactions, smoothCounts);
+        cache = measureCaches.computeIfAbsent(scope,
+                key -> new MeasureCache(measureNames, transactions, smoothCounts, MeasureCache.DEFAULT_CAPACITY));
+        if (cache.isScopeOf(measureNames, transactions, smoothCounts)) {
+            lastMeasureCache = cache;
+        }
+        return cache;
+    }
+
+    /**
+     * @return The measure caches of the dataset, to report their hit rates.
+     */
+    public Collection<MeasureCache> getMeasureCaches() {
+        return Collections.unmodifiableCollection(measureCaches.values());
+    }
+
+    /**
+     * @return The item covers computed so far (null for the ones not computed).
+     */
+    Cover[] storedCovers() {
+        return covers == null ? new Cover[0] : covers;
+    }
+
+    /**
+     * Approximate memory used by a dataset, in bytes.
+     */
+    @AllArgsConstructor
+    @Getter
+    public static final class MemoryUsage {
+        /** Item covers on the heap (handles only for the off-heap covers). */
+        private final long heapCoverBytes;
+        /** Item covers in the arena of the dataset. */
+        private final long offHeapCoverBytes;
+        /** Covers of the cached itemsets. */
+        private final long cachedCoverBytes;
+        /** Encoded transactions, when they are stored. */
+        private final long transactionBytes;
+
+        public long getHeapBytes() {
+            return heapCoverBytes + cachedCoverBytes + transactionBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "MemoryUsage[heapCovers=" + heapCoverBytes + ", offHeapCovers=" + offHeapCoverBytes
+                    + ", cachedCovers=" + cachedCoverBytes + ", transactions=" + transactionBytes + "]";
+        }
+    }
+
+    /**
+     * Builds a dataset over (a subset of) the transactions of another one,
+     * sharing its dictionary and its antecedent / consequent items. The item
+     * covers and the transactions are provided by the caller or the subclass
+     * (see {@link DatasetView} and {@link #deduplicate()}).
+     *
+     * @param parent  The dataset holding the transactions.
+     * @param nbRows  The number of rows of the new dataset.
+     * @param weights The number of copies of each row, or null for one copy
+     *                each.
+     */
+    protected Dataset(Dataset parent, int nbRows, int[] weights) {
+        this.filename = parent.filename;
+        this.expDir = parent.expDir;
+        this.dictionary = parent.dictionary;
+        this.nbRows = nbRows;
+        setWeights(weights);
+        this.consequentItemIds = parent.consequentItemIds;
+        this.antecedentItemIds = parent.antecedentItemIds;
+        this.consequentMask = parent.consequentMask;
+        this.consequentItemsSet = parent.consequentItemsSet;
+        this.antecedentItemsSet = parent.antecedentItemsSet;
+        this.consequentItemsArray = parent.consequentItemsArray;
+        this.antecedentItemsArray = parent.antecedentItemsArray;
+        this.nbAntecedentItems = parent.nbAntecedentItems;
+        this.nbConsequentItems = parent.nbConsequentItems;
+        // Items of different classes in the parent never co-occur in a subset
+        // of its transactions either: the classes are kept, possibly coarser
+        // than the ones of the subset
+        this.equivalenceClasses = parent.equivalenceClasses;
+        this.classOf = parent.classOf;
+    }
+
+    private void setWeights(int[] weights) {
+        this.weights = weights;
+        if (weights == null) {
+            this.nbTransactions = nbRows;
+            this.rowEnds = null;
+        } else {
+            this.rowEnds = new int[weights.length];
+            int total = 0;
+            for (int row = 0; row < weights.length; row++) {
+                total += weights[row];
+                rowEnds[row] = total;
+            }
+            this.nbTransactions = total;
+        }
+    }
+
+    /**
+     * Collapses identical transactions (same set of items) into a single row
+     * weighted by its number of copies. Frequencies, measures and the number
+     * of transactions are unchanged, but covers only span the unique rows.
+     *
+     * @return The deduplicated dataset, sharing the items of this dataset.
+     */
+    public Dataset deduplicate() {
+        Map<ItemsetKey, Integer> rowOfItems = new HashMap<>();
+        List<int[]> rows = new ArrayList<>();
+        int[] rowWeights = new int[16];
+        for (int row = 0; row < nbRows; row++) {
+            int[] transaction = getTransaction(row);
+            ItemsetKey key = ItemsetKey.of(Arrays.stream(transaction).distinct().toArray());
+            Integer uniqueRow = rowOfItems.get(key);
+            if (uniqueRow == null) {
+                uniqueRow = rows.size();
+                rowOfItems.put(key, uniqueRow);
+                rows.add(transaction);
+                if (uniqueRow == rowWeights.length) {
+                    rowWeights = Arrays.copyOf(rowWeights, 2 * uniqueRow);
+                }
+            }
+            rowWeights[uniqueRow] += getWeight(row);
+        }
+
+        SparseBitSet[] bits = new SparseBitSet[dictionary.size()];
+        for (int id = 0; id < bits.length; id++) {
+            bits[id] = new SparseBitSet();
+        }
+        for (int row = 0; row < rows.size(); row++) {
+            for (int item : rows.get(row)) {
+                bits[item].set(row);
+            }
+        }
+        Dataset deduplicated = new Dataset(this, rows.size(), Arrays.copyOf(rowWeights, rows.size()));
+        deduplicated.encodedTransactions = rows.toArray(new int[0][]);
+        deduplicated.covers = new Cover[bits.length];
+        for (int id = 0; id < bits.length; id++) {
+            deduplicated.covers[id] = Covers.of(bits[id], rows.size());
+        }
+        return deduplicated;
+    }
+
+    /**
+     * @param row The index of a row of the covers.
+     * @return The number of transactions the row stands for.
+     */
+    public int getWeight(int row) {
+        return weights == null ? 1 : weights[row];
+    }
+
+    /**
+     * @param transactionIndex The index of a transaction among the
+     *                         {@link #getNbTransactions()} transactions.
+     * @return The row holding the transaction.
+     */
+    public int getRowOf(int transactionIndex) {
+        if (rowEnds == null) {
+            return transactionIndex;
+        }
+        int i = Arrays.binarySearch(rowEnds, transactionIndex);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    /**
+     * @param cover A cover over the rows of the dataset.
+     * @return The number of transactions of the cover.
+     */
+    public int support(Cover cover) {
+        return weights == null ? cover.cardinality() : Covers.weightedCardinality(cover, weights);
+    }
+
+    /**
+     * @param covers Covers over the rows of the dataset.
+     * @return The number of transactions in every cover, counted without
+     *         building their intersection.
+     */
+    public int support(Cover... covers) {
+        if (weights == null) {
+            return covers.length == 2 ? Covers.andCardinality(covers[0], covers[1]) : Covers.andCardinality(covers);
+        }
+        return Covers.andWeightedCardinality(weights, covers);
+    }
+
+    private void initializeItems(Set<String> consequentItemsSet) {
         setConsequentItemsSet(consequentItemsSet);
         setConsequentItemsArray(getConsequentItemsSet().toArray(new String[0]));
+        initializeConsequentItemsValues();
         initializeAntecedentItemsValues();
         this.nbAntecedentItems = getAntecedentItemsSet().size();
         this.nbConsequentItems = getConsequentItemsSet().size();
-        findEquivalenceClasses();
     }
 
+    /**
+     * Finds the equivalence classes of the items: two items are equivalent
+     * when they are linked by a chain of transactions, so items of different
+     * classes never appear together in a transaction.
+     */
     public void findEquivalenceClasses() {
-        HashSet<String> allItems = new HashSet<>();
-        allItems.addAll(getConsequentItemsSet());
-        allItems.addAll(getAntecedentItemsSet());
-        this.equivalenceClasses = new UnionFind(allItems.toArray(new String[0]));
-        String[][] transactions = getTransactions();
-        for (String[] transaction : transactions) {
-            if (transaction.length > 0) {
-                String classRep = transaction[0];
-                for (String item : transaction) {
-                    equivalenceClasses.union(item, classRep);
+        this.equivalenceClasses = new UnionFind(dictionary.getItems());
+        if (hasTransactions()) {
+            // Each chunk of transactions is linked in its own union-find, then
+            // the classes of the chunks are merged
+            int nbChunks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+                    nbRows / 1024));
+            int chunkSize = (nbRows + nbChunks - 1) / nbChunks;
+            int nbItems = dictionary.size();
+            List<UnionFind> chunksClasses = IntStream.range(0, nbChunks).parallel().mapToObj(chunk -> {
+                UnionFind chunkClasses = new UnionFind(nbItems);
+                int end = Math.min(nbRows, (chunk + 1) * chunkSize);
+                for (int tid = chunk * chunkSize; tid < end; tid++) {
+                    int[] transaction = getTransaction(tid);
+                    for (int item : transaction) {
+                        chunkClasses.union(item, transaction[0]);
+                    }
+                }
+                return chunkClasses;
+            }).collect(Collectors.toList());
+            for (UnionFind chunkClasses : chunksClasses) {
+                equivalenceClasses.union(chunkClasses);
+            }
+        } else {
+            // Vertical only dataset: link each item to the first item seen in each of
+            // its transactions
+            int[] classRep = new int[nbRows];
+            Arrays.fill(classRep, ItemDictionary.UNKNOWN_ITEM);
+            for (int item = 0; item < dictionary.size(); item++) {
+                Cover cover = getCover(item);
+                for (int tid = cover.nextSetBit(0); tid >= 0; tid = cover.nextSetBit(tid + 1)) {
+                    if (classRep[tid] == ItemDictionary.UNKNOWN_ITEM) {
+                        classRep[tid] = item;
+                    } else {
+                        equivalenceClasses.union(item, classRep[tid]);
+                    }
+                }
+            }
+        }
+        this.classOf = equivalenceClasses.classes();
+    }
+
+    /**
+     * @param item The value of an item.
+     * @return The index of the equivalence class of the item, or -1 if the
+     *         item is unknown.
+     */
+    public int getClassOf(String item) {
+        int id = dictionary.getId(item);
+        return id == ItemDictionary.UNKNOWN_ITEM ? -1 : classOf[id];
+    }
+
+    /**
+     * @return The index of the supports and pair counts of the items, built on
+     *         first use over the {@link #DEFAULT_INDEXED_ITEMS} most frequent
+     *         items.
+     */
+    public CoOccurrenceIndex getCoOccurrenceIndex() {
+        CoOccurrenceIndex index = coOccurrenceIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = coOccurrenceIndex;
+                if (index == null) {
+                    index = CoOccurrenceIndex.build(this, DEFAULT_INDEXED_ITEMS);
+                    coOccurrenceIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * (Re)builds the index of the supports and pair counts of the items.
+     *
+     * @param maxItems The number of most frequent items whose pairs are counted.
+     */
+    public synchronized void indexCoOccurrences(int maxItems) {
+        this.coOccurrenceIndex = CoOccurrenceIndex.build(this, maxItems);
+    }
+
+    /**
+     * Checks, without touching any cover, whether an item can appear in a
+     * transaction with a set of items: items of different equivalence classes,
+     * or indexed pairs counted in no transaction, never do.
+     *
+     * @param items The items of a rule.
+     * @param item  The item proposed for the rule.
+     * @return False when the items and the item are known to never appear in
+     *         the same transaction.
+     */
+    public boolean canCoOccur(Collection<String> items, String item) {
+        int id = dictionary.getId(item);
+        if (id == ItemDictionary.UNKNOWN_ITEM) {
+            return true;
+        }
+        CoOccurrenceIndex index = getCoOccurrenceIndex();
+        if (index.support(id) == 0) {
+            return false;
+        }
+        for (String other : items) {
+            int otherId = dictionary.getId(other);
+            if (otherId == ItemDictionary.UNKNOWN_ITEM) {
+                continue;
+            }
+            if (classOf[otherId] != classOf[id] || !index.mayCoOccur(id, otherId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Registers the consequent items in the dictionary (consequent values that
+     * never appear in a transaction get an empty cover) and builds their ids.
+     */
+    private void initializeConsequentItemsValues() {
+        this.consequentItemIds = new int[getConsequentItemsArray().length];
+        for (int i = 0; i < consequentItemIds.length; i++) {
+            consequentItemIds[i] = dictionary.getOrAdd(getConsequentItemsArray()[i]);
+        }
+        if (covers.length < dictionary.size()) {
+            Cover[] extendedCovers = Arrays.copyOf(covers, dictionary.size());
+            for (int id = covers.length; id < extendedCovers.length; id++) {
+                extendedCovers[id] = Covers.empty(nbRows);
+                if (equivalenceClasses != null) {
+                    equivalenceClasses.add(dictionary.getItem(id));
                 }
             }
+            this.covers = extendedCovers;
+        }
+        this.consequentMask = new boolean[dictionary.size()];
+        for (int id : consequentItemIds) {
+            consequentMask[id] = true;
         }
     }
 
     private void initializeAntecedentItemsValues() {
-        setAntecedentItemsSet(getItemsMap().keySet().stream()
-                .filter(key -> !getConsequentItemsSet().contains(key))
-                .collect(Collectors.toSet()));
-        setAntecedentItemsArray(getAntecedentItemsSet().toArray(new String[0]));
+        List<Integer> antecedentIds = new ArrayList<>();
+        Set<String> antecedentItems = new LinkedHashSet<>();
+        for (int id = 0; id < dictionary.size(); id++) {
+            if (!consequentMask[id]) {
+                antecedentIds.add(id);
+                antecedentItems.add(dictionary.getItem(id));
+            }
+        }
+        this.antecedentItemIds = antecedentIds.stream().mapToInt(Integer::intValue).toArray();
+        setAntecedentItemsSet(antecedentItems);
+        setAntecedentItemsArray(dictionary.decode(antecedentItemIds));
     }
 
     public String[][] getTransactionalDataset() throws IOException {
@@ -105,58 +651,178 @@ public class Dataset {
     }
 
     public void getItemsFromTransactions() {
-        this.itemsMap = new HashMap<>();
-        for (int transactionIndex = 0; transactionIndex < transactions.length; transactionIndex++) {
-            String[] transaction = this.transactions[transactionIndex];
-            for (String itemValue : transaction) {
-                itemsMap.computeIfAbsent(itemValue, k -> new SparseBitSet()).set(transactionIndex);
+        if (encodedTransactions == null) {
+            // The covers are the only representation of a vertical only dataset
+            return;
+        }
+        SparseBitSet[] bits = new SparseBitSet[dictionary.size()];
+        for (int id = 0; id < bits.length; id++) {
+            bits[id] = new SparseBitSet();
+        }
+        for (int transactionIndex = 0; transactionIndex < encodedTransactions.length; transactionIndex++) {
+            for (int item : encodedTransactions[transactionIndex]) {
+                bits[item].set(transactionIndex);
+            }
+        }
+        this.covers = new Cover[bits.length];
+        for (int id = 0; id < bits.length; id++) {
+            covers[id] = Covers.of(bits[id], nbRows);
+            if (coverArena != null) {
+                covers[id] = coverArena.store(covers[id]);
+            }
+        }
+        coverCache.clear();
+        coOccurrenceIndex = null;
+        measureCaches.clear();
+        lastMeasureCache = null;
+    }
+
+    /**
+     * @return Whether the encoded transactions are stored (otherwise only the
+     *         item covers are).
+     */
+    public boolean hasTransactions() {
+        return encodedTransactions != null;
+    }
+
+    /**
+     * Returns the encoded items of a transaction. When the horizontal storage
+     * has been dropped, the transaction is rebuilt from the item covers.
+     *
+     * @param tid The index of the transaction (of the row of unique
+     *            transactions once deduplicated).
+     * @return The ids of the items of the transaction.
+     */
+    public int[] getTransaction(int tid) {
+        if (encodedTransactions != null) {
+            return encodedTransactions[tid];
+        }
+        int[] transaction = new int[8];
+        int size = 0;
+        for (int item = 0; item < dictionary.size(); item++) {
+            if (getCover(item).contains(tid)) {
+                if (size == transaction.length) {
+                    transaction = Arrays.copyOf(transaction, 2 * size);
+                }
+                transaction[size++] = item;
+            }
+        }
+        return Arrays.copyOf(transaction, size);
+    }
+
+    /**
+     * @param id The id of an item.
+     * @return The cover (set of transaction indexes) of the item.
+     */
+    public Cover getCover(int id) {
+        return covers[id];
+    }
+
+    /**
+     * @param item The value of an item.
+     * @return The cover of the item, or null if the item is unknown.
+     */
+    public Cover getCover(String item) {
+        int id = dictionary.getId(item);
+        return id == ItemDictionary.UNKNOWN_ITEM ? null : getCover(id);
+    }
+
+    public boolean isConsequentItem(int id) {
+        return consequentMask[id];
+    }
+
+    /**
+     * String keyed copy of the item covers of the items appearing in the
+     * transactions, as bitsets. Slow: every call copies all the covers, use
+     * {@link #getCover(int)} on hot paths.
+     *
+     * @return The map from item value to item cover.
+     */
+    public Map<String, SparseBitSet> getItemsMap() {
+        Map<String, SparseBitSet> itemsMap = new HashMap<>(2 * dictionary.size());
+        for (int id = 0; id < dictionary.size(); id++) {
+            Cover cover = getCover(id);
+            if (!cover.isEmpty()) {
+                itemsMap.put(dictionary.getItem(id), cover.toSparseBitSet());
+            }
+        }
+        return itemsMap;
+    }
+
+    /**
+     * Decodes the transactions to their item values. Slow: every call decodes
+     * the whole dataset, use {@link #getTransaction(int)} and
+     * {@link #getWeight(int)} on hot paths.
+     *
+     * @return The transactions as arrays of item values.
+     */
+    public String[][] getTransactions() {
+        String[][] transactions = new String[nbTransactions][];
+        for (int row = 0, i = 0; row < nbRows; row++) {
+            String[] transaction = dictionary.decode(getTransaction(row));
+            // A weighted row is decoded once per copy
+            for (int copy = 0; copy < getWeight(row); copy++) {
+                transactions[i++] = transaction;
             }
         }
+        return transactions;
     }
 
     public List<DecisionRule> getRandomValidRules(int nbRules, double smoothCounts, String[] measureNames) {
-        RandomUtil random = new RandomUtil();
-        int nbTransactions = this.getTransactions().length;
+        return getRandomValidRules(nbRules, smoothCounts, measureNames, new RandomUtil());
+    }
+
+    /**
+     * Draws valid rules from random transactions with a given generator, so
+     * that seeded samplers draw the same rules.
+     */
+    public List<DecisionRule> getRandomValidRules(int nbRules, double smoothCounts, String[] measureNames,
+            RandomUtil random) {
+        int nbTransactions = this.getNbTransactions();
         List<DecisionRule> rules = new ArrayList<>();
-        
+
         int attempts = 0;
         int maxAttempts = nbRules * 200;
 
         while (rules.size() < nbRules && attempts < maxAttempts) {
             attempts++;
             int transactionIndex = random.nextInt(nbTransactions);
-            String[] transaction = this.getTransactions()[transactionIndex];
-
-            List<String> shuffledItems = new ArrayList<>(Arrays.asList(transaction));
-            Collections.shuffle(shuffledItems);
+            int[] shuffledItems = getTransaction(getRowOf(transactionIndex)).clone();
+            for (int i = shuffledItems.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = shuffledItems[i];
+                shuffledItems[i] = shuffledItems[j];
+                shuffledItems[j] = tmp;
+            }
 
-            String selectedConsequent = null;
-            for (String item : shuffledItems) {
-                if (getConsequentItemsSet().contains(item)) {
+            int selectedConsequent = ItemDictionary.UNKNOWN_ITEM;
+            for (int item : shuffledItems) {
+                if (isConsequentItem(item)) {
                     selectedConsequent = item;
                     break;
                 }
             }
-            if (selectedConsequent == null) continue;
+            if (selectedConsequent == ItemDictionary.UNKNOWN_ITEM) continue;
 
-            DecisionRule selectedDecisionRule = new DecisionRule(new HashSet<>(), selectedConsequent, this, nbTransactions, 1, smoothCounts, measureNames);
+            DecisionRule selectedDecisionRule = new DecisionRule(new HashSet<>(),
+                    dictionary.getItem(selectedConsequent), this, nbTransactions, 1, smoothCounts, measureNames);
 
-            for (String item : shuffledItems) {
-                if (getAntecedentItemsSet().contains(item) && !item.equals(selectedConsequent)) {
-                    if (random.Bernoulli(0.5)) selectedDecisionRule.addToX(item);
+            for (int item : shuffledItems) {
+                if (!isConsequentItem(item)) {
+                    if (random.Bernoulli(0.5)) selectedDecisionRule.addToX(dictionary.getItem(item));
                 }
             }
-            
+
             // CORRECTION CRITIQUE : Éliminer les règles triviales (0% ou 100% de couverture)
             // Cela évite les divisions par zéro dans le calcul de Phi (Chi-Carré)
             int fZ = selectedDecisionRule.getFreqZ();
             int fX = selectedDecisionRule.getFreqX();
             int fY = selectedDecisionRule.getFreqY();
-            
+
             if (fZ > 0 && fZ < nbTransactions && fX > 0 && fX < nbTransactions && fY > 0 && fY < nbTransactions) {
                 rules.add(selectedDecisionRule);
             }
         }
         return rules;
     }
-}
\ No newline at end of file
+}
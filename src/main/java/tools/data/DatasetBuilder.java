@@ -0,0 +1,203 @@
+package tools.data;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import com.zaxxer.sparsebits.SparseBitSet;
+
+import lombok.Getter;
+
+/**
+ * Single pass builder of {@link Dataset}s. Transactions are read one at a time
+ * and directly appended to the item dictionary, the per-item covers and the
+ * equivalence classes, so the dataset is never held as String[][].
+ *
+ * When only the vertical representation is needed,
+ * {@link #storeTransactions(boolean)} drops the horizontal transaction storage
+ * entirely and the dataset works from the covers alone, and
+ * {@link #deduplicate(boolean)} collapses identical transactions into weighted
+ * rows (see {@link Dataset#deduplicate()}).
+ */
+public class DatasetBuilder {
+
+    private @Getter String filename;
+    private @Getter String expDir;
+    private @Getter boolean storingTransactions = true;
+    private @Getter boolean deduplicating;
+    private @Getter int nbTransactions;
+    private final @Getter ItemDictionary dictionary = new ItemDictionary();
+    private final List<int[]> transactions = new ArrayList<>();
+    private final List<SparseBitSet> covers = new ArrayList<>();
+    private final @Getter UnionFind equivalenceClasses = new UnionFind(new String[0]);
+
+    // Reused buffer holding the ids of the transaction being added
+    private int[] transactionBuffer = new int[64];
+
+    /**
+     * @param storeTransactions Whether the encoded transactions are kept in
+     *                          addition to the item covers.
+     * @return This builder.
+     */
+    public DatasetBuilder storeTransactions(boolean storeTransactions) {
+        this.storingTransactions = storeTransactions;
+        return this;
+    }
+
+    /**
+     * @param deduplicate Whether identical transactions are collapsed into a
+     *                    single weighted row.
+     * @return This builder.
+     */
+    public DatasetBuilder deduplicate(boolean deduplicate) {
+        this.deduplicating = deduplicate;
+        return this;
+    }
+
+    /**
+     * Appends a transaction. An empty transaction is kept: it counts in the
+     * number of transactions but is in no cover.
+     *
+     * @param items The item values of the transaction.
+     * @return This builder.
+     */
+    public DatasetBuilder addTransaction(String[] items) {
+        if (transactionBuffer.length < items.length) {
+            transactionBuffer = new int[Math.max(items.length, 2 * transactionBuffer.length)];
+        }
+        for (int i = 0; i < items.length; i++) {
+            transactionBuffer[i] = encode(items[i]);
+        }
+        appendTransaction(items.length);
+        return this;
+    }
+
+    /**
+     * Appends all the given transactions.
+     *
+     * @param transactions The transactions as arrays of item values.
+     * @return This builder.
+     */
+    public DatasetBuilder addTransactions(String[][] transactions) {
+        for (String[] transaction : transactions) {
+            addTransaction(transaction);
+        }
+        return this;
+    }
+
+    /**
+     * Reads the transactions of a .dat file (items separated by commas or
+     * whitespaces, one transaction per line). Lines without any item, such
+     * as blank lines, are not transactions, as in the original parser. Large
+     * files are parsed in parallel by {@link DatFileParser}.
+     *
+     * @param filename The name of the file.
+     * @param expDir   The directory of the file.
+     * @return This builder.
+     * @throws IOException If the file cannot be read.
+     */
+    public DatasetBuilder readFile(String filename, String expDir) throws IOException {
+        this.filename = filename;
+        this.expDir = expDir;
+        for (DatFileParser.Chunk chunk : DatFileParser.parse(Paths.get(expDir + filename), storingTransactions)) {
+            appendChunk(chunk);
+        }
+        return this;
+    }
+
+    /**
+     * Reads a .dat file split into the given number of ranges.
+     */
+    DatasetBuilder readFile(String filename, String expDir, int nbRanges) throws IOException {
+        this.filename = filename;
+        this.expDir = expDir;
+        for (DatFileParser.Chunk chunk : DatFileParser.parse(Paths.get(expDir + filename), nbRanges,
+                storingTransactions)) {
+            appendChunk(chunk);
+        }
+        return this;
+    }
+
+    /**
+     * Appends the transactions of a parsed chunk of file: its item ids are
+     * remapped to the ids of the dictionary (chunks being appended in file
+     * order, items keep their order of first appearance) and its transaction
+     * indexes are offset by the number of transactions already read.
+     */
+    private void appendChunk(DatFileParser.Chunk chunk) {
+        int[] remap = new int[chunk.items.size()];
+        for (int local = 0; local < remap.length; local++) {
+            remap[local] = encode(chunk.items.get(local));
+        }
+        for (int local = 0; local < remap.length; local++) {
+            SparseBitSet bits = covers.get(remap[local]);
+            int[] tids = chunk.itemTids[local];
+            for (int i = 0; i < chunk.itemTidCounts[local]; i++) {
+                bits.set(nbTransactions + tids[i]);
+            }
+            equivalenceClasses.union(remap[local], remap[chunk.classes.find(local)]);
+        }
+        if (storingTransactions) {
+            for (int[] transaction : chunk.transactions) {
+                for (int i = 0; i < transaction.length; i++) {
+                    transaction[i] = remap[transaction[i]];
+                }
+                transactions.add(transaction);
+            }
+        }
+        nbTransactions += chunk.nbTransactions;
+    }
+
+    private int encode(String item) {
+        int id = dictionary.getOrAdd(item);
+        if (id == covers.size()) {
+            covers.add(new SparseBitSet());
+            equivalenceClasses.add(item);
+        }
+        return id;
+    }
+
+    private void appendTransaction(int size) {
+        int tid = nbTransactions++;
+        int classRep = size > 0 ? transactionBuffer[0] : ItemDictionary.UNKNOWN_ITEM;
+        for (int i = 0; i < size; i++) {
+            int item = transactionBuffer[i];
+            covers.get(item).set(tid);
+            equivalenceClasses.union(item, classRep);
+        }
+        if (storingTransactions) {
+            transactions.add(Arrays.copyOf(transactionBuffer, size));
+        }
+    }
+
+    int[][] getEncodedTransactions() {
+        return storingTransactions ? transactions.toArray(new int[0][]) : null;
+    }
+
+    /**
+     * @return The item covers, each in the representation best suited to its
+     *         support.
+     */
+    Cover[] getCoversArray() {
+        Cover[] coversArray = new Cover[covers.size()];
+        for (int id = 0; id < coversArray.length; id++) {
+            coversArray[id] = Covers.of(covers.get(id), nbTransactions);
+        }
+        return coversArray;
+    }
+
+    /**
+     * Builds the dataset. The builder must not be used afterwards since the
+     * dataset takes ownership of its dictionary and covers.
+     *
+     * @param consequentItemsSet The consequent (class) items.
+     * @return The dataset.
+     */
+    public Dataset build(Set<String> consequentItemsSet) {
+        Dataset dataset = new Dataset(this, consequentItemsSet);
+        return deduplicating ? dataset.deduplicate() : dataset;
+    }
+}
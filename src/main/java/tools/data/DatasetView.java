@@ -0,0 +1,225 @@
+package tools.data;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import com.zaxxer.sparsebits.SparseBitSet;
+
+import tools.utils.RandomUtil;
+
+/**
+ * Dataset restricted to a subset of the transactions of a parent dataset (e.g.
+ * the train or test part of a fold), without copying them.
+ *
+ * The transactions of the view are numbered from 0 in the order of the parent,
+ * so that the frequencies, the number of transactions and the covers are all
+ * relative to the view. The cover of an item is computed on first use, as the
+ * parent cover of the item intersected with the mask of the view and
+ * renumbered. Transactions are read from the parent.
+ *
+ * The dictionary, the antecedent / consequent items and the equivalence classes
+ * are shared with the parent; each view has its own cover cache. The view of a
+ * deduplicated dataset selects rows, with their weights. The covers of a view
+ * stored off-heap are released by closing the view, not its parent.
+ */
+public class DatasetView extends Dataset {
+
+    private final Dataset parent;
+    private final Cover mask;
+    /** For each transaction of the view, the index of the parent transaction. */
+    private final int[] parentTids;
+    /** For each word of the mask, the number of masked transactions before it. */
+    private final int[] wordRanks;
+    private final Cover[] viewCovers;
+
+    /**
+     * @param parent The dataset holding the transactions.
+     * @param mask   The transactions of the parent kept in the view.
+     */
+    public DatasetView(Dataset parent, Cover mask) {
+        super(parent, mask.cardinality(), maskedWeights(parent, mask));
+        if (mask.size() != parent.getNbRows()) {
+            throw new IllegalArgumentException("The mask of a view must have the size of its parent.");
+        }
+        this.parent = parent;
+        this.mask = mask;
+        this.parentTids = mask.toArray();
+        this.wordRanks = new int[Covers.wordCount(mask.size())];
+        int rank = 0;
+        for (int w = 0; w < wordRanks.length; w++) {
+            wordRanks[w] = rank;
+            rank += Long.bitCount(mask.word(w));
+        }
+        this.viewCovers = new Cover[getDictionary().size()];
+    }
+
+    /**
+     * @param parent The dataset holding the transactions.
+     * @param tids   The indexes of the parent transactions (rows) kept in the
+     *               view, in any order (duplicates are ignored).
+     * @return The view over these transactions.
+     */
+    public static DatasetView of(Dataset parent, int[] tids) {
+        int[] sorted = tids.clone();
+        Arrays.sort(sorted);
+        int length = 0;
+        for (int tid : sorted) {
+            if (length == 0 || sorted[length - 1] != tid) {
+                sorted[length++] = tid;
+            }
+        }
+        return new DatasetView(parent, Covers.fromSortedTids(sorted, length, parent.getNbRows()));
+    }
+
+    private static int[] maskedWeights(Dataset parent, Cover mask) {
+        if (parent.getWeights() == null) {
+            return null;
+        }
+        int[] weights = new int[mask.cardinality()];
+        int row = 0;
+        for (int tid = mask.nextSetBit(0); tid >= 0; tid = mask.nextSetBit(tid + 1)) {
+            weights[row++] = parent.getWeight(tid);
+        }
+        return weights;
+    }
+
+    /**
+     * Splits a dataset into k folds, each fold being tested against the union
+     * of the other ones, as views over the same transactions.
+     *
+     * @param parent The dataset to split.
+     * @param k      The number of folds.
+     * @param random The random generator shuffling the transactions.
+     * @return For each fold, its train view at index 0 and its test view at
+     *         index 1.
+     */
+    public static DatasetView[][] kFolds(Dataset parent, int k, RandomUtil random) {
+        int[][] folds = random.kFolds(k, parent.getNbRows());
+        DatasetView[][] views = new DatasetView[k][];
+        for (int i = 0; i < k; i++) {
+            DatasetView test = of(parent, folds[i]);
+            Cover train = Covers.full(parent.getNbRows()).andNot(test.mask);
+            views[i] = new DatasetView[] { new DatasetView(parent, train), test };
+        }
+        return views;
+    }
+
+    public Dataset getParent() {
+        return parent;
+    }
+
+    /**
+     * @return The transactions of the parent kept in the view.
+     */
+    public Cover getMask() {
+        return mask;
+    }
+
+    /**
+     * @param tid The index of a transaction of the view.
+     * @return The index of the same transaction in the parent.
+     */
+    public int getParentTid(int tid) {
+        return parentTids[tid];
+    }
+
+    @Override
+    public boolean hasTransactions() {
+        return parent.hasTransactions();
+    }
+
+    @Override
+    public int[] getTransaction(int tid) {
+        return parent.getTransaction(parentTids[tid]);
+    }
+
+    @Override
+    public String[][] getTransactionalDataset() {
+        return getTransactions();
+    }
+
+    /**
+     * Computes the cover of the item in the view on first use. Covers are
+     * immutable, so two threads racing on the same item compute equal covers
+     * and either one may be kept.
+     */
+    @Override
+    public Cover getCover(int id) {
+        Cover cover = viewCovers[id];
+        if (cover == null) {
+            cover = restrict(parent.getCover(id));
+            CoverArena arena = getCoverArena();
+            if (arena != null) {
+                cover = arena.store(cover);
+            }
+            viewCovers[id] = cover;
+        }
+        return cover;
+    }
+
+    @Override
+    public Cover[] getCovers() {
+        for (int id = 0; id < viewCovers.length; id++) {
+            getCover(id);
+        }
+        return viewCovers;
+    }
+
+    /**
+     * Moves the covers computed so far to the arena, the other ones are stored
+     * there on first use.
+     */
+    @Override
+    public synchronized void storeCoversOffHeap(CoverArena arena) {
+        super.storeCoversOffHeap(arena);
+        for (int id = 0; id < viewCovers.length; id++) {
+            if (viewCovers[id] != null) {
+                viewCovers[id] = arena.store(viewCovers[id]);
+            }
+        }
+    }
+
+    @Override
+    Cover[] storedCovers() {
+        return viewCovers;
+    }
+
+    /**
+     * The vertical representation of a view is derived from its parent, there
+     * is nothing to rebuild.
+     */
+    @Override
+    public void getItemsFromTransactions() {
+        getCoverCache().clear();
+    }
+
+    /**
+     * The transactions of a view are those of its parent.
+     */
+    @Deprecated
+    @Override
+    public void setTransactions(String[][] transactions) {
+        throw new UnsupportedOperationException("The transactions of a view cannot be replaced.");
+    }
+
+    @Deprecated
+    @Override
+    public void setItemsMap(Map<String, SparseBitSet> itemsMap) {
+        throw new UnsupportedOperationException("The covers of a view cannot be replaced.");
+    }
+
+    /**
+     * @param parentCover A cover over the transactions of the parent.
+     * @return The cover of the same transactions in the view.
+     */
+    private Cover restrict(Cover parentCover) {
+        Cover masked = parentCover.and(mask);
+        int[] tids = new int[masked.cardinality()];
+        int length = 0;
+        for (int tid = masked.nextSetBit(0); tid >= 0; tid = masked.nextSetBit(tid + 1)) {
+            int w = tid >>> 6;
+            tids[length++] = wordRanks[w] + Long.bitCount(mask.word(w) & ((1L << tid) - 1));
+        }
+        return Covers.fromSortedTids(tids, length, getNbRows());
+    }
+}
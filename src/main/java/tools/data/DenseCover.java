@@ -0,0 +1,47 @@
+package tools.data;
+
+/**
+ * Cover stored as a plain bitmap of one bit per transaction, used for items
+ * frequent enough that the bitmap is smaller than the list of their
+ * transactions. Intersections with another dense cover run word by word.
+ */
+public final class DenseCover extends AbstractCover {
+
+    final long[] words;
+
+    DenseCover(long[] words, int size, int cardinality) {
+        super(size, cardinality);
+        this.words = words;
+    }
+
+    DenseCover(long[] words, int size) {
+        this(words, size, Covers.bitCount(words));
+    }
+
+    @Override
+    public boolean contains(int tid) {
+        return tid >= 0 && tid < size && (words[tid >>> 6] & (1L << tid)) != 0;
+    }
+
+    @Override
+    public int nextSetBit(int fromIndex) {
+        if (fromIndex < 0) fromIndex = 0;
+        if (fromIndex >= size) return -1;
+        int wordIndex = fromIndex >>> 6;
+        long word = words[wordIndex] & (-1L << fromIndex);
+        while (true) {
+            if (word != 0) {
+                return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++wordIndex == words.length) {
+                return -1;
+            }
+            word = words[wordIndex];
+        }
+    }
+
+    @Override
+    public long word(int wordIndex) {
+        return wordIndex < words.length ? words[wordIndex] : 0L;
+    }
+}
@@ -0,0 +1,111 @@
+package tools.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Dictionary encoding of the item values of a dataset. Each distinct item value
+ * is given a dense integer id (in order of first appearance), so that covers,
+ * transactions and rules can be indexed by int instead of hashing Strings.
+ */
+public class ItemDictionary {
+
+    public static final int UNKNOWN_ITEM = -1;
+
+    private final Object2IntOpenHashMap<String> idsByItem;
+    private final List<String> itemsById;
+
+    public ItemDictionary() {
+        this.idsByItem = new Object2IntOpenHashMap<>();
+        this.idsByItem.defaultReturnValue(UNKNOWN_ITEM);
+        this.itemsById = new ArrayList<>();
+    }
+
+    /**
+     * Returns the id of an item value, assigning the next free id if the value
+     * has never been seen.
+     *
+     * @param item The item value.
+     * @return The id of the item.
+     */
+    public int getOrAdd(String item) {
+        int id = idsByItem.getInt(item);
+        if (id == UNKNOWN_ITEM) {
+            id = itemsById.size();
+            idsByItem.put(item, id);
+            itemsById.add(item);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of an item value.
+     *
+     * @param item The item value.
+     * @return The id of the item or {@link #UNKNOWN_ITEM} if it is not encoded.
+     */
+    public int getId(String item) {
+        return idsByItem.getInt(item);
+    }
+
+    /**
+     * Returns the item value encoded by the given id.
+     *
+     * @param id The id of the item.
+     * @return The item value.
+     */
+    public String getItem(int id) {
+        return itemsById.get(id);
+    }
+
+    public boolean contains(String item) {
+        return idsByItem.containsKey(item);
+    }
+
+    public int size() {
+        return itemsById.size();
+    }
+
+    /**
+     * Encodes a collection of item values, unknown values are skipped.
+     *
+     * @param items The item values.
+     * @return The ids of the known items.
+     */
+    public int[] encode(Collection<String> items) {
+        int[] ids = new int[items.size()];
+        int size = 0;
+        for (String item : items) {
+            int id = getId(item);
+            if (id != UNKNOWN_ITEM) {
+                ids[size++] = id;
+            }
+        }
+        return size == ids.length ? ids : Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Decodes an array of ids back to their item values.
+     *
+     * @param ids The ids of the items.
+     * @return The item values.
+     */
+    public String[] decode(int[] ids) {
+        String[] items = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            items[i] = itemsById.get(ids[i]);
+        }
+        return items;
+    }
+
+    /**
+     * @return All the item values, indexed by id.
+     */
+    public String[] getItems() {
+        return itemsById.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,74 @@
+package tools.data;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Canonical key of an itemset: the sorted ids of its items, so that two sets
+ * holding the same items map to the same key whatever their iteration order.
+ * Items unknown to the dictionary are kept as {@link ItemDictionary#UNKNOWN_ITEM}.
+ */
+public final class ItemsetKey {
+
+    private final int[] ids;
+    private final int hash;
+
+    private ItemsetKey(int[] ids) {
+        this.ids = ids;
+        this.hash = Arrays.hashCode(ids);
+    }
+
+    /**
+     * @param dictionary The dictionary encoding the items.
+     * @param items      The item values.
+     * @return The key of the itemset.
+     */
+    public static ItemsetKey of(ItemDictionary dictionary, Collection<String> items) {
+        int[] ids = new int[items.size()];
+        int i = 0;
+        for (String item : items) {
+            ids[i++] = dictionary.getId(item);
+        }
+        Arrays.sort(ids);
+        return new ItemsetKey(ids);
+    }
+
+    /**
+     * @param ids The ids of the items, in any order (the array is not kept).
+     * @return The key of the itemset.
+     */
+    public static ItemsetKey of(int... ids) {
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        return new ItemsetKey(sorted);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return The sorted ids of the items.
+     */
+    public int[] toArray() {
+        return ids.clone();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof ItemsetKey)) return false;
+        ItemsetKey other = (ItemsetKey) obj;
+        return hash == other.hash && Arrays.equals(ids, other.ids);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(ids);
+    }
+}
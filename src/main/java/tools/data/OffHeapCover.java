@@ -0,0 +1,208 @@
+package tools.data;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Cover stored outside of the Java heap, in a block of a {@link CoverArena},
+ * in the same three representations as the heap covers: all the 64 bits
+ * words, the sorted transaction indexes, or the non zero words with their
+ * indexes. Reading a cover after its arena is closed throws an
+ * {@link IllegalStateException}. The covers mapped from a binary snapshot (see
+ * {@link BinaryDataset#load}) have no arena: their mapping is released by the
+ * garbage collector once no cover refers to it.
+ */
+public final class OffHeapCover extends AbstractCover {
+
+    private final CoverArena arena;
+    private final Covers.Representation representation;
+    /** Words of a dense or sparse cover. */
+    private final LongBuffer words;
+    /** Transaction indexes of an array cover, word indexes of a sparse cover. */
+    private final IntBuffer ints;
+    private final int length;
+
+    private OffHeapCover(CoverArena arena, Covers.Representation representation, LongBuffer words,
+            IntBuffer ints, int length, int size, int cardinality) {
+        super(size, cardinality);
+        this.arena = arena;
+        this.representation = representation;
+        this.words = words;
+        this.ints = ints;
+        this.length = length;
+    }
+
+    /**
+     * Wraps buffers already holding a cover, such as views of a mapped file,
+     * without copying them.
+     *
+     * @param words  The words of a dense or sparse cover, null otherwise.
+     * @param ints   The transaction indexes of an array cover or the word
+     *               indexes of a sparse cover, null otherwise.
+     * @param length The number of words of a dense or sparse cover, of
+     *               transactions of an array cover.
+     */
+    static OffHeapCover wrap(Covers.Representation representation, LongBuffer words, IntBuffer ints, int length,
+            int size, int cardinality) {
+        return new OffHeapCover(null, representation, words, ints, length, size, cardinality);
+    }
+
+    /**
+     * Copies a cover to a region of an arena.
+     */
+    static OffHeapCover copy(CoverArena arena, Cover cover) {
+        int size = cover.size();
+        int cardinality = cover.cardinality();
+        if (cover instanceof OffHeapCover) {
+            cover = ((OffHeapCover) cover).toHeap();
+        }
+        if (cover instanceof DenseCover) {
+            long[] denseWords = ((DenseCover) cover).words;
+            LongBuffer words = arena.allocate(8L * denseWords.length).asLongBuffer();
+            words.duplicate().put(denseWords);
+            return new OffHeapCover(arena, Covers.Representation.DENSE, words, null, denseWords.length, size,
+                    cardinality);
+        }
+        if (cover instanceof SparseCover) {
+            SparseCover sparse = (SparseCover) cover;
+            int n = sparse.words.length;
+            ByteBuffer region = arena.allocate(12L * n);
+            LongBuffer words = region.asLongBuffer();
+            words.duplicate().put(sparse.words);
+            IntBuffer indexes = CoverArena.slice(region, 8 * n, 4 * n).asIntBuffer();
+            indexes.duplicate().put(sparse.wordIndexes);
+            return new OffHeapCover(arena, Covers.Representation.SPARSE, words, indexes, n, size, cardinality);
+        }
+        int[] tids = cover.toArray();
+        IntBuffer ints = arena.allocate(4L * tids.length).asIntBuffer();
+        ints.duplicate().put(tids);
+        return new OffHeapCover(arena, Covers.Representation.ARRAY, null, ints, tids.length, size, cardinality);
+    }
+
+    /**
+     * @return A copy of the cover on the heap.
+     */
+    public Cover toHeap() {
+        checkOpen();
+        switch (representation) {
+            case DENSE:
+                long[] denseWords = new long[length];
+                words.duplicate().get(denseWords);
+                return new DenseCover(denseWords, size, cardinality);
+            case SPARSE:
+                long[] sparseWords = new long[length];
+                int[] wordIndexes = new int[length];
+                words.duplicate().get(sparseWords);
+                ints.duplicate().get(wordIndexes);
+                return new SparseCover(wordIndexes, sparseWords, size, cardinality);
+            default:
+                int[] tids = new int[length];
+                ints.duplicate().get(tids);
+                return new ArrayCover(tids, size);
+        }
+    }
+
+    /**
+     * @return The number of off-heap bytes used by the cover.
+     */
+    public long offHeapBytes() {
+        switch (representation) {
+            case DENSE:
+                return 8L * length;
+            case SPARSE:
+                return 12L * length;
+            default:
+                return 4L * length;
+        }
+    }
+
+    @Override
+    public boolean contains(int tid) {
+        if (tid < 0 || tid >= size) return false;
+        return (word(tid >>> 6) & (1L << tid)) != 0;
+    }
+
+    @Override
+    public int nextSetBit(int fromIndex) {
+        checkOpen();
+        if (fromIndex < 0) fromIndex = 0;
+        if (fromIndex >= size) return -1;
+        switch (representation) {
+            case DENSE: {
+                int w = fromIndex >>> 6;
+                long word = words.get(w) & (-1L << fromIndex);
+                while (word == 0) {
+                    if (++w == length) return -1;
+                    word = words.get(w);
+                }
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            case SPARSE: {
+                int i = lowerBound(fromIndex >>> 6);
+                if (i == length) return -1;
+                long word = words.get(i);
+                if (ints.get(i) == fromIndex >>> 6) {
+                    word &= -1L << fromIndex;
+                }
+                while (word == 0) {
+                    if (++i == length) return -1;
+                    word = words.get(i);
+                }
+                return (ints.get(i) << 6) + Long.numberOfTrailingZeros(word);
+            }
+            default: {
+                int i = lowerBound(fromIndex);
+                return i == length ? -1 : ints.get(i);
+            }
+        }
+    }
+
+    @Override
+    public long word(int wordIndex) {
+        checkOpen();
+        switch (representation) {
+            case DENSE:
+                return wordIndex >= 0 && wordIndex < length ? words.get(wordIndex) : 0L;
+            case SPARSE: {
+                int i = lowerBound(wordIndex);
+                return i < length && ints.get(i) == wordIndex ? words.get(i) : 0L;
+            }
+            default: {
+                long from = (long) wordIndex << 6;
+                if (from < 0 || from > Integer.MAX_VALUE) {
+                    return 0L;
+                }
+                long word = 0L;
+                for (int i = lowerBound((int) from); i < length && ints.get(i) >>> 6 == wordIndex; i++) {
+                    word |= 1L << ints.get(i);
+                }
+                return word;
+            }
+        }
+    }
+
+    /**
+     * @return The first position of {@link #ints} holding a value not lower
+     *         than the key.
+     */
+    private int lowerBound(int key) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ints.get(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void checkOpen() {
+        if (arena != null && arena.isClosed()) {
+            throw new IllegalStateException("The arena of the cover is closed.");
+        }
+    }
+}
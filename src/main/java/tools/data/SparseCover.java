@@ -0,0 +1,53 @@
+package tools.data;
+
+import java.util.Arrays;
+
+/**
+ * Cover stored as its non zero 64 bits words only: {@code wordIndexes} holds
+ * the sorted indexes of the words and {@code words} their bits. It suits
+ * covers that are too sparse for a bitmap but clustered enough that several
+ * transactions share a word.
+ */
+public final class SparseCover extends AbstractCover {
+
+    final int[] wordIndexes;
+    final long[] words;
+
+    SparseCover(int[] wordIndexes, long[] words, int size, int cardinality) {
+        super(size, cardinality);
+        this.wordIndexes = wordIndexes;
+        this.words = words;
+    }
+
+    @Override
+    public boolean contains(int tid) {
+        if (tid < 0) return false;
+        int i = Arrays.binarySearch(wordIndexes, tid >>> 6);
+        return i >= 0 && (words[i] & (1L << tid)) != 0;
+    }
+
+    @Override
+    public int nextSetBit(int fromIndex) {
+        if (fromIndex < 0) fromIndex = 0;
+        int i = Arrays.binarySearch(wordIndexes, fromIndex >>> 6);
+        long word;
+        if (i >= 0) {
+            word = words[i] & (-1L << fromIndex);
+        } else {
+            i = -i - 1;
+            if (i == words.length) return -1;
+            word = words[i];
+        }
+        while (word == 0) {
+            if (++i == words.length) return -1;
+            word = words[i];
+        }
+        return (wordIndexes[i] << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    @Override
+    public long word(int wordIndex) {
+        int i = Arrays.binarySearch(wordIndexes, wordIndex);
+        return i >= 0 ? words[i] : 0L;
+    }
+}
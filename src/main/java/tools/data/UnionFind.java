@@ -1,48 +1,91 @@
 package tools.data;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Union-find over int indexed elements (the item ids of a dataset), with union
+ * by rank and path halving. Element values are kept in an array indexed like
+ * the elements, so that the String accessors resolve a root in O(1).
+ */
 public class UnionFind {
-    private Map<String, Integer> indexMap; // Map to hold the string to index mapping
+    private static final int UNKNOWN = -1;
+
+    private Object2IntOpenHashMap<String> indexMap; // Map to hold the string to index mapping
+    private String[] elements; // Reverse mapping, index to string
     private int[] parent;
     private int[] rank;
+    private int size;
 
     public UnionFind(String[] elements) {
-        indexMap = new HashMap<>();
+        indexMap = new Object2IntOpenHashMap<>(elements.length);
+        indexMap.defaultReturnValue(UNKNOWN);
+        size = elements.length;
+        this.elements = elements.clone();
         parent = new int[elements.length];
         rank = new int[elements.length];
         for (int i = 0; i < elements.length; i++) {
             indexMap.put(elements[i], i);
             parent[i] = i;
-            rank[i] = 0;
         }
     }
 
+    /**
+     * Builds a union-find over anonymous elements {@code [0, size)}, used to
+     * find the classes of a chunk of transactions before merging them.
+     *
+     * @param size The number of elements.
+     */
+    public UnionFind(int size) {
+        indexMap = new Object2IntOpenHashMap<>();
+        indexMap.defaultReturnValue(UNKNOWN);
+        this.size = size;
+        elements = new String[size];
+        parent = new int[size];
+        rank = new int[size];
+        for (int i = 0; i < size; i++) {
+            parent[i] = i;
+        }
+    }
+
+    /**
+     * Adds a new singleton element.
+     *
+     * @param element The element to add.
+     * @return The index of the element.
+     */
+    public int add(String element) {
+        int index = size++;
+        if (index == parent.length) {
+            parent = Arrays.copyOf(parent, Math.max(16, 2 * index));
+            rank = Arrays.copyOf(rank, parent.length);
+            elements = Arrays.copyOf(elements, parent.length);
+        }
+        parent[index] = index;
+        elements[index] = element;
+        indexMap.put(element, index);
+        return index;
+    }
+
     // Find method using String element
     public String find(String element) {
-        if (!indexMap.containsKey(element)) {
-            throw new IllegalArgumentException("Element not found in union-find");
-        }
-        int index = indexMap.get(element);
-        int rootIndex = find(index);
-        return getKeyByValue(rootIndex);
+        return elements[find(indexOf(element))];
     }
 
-    private int find(int index) {
-        if (parent[index] != index) {
-            parent[index] = find(parent[index]);
+    public int find(int index) {
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]];
+            index = parent[index];
         }
-        return parent[index];
+        return index;
     }
 
     public void union(String element1, String element2) {
-        if (!indexMap.containsKey(element1) || !indexMap.containsKey(element2)) {
-            throw new IllegalArgumentException("One or both elements not found in union-find");
-        }
-        int index1 = indexMap.get(element1);
-        int index2 = indexMap.get(element2);
+        union(indexOf(element1), indexOf(element2));
+    }
 
+    public void union(int index1, int index2) {
         int rootP = find(index1);
         int rootQ = find(index2);
         if (rootP != rootQ) {
@@ -58,19 +101,52 @@ public class UnionFind {
         }
     }
 
-    private String getKeyByValue(int value) {
-        for (Map.Entry<String, Integer> entry : indexMap.entrySet()) {
-            if (entry.getValue().equals(value)) {
-                return entry.getKey();
+    /**
+     * Merges the classes of another union-find over the same first elements.
+     *
+     * @param other A union-find whose elements are a prefix of these elements.
+     */
+    public void union(UnionFind other) {
+        for (int i = 0; i < other.size; i++) {
+            union(i, other.find(i));
+        }
+    }
+
+    private int indexOf(String element) {
+        int index = indexMap.getInt(element);
+        if (index == UNKNOWN) {
+            throw new IllegalArgumentException("Element not found in union-find");
+        }
+        return index;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return For each element, the index of its class, classes being numbered
+     *         from 0 in order of their first element.
+     */
+    public int[] classes() {
+        int[] classOf = new int[size];
+        int[] classOfRoot = new int[size];
+        Arrays.fill(classOfRoot, UNKNOWN);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int root = find(i);
+            if (classOfRoot[root] == UNKNOWN) {
+                classOfRoot[root] = count++;
             }
+            classOf[i] = classOfRoot[root];
         }
-        return null;
+        return classOf;
     }
 
     // Method to count the number of distinct equivalence classes
     public int countClasses() {
         int count = 0;
-        for (int i = 0; i < parent.length; i++) {
+        for (int i = 0; i < size; i++) {
             if (i == find(i)) {
                 count++;
             }
@@ -18,6 +18,7 @@ import tools.functions.singlevariate.ISinglevariateFunction;
 import tools.normalization.Normalizer.NormalizationMethod;
 import tools.oracles.ArtificialOracle;
 import tools.rules.DecisionRule;
+import tools.utils.AlternativeUtil;
 
 /**
  * Dashboard for computing ranking metrics based on predicted rankings compared
@@ -62,6 +63,7 @@ public class ExperimentLogger implements PropertyChangeListener {
     }
 
     private void initNormalization() {
+        AlternativeUtil.evaluateRules(testRuleSet);
         for (DecisionRule rule : testRuleSet)
             this.normalizer.normalize(rule.getAlternative().getVector(), NormalizationMethod.NO_NORMALIZATION, true);
 
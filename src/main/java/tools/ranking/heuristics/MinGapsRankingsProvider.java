@@ -3,9 +3,8 @@ package tools.ranking.heuristics;
 import static java.lang.Math.abs;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -19,7 +18,10 @@ import tools.oracles.Oracle;
 import tools.ranking.Ranking;
 import tools.ranking.RankingsProvider;
 import tools.rules.DecisionRule;
+import tools.rules.RuleKeyMap;
+import tools.rules.RuleKeySet;
 import tools.train.LearnStep;
+import tools.utils.AlternativeUtil;
 import tools.utils.RandomUtil;
 import tools.utils.RankingUtil;
 
@@ -53,7 +55,9 @@ public class MinGapsRankingsProvider implements RankingsProvider {
 
     // The list of all selected pairs of alternatives from all the iterations
     // and their respective ranking given by the oracle.
-    private Set<IAlternative[]> selectedPairs = new HashSet<>();
+    // For the first rule of each selected pair, the keys of the rules it was
+    // paired with.
+    private RuleKeyMap<RuleKeySet> selectedPairs = new RuleKeyMap<>();
     private List<Ranking<IAlternative>> rankings = new ArrayList<>();
 
     // The random instance used for random sampling
@@ -64,6 +68,7 @@ public class MinGapsRankingsProvider implements RankingsProvider {
         this.oracle = oracle;
         this.sample = sample;
 
+        AlternativeUtil.evaluateRules(Arrays.asList(sample));
         for (DecisionRule rule : sample)
             normalizer.normalize(rule.getAlternative().getVector(), NormalizationMethod.NO_NORMALIZATION, true);
     }
@@ -90,6 +95,18 @@ public class MinGapsRankingsProvider implements RankingsProvider {
         return num / denom;
     }
 
+    /**
+     * @return Whether the pair of rules was already selected, in either order.
+     */
+    private boolean isSelected(DecisionRule rule1, DecisionRule rule2) {
+        RuleKeySet pairs1 = selectedPairs.get(rule1.getKey());
+        if (pairs1 != null && pairs1.contains(rule2.getKey())) {
+            return true;
+        }
+        RuleKeySet pairs2 = selectedPairs.get(rule2.getKey());
+        return pairs2 != null && pairs2.contains(rule1.getKey());
+    }
+
     private int[] randomSample(int size, int sampleSize) {
         return random.kFolds(1, size, sampleSize)[0];
     }
@@ -110,30 +127,44 @@ public class MinGapsRankingsProvider implements RankingsProvider {
         scoreFunction = step.getCurrentScoreFunction();
 
         // int randomSampleSize = Math.min(sample.length - 1, 10);
-        int randomSampleSize = 50;
+        int randomSampleSize = Math.min(sample.length, 50);
         int[] randomSample = randomSample(sample.length, randomSampleSize);
 
         // Searching for the pair of alternatives with the minimum gap using a heuristic
         double minGap = Double.MAX_VALUE;
+        double minSelectedGap = Double.MAX_VALUE;
 
         int a1Index = -1;
         int a2Index = -1;
+        // The pair with the minimum gap among the already selected ones, used
+        // when every pair of the random sample was already selected
+        int s1Index = -1;
+        int s2Index = -1;
         for (int i = 0; i < randomSampleSize; i++) {
             for (int j = i + 1; j < randomSampleSize; j++) {
                 int iIndex = randomSample[i];
                 int jIndex = randomSample[j];
-                if (selectedPairs.contains(
-                        new IAlternative[] { sample[iIndex].getAlternative(), sample[jIndex].getAlternative() })) {
-                    continue;
-                }
                 double measureGap = measureGap(sample[iIndex].getAlternative(), sample[jIndex].getAlternative());
-                if (measureGap < minGap) {
+                if (isSelected(sample[iIndex], sample[jIndex])) {
+                    if (s1Index == -1 || measureGap < minSelectedGap) {
+                        minSelectedGap = measureGap;
+                        s1Index = iIndex;
+                        s2Index = jIndex;
+                    }
+                } else if (a1Index == -1 || measureGap < minGap) {
                     minGap = measureGap;
                     a1Index = iIndex;
                     a2Index = jIndex;
                 }
             }
         }
+        if (a1Index == -1) {
+            if (s1Index == -1) {
+                throw new IllegalStateException("At least two rules are needed to select a pair.");
+            }
+            a1Index = s1Index;
+            a2Index = s2Index;
+        }
 
         // Add the selected pair to the set of selected pairs
         IAlternative norm_a = new Alternative(normalizer.normalize(sample[a1Index].getAlternative().getVector(),
@@ -146,7 +177,8 @@ public class MinGapsRankingsProvider implements RankingsProvider {
         rulePair.add(sample[a1Index]);
         rulePair.add(sample[a2Index]);
 
-        selectedPairs.add(alternativePair);
+        selectedPairs.computeIfAbsent(sample[a1Index].getKey(), key -> new RuleKeySet())
+                .add(sample[a2Index].getKey());
 
         // Compute the ranking for the selected pair using the oracle
         if (oracle instanceof ArtificialOracle) {
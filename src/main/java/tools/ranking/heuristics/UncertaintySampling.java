@@ -1,9 +1,7 @@
 package tools.ranking.heuristics;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -47,9 +45,8 @@ public class UncertaintySampling implements RankingsProvider {
     // The maximum iterations used for sampling
     private @Setter @Getter int maximum_iterations = 1000;
 
-    // The list of all selected pairs of alternatives from all the iterations
-    // and their respective ranking given by the oracle.
-    private Set<IAlternative[]> selectedPairs = new HashSet<>();
+    // The rankings given by the oracle to the selected pairs of alternatives
+    // from all the iterations.
     private List<Ranking<IAlternative>> rankings = new ArrayList<>();
 
     private static final double DEFAULT_NOISE = 0d;
@@ -132,9 +129,8 @@ public class UncertaintySampling implements RankingsProvider {
         Alternative normalized1 = new Alternative(normalizer.normalize(listSample.get(1).getAlternative().getVector(),
                 NormalizationMethod.MIN_MAX_SCALING, false));
 
-        // Add the selected pair to the set of selected pairs
+        // The selected pair of alternatives
         IAlternative[] alternativePair = new IAlternative[] { normalized0, normalized1 };
-        selectedPairs.add(alternativePair);
 
         // Compute the ranking for the selected pair using the oracle
         if (oracle instanceof ArtificialOracle) {
@@ -0,0 +1,139 @@
+package tools.rules;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Contingency counts of a pool of rules, stored as arrays (one per support)
+ * rather than as one object per rule, to compute the measures of all the
+ * rules at once with a {@link MeasureKernel}.
+ *
+ * Large batches are split into chunks evaluated in parallel in the common
+ * fork/join pool.
+ */
+public final class ContingencyBatch {
+
+    /** Number of rules from which a batch is evaluated in parallel. */
+    static final int PARALLEL_THRESHOLD = 1 << 14;
+    /** Number of rules evaluated by each parallel task. */
+    private static final int CHUNK = 1 << 12;
+
+    private final int size;
+    private final int[] freqX, freqY, freqZ;
+    /** Whether each rule has an antecedent and a consequent (null if all). */
+    private final boolean[] defined;
+
+    /**
+     * @param freqX The supports of the antecedents of the rules.
+     * @param freqY The supports of the consequents of the rules.
+     * @param freqZ The supports of X and Y together of the rules.
+     */
+    public ContingencyBatch(int[] freqX, int[] freqY, int[] freqZ) {
+        this(freqX, freqY, freqZ, null);
+    }
+
+    private ContingencyBatch(int[] freqX, int[] freqY, int[] freqZ, boolean[] defined) {
+        if (freqX.length != freqY.length || freqX.length != freqZ.length) {
+            throw new IllegalArgumentException("The supports of the rules must have the same length.");
+        }
+        this.size = freqX.length;
+        this.freqX = freqX;
+        this.freqY = freqY;
+        this.freqZ = freqZ;
+        this.defined = defined;
+    }
+
+    /**
+     * Records the supports of rules. The measures of the rules without
+     * antecedent or consequent are zeros (as
+     * {@link tools.utils.AlternativeUtil#computeAlternativeOrZero}).
+     *
+     * @param rules The rules.
+     * @return The batch of their contingency counts.
+     */
+    public static ContingencyBatch of(List<? extends IRule> rules) {
+        int n = rules.size();
+        int[] freqX = new int[n];
+        int[] freqY = new int[n];
+        int[] freqZ = new int[n];
+        boolean[] defined = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            IRule rule = rules.get(i);
+            freqX[i] = rule.getFreqX();
+            freqY[i] = rule.getFreqY();
+            freqZ[i] = rule.getFreqZ();
+            defined[i] = !rule.getItemsInX().isEmpty() && !rule.getY().isEmpty();
+        }
+        return new ContingencyBatch(freqX, freqY, freqZ, defined);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The matrix of the measures of the rules, stored row after row:
+     *         the measures of rule i start at index i * kernel.size().
+     */
+    public double[] evaluate(MeasureKernel kernel, int nbTransactions, double smoothCounts) {
+        double[] measures = new double[size * kernel.size()];
+        evaluate(kernel, nbTransactions, smoothCounts, measures);
+        return measures;
+    }
+
+    /**
+     * Computes the measures of the rules into a matrix stored row after row,
+     * in parallel for large batches.
+     *
+     * @param measures The matrix, of at least size() * kernel.size() values.
+     */
+    public void evaluate(MeasureKernel kernel, int nbTransactions, double smoothCounts, double[] measures) {
+        if (measures.length < size * kernel.size()) {
+            throw new IllegalArgumentException("The matrix holds " + measures.length + " values, "
+                    + size * kernel.size() + " are needed.");
+        }
+        if (size < PARALLEL_THRESHOLD) {
+            kernel.evaluate(nbTransactions, freqZ, freqX, freqY, smoothCounts, defined, 0, size, measures);
+        } else {
+            ForkJoinPool.commonPool().invoke(new Chunk(this, kernel, nbTransactions, smoothCounts, measures, 0, size));
+        }
+    }
+
+    /**
+     * Evaluation of the rules [from, to) of a batch, split in halves down to
+     * chunks.
+     */
+    private static final class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final ContingencyBatch batch;
+        private final MeasureKernel kernel;
+        private final int nbTransactions;
+        private final double smoothCounts;
+        private final double[] measures;
+        private final int from, to;
+
+        Chunk(ContingencyBatch batch, MeasureKernel kernel, int nbTransactions, double smoothCounts,
+                double[] measures, int from, int to) {
+            this.batch = batch;
+            this.kernel = kernel;
+            this.nbTransactions = nbTransactions;
+            this.smoothCounts = smoothCounts;
+            this.measures = measures;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                kernel.evaluate(nbTransactions, batch.freqZ, batch.freqX, batch.freqY, smoothCounts, batch.defined,
+                        from, to, measures);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Chunk(batch, kernel, nbTransactions, smoothCounts, measures, from, middle),
+                    new Chunk(batch, kernel, nbTransactions, smoothCounts, measures, middle, to));
+        }
+    }
+}
@@ -1,152 +1,107 @@
 package tools.rules;
 
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
 
-import com.zaxxer.sparsebits.SparseBitSet;
-
+import tools.data.Cover;
+import tools.data.CoverCache;
+import tools.data.Covers;
 import tools.data.Dataset;
-import tools.utils.SetUtil;
+import tools.data.ItemsetKey;
 
 /**
- * Class for parallel computation of covers.
+ * Class for the computation of itemset covers. The covers of the items are
+ * intersected in a single fused pass (see {@link Covers#and(Cover...)}), which
+ * for the few items of a rule is cheaper than reducing them pair by pair in
+ * parallel. Covers of itemsets of several items go through the cover cache
+ * of the dataset, shared by every rule.
  */
 public class CoverParallelCompute {
     private Dataset dataset;
-    private Map<String, SparseBitSet> itemsMap;
 
-    private Set<SparseBitSet> coversToCompute;
     /**
      * Constructor for CoverParallelCompute.
      * 
      * @param dataset  The dataset.
-     * @param itemsMap The map of items to SparseBitSet covers.
      */
     public CoverParallelCompute(Dataset dataset) {
         this.dataset = dataset;
-        this.itemsMap = dataset.getItemsMap();
     }
 
     /**
-     * Computes the cover in parallel for a given set of items.
+     * Computes the cover of a given set of items, or reads it from the cover
+     * cache of the dataset.
      * 
-     * @param itemsInSet The set of items.
+     * @param itemsInSet The non empty set of items.
      * @return The computed cover.
      */
-    public SparseBitSet compute(Set<String> itemsInSet) {
-        // Copy Items in Set Covers
-        this.coversToCompute = copyItemsInSetCovers(itemsInSet);
-
-        // Divide and Conquer Loop
-        divideAndConquer(this.coversToCompute);
-
-        // Return Final Cover
-        return returnFinalCover(this.coversToCompute);
+    public Cover compute(Set<String> itemsInSet) {
+        if (itemsInSet.size() == 1) {
+            return itemCovers(itemsInSet)[0];
+        }
+        return cache().computeIfAbsent(key(itemsInSet), key -> Covers.and(itemCovers(itemsInSet)));
     }
 
     /**
-     * Copies the covers of items in the given set.
+     * Reads the cover of a given set of items from the cover cache of the
+     * dataset, without computing it.
      * 
-     * @param itemsInSet The set of items.
-     * @return The set of copied covers.
+     * @param itemsInSet The non empty set of items.
+     * @return The cover, or null if it is not cached.
      */
-    Set<SparseBitSet> copyItemsInSetCovers(Set<String> itemsInSet) {
-        Set<SparseBitSet> coversToCompute = new HashSet<>();
-        for (String itemValue : itemsInSet) {
-            SparseBitSet originalCover = itemsMap.get(itemValue);
-            SparseBitSet copiedCover = (originalCover != null) ? SetUtil.copyCover(originalCover) : new SparseBitSet();
-            coversToCompute.add(copiedCover);
+    public Cover cached(Set<String> itemsInSet) {
+        if (itemsInSet.size() == 1) {
+            return itemCovers(itemsInSet)[0];
         }
-        return coversToCompute;
+        return cache().getIfPresent(key(itemsInSet));
     }
 
     /**
-     * Divides and conquers the computed covers until only one cover remains.
-     *
-     * @param coversToCompute The set of computed covers.
+     * Caches the cover of a given set of items, computed by the caller.
+     * 
+     * @param itemsInSet The set of items.
+     * @param cover      The cover of the set of items.
+     * @return The cover now cached for the set of items.
      */
-    void divideAndConquer(Set<SparseBitSet> coversToCompute) {
-        while (this.coversToCompute.size() > 1) {
-            // Pair covers
-            Set<SparseBitSet[]> coverPairs = pairCovers(this.coversToCompute);
-
-            // Compute covers in parallel
-            Set<SparseBitSet> newCoversToCompute = computeCoversParallel(coverPairs);
-
-            // Update the computed covers for the next iteration
-            this.coversToCompute = newCoversToCompute;
+    public Cover put(Set<String> itemsInSet, Cover cover) {
+        if (itemsInSet.size() <= 1) {
+            return cover;
         }
+        return cache().put(key(itemsInSet), cover);
     }
 
     /**
-     * Computes covers in parallel for the given cover pairs.
-     *
-     * @param coverPairs The set of cover pairs.
-     * @return A set containing newly computed covers.
+     * Counts the transactions containing a given set of items without building
+     * their cover. The cache is not consulted, see {@link #cached(Set)}.
+     * 
+     * @param itemsInSet The non empty set of items.
+     * @return The support of the set of items.
      */
-    Set<SparseBitSet> computeCoversParallel(Set<SparseBitSet[]> coverPairs) {
-        // Set to store newly computed covers
-        Set<SparseBitSet> coversToCompute = new HashSet<>();
-
-        coverPairs.parallelStream().forEach(pair -> {
-            // Compute the bitwise AND operation for the pair
-            SparseBitSet newCover = computeAndOperation(pair);
-
-            synchronized (coversToCompute) {
-                // Add the computed cover to the set
-                coversToCompute.add(newCover);
-            }
-        });
-
-        return coversToCompute;
+    public int count(Set<String> itemsInSet) {
+        return dataset.support(itemCovers(itemsInSet));
     }
 
-    /**
-     * Pair the covers in the provided set.
-     *
-     * @param coversToCompute The set of covers to pair.
-     * @return A set containing pairs of covers.
-     */
-    Set<SparseBitSet[]> pairCovers(Set<SparseBitSet> coversToCompute) {
-        Set<SparseBitSet[]> coverPairs = new HashSet<>();
-        Iterator<SparseBitSet> iterator = coversToCompute.iterator();
-
-        while (iterator.hasNext()) {
-            SparseBitSet cover1 = iterator.next();
-            if (iterator.hasNext()) {
-                SparseBitSet cover2 = iterator.next();
-                coverPairs.add(new SparseBitSet[] { cover1, cover2 });
-            } else {
-                coverPairs.add(
-                        new SparseBitSet[] { cover1, SetUtil.createSparseBitSetAllOnes(dataset.getNbTransactions()) });
-            }
-        }
-
-        return coverPairs;
+    private CoverCache cache() {
+        return dataset.getCoverCache();
     }
 
-    /**
-     * Returns the final cover from the computed covers set.
-     * 
-     * @param coversToCompute The set of computed covers.
-     * @return The final cover.
-     */
-    SparseBitSet returnFinalCover(Set<SparseBitSet> coversToCompute) {
-        return coversToCompute.iterator().next();
+    private ItemsetKey key(Set<String> itemsInSet) {
+        return ItemsetKey.of(dataset.getDictionary(), itemsInSet);
     }
 
     /**
-     * Computes the bitwise AND operation between two covers.
+     * Collects the covers of items in the given set, in the iteration order of
+     * the set. Covers are immutable, so the dataset covers are used as is.
      * 
-     * @param pair The pair of covers.
-     * @return The result of the AND operation.
+     * @param itemsInSet The set of items.
+     * @return The covers of the items.
      */
-    SparseBitSet computeAndOperation(SparseBitSet[] pair) {
-        SparseBitSet cover1 = pair[0];
-        SparseBitSet cover2 = pair[1];
-        cover1.and(cover2); // Perform bitwise AND operation in place
-        return cover1;
+    Cover[] itemCovers(Set<String> itemsInSet) {
+        Cover[] covers = new Cover[itemsInSet.size()];
+        int i = 0;
+        for (String itemValue : itemsInSet) {
+            Cover originalCover = dataset.getCover(itemValue);
+            covers[i++] = originalCover != null ? originalCover : Covers.empty(dataset.getNbRows());
+        }
+        return covers;
     }
 }
@@ -1,19 +1,24 @@
 package tools.rules;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Iterator;
 import java.util.Objects;
 import java.util.Set;
-import java.util.function.IntConsumer;
-import com.zaxxer.sparsebits.SparseBitSet;
+import java.util.function.Consumer;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
+import tools.alternatives.Alternative;
 import tools.alternatives.IAlternative; // Import nécessaire
+import tools.data.Cover;
+import tools.data.Covers;
 import tools.data.Dataset;
-import tools.utils.AlternativeUtil;
+import tools.data.ItemDictionary;
 import tools.utils.SetUtil;
 
 @Getter
@@ -22,115 +27,224 @@ import tools.utils.SetUtil;
 // AJOUT DE "implements IAlternative"
 public class DecisionRule implements IRule, IAlternative { 
     
-    private Dataset dataset;
-    private Map<String, SparseBitSet> itemsMap;
-    private @Setter int freqX, freqY, freqZ;
+    // The dataset, the covers and the journal are not part of the JSON form
+    // of the rule (they are transient)
+    private transient Dataset dataset;
+    /**
+     * Supports of X, Y and Z, recounted on demand when X or Y changed since
+     * they were last counted (see {@link #getFreqX()}).
+     */
+    private int freqX, freqY, freqZ;
     private @Setter @Getter double smoothCounts;
     private @Setter @Getter String[] measureNames;
-    private @Getter IAlternative alternative;
-    private SparseBitSet coverX;
-    private SparseBitSet coverY;
-    private SparseBitSet coverZ;
-    private Map<Set<String>, SparseBitSet> memoizedCoverX;
-    private Map<Set<String>, SparseBitSet> memoizedCoverZ;
+    /**
+     * Measures of the rule, recomputed on demand when X or Y changed since
+     * they were last computed (see {@link #getAlternative()}).
+     */
+    private IAlternative alternative;
+    private transient Cover coverX;
+    private transient Cover coverY;
+    private transient Cover coverZ;
     private @Getter @Setter int maxSizeX, maxSizeZ;
-    private CoverParallelCompute coverComputer;
+    private transient CoverParallelCompute coverComputer;
     private String Y;
     private Set<String> itemsInX;
     private Set<String> itemsInZ;
+    /**
+     * Journal of the states before the last addToX / setY, most recent first,
+     * used to undo them (null until the first one).
+     */
+    private transient @Getter(AccessLevel.NONE) Deque<Step> steps;
+    /** Identity of the rule, computed on first use (null when X or Y changed). */
+    private transient @Getter(AccessLevel.NONE) RuleKey key;
+    /** Number of changes of X or Y made to the rule. */
+    private long version;
+    /** Versions of the rule the supports and the measures were computed for. */
+    private @Getter(AccessLevel.NONE) long frequenciesVersion, alternativeVersion;
+
+    /** Maximum number of undoable steps kept in the journal. */
+    private static final int MAX_STEPS = 32;
 
     public DecisionRule(Set<String> itemsInX, String Y, Dataset dataset, int maxSizeX, int maxSizeZ,
             double smoothCounts, String[] measureNames) {
         this.dataset = dataset;
-        this.itemsMap = this.dataset.getItemsMap();
         this.smoothCounts = smoothCounts;
         this.itemsInX = itemsInX;
         this.Y = Y;
         computeItemsInZ();
         setMaxSizeX(maxSizeX);
         setMaxSizeZ(maxSizeZ);
-        initializeMemoization(getMaxSizeX(), getMaxSizeZ());
         this.coverComputer = new CoverParallelCompute(getDataset());
         computeNewCover(new String[] { "x", "y", "z" });
-        updateFrequencies(new String[] { "x", "y", "z" });
+        updateFrequencies();
         setMeasureNames(measureNames);
-        this.alternative = AlternativeUtil.computeAlternativeOrZero(this, getDataset().getNbTransactions(),
-                smoothCounts, getMeasureNames());
+        // The measures are computed on first use
+        this.alternativeVersion = -1;
     }
-    
+
+    /**
+     * Rehydrates a rule from its snapshot (see
+     * {@link RuleSnapshot#toRule(Dataset, int, int, double, String[])}): the
+     * frequencies and measures are the recorded ones and no cover is
+     * intersected until needed.
+     */
+    DecisionRule(RuleSnapshot snapshot, Dataset dataset, int maxSizeX, int maxSizeZ, double smoothCounts,
+            String[] measureNames) {
+        this.dataset = dataset;
+        this.smoothCounts = smoothCounts;
+        this.itemsInX = snapshot.itemsInX(dataset.getDictionary());
+        this.Y = snapshot.getY(dataset.getDictionary());
+        computeItemsInZ();
+        this.key = snapshot.getKey();
+        setMaxSizeX(maxSizeX);
+        setMaxSizeZ(maxSizeZ);
+        this.coverComputer = new CoverParallelCompute(getDataset());
+        computeNewCover(new String[] { "x", "y", "z" });
+        this.freqX = snapshot.getFreqX();
+        this.freqY = snapshot.getFreqY();
+        this.freqZ = snapshot.getFreqZ();
+        setMeasureNames(measureNames);
+        this.alternative = snapshot.getAlternative();
+    }
+
     // --- METHODES DE L'INTERFACE IAlternative ---
     
     @Override
     public double[] getVector() {
-        return alternative.getVector();
+        return getAlternative().getVector();
     }
 
     @Override
     public double getOrderedValue(int i) {
-        return alternative.getOrderedValue(i);
+        return getAlternative().getOrderedValue(i);
     }
 
     @Override
     public int[] getOrderedPermutation() {
-        return alternative.getOrderedPermutation();
+        return getAlternative().getOrderedPermutation();
     }
 
     @Override
     public IAlternative deepCopy() {
-        return alternative.deepCopy();
+        return getAlternative().deepCopy();
+    }
+
+    /**
+     * @return The measures of the rule, computed if X or Y changed since they
+     *         were last computed.
+     */
+    public IAlternative getAlternative() {
+        if (this.alternativeVersion != this.version && this.dataset != null) {
+            if (this.itemsInX.isEmpty() || this.Y.isEmpty()) {
+                this.alternative = new Alternative(this.measureNames.length);
+            } else {
+                ensureFrequencies();
+                this.alternative = new Alternative(this.dataset.getMeasureCache(this.measureNames, smoothCounts)
+                        .evaluate(this.freqX, this.freqY, this.freqZ));
+            }
+            this.alternativeVersion = this.version;
+        }
+        return this.alternative;
+    }
+
+    /**
+     * Sets the measures of the current state of the rule, computed elsewhere
+     * (see {@link tools.utils.AlternativeUtil#evaluateRules}).
+     */
+    public void setAlternative(IAlternative alternative) {
+        this.alternative = alternative;
+        this.alternativeVersion = this.version;
+    }
+
+    /**
+     * @return The support of X, counted if X changed since it was last counted.
+     */
+    public int getFreqX() {
+        ensureFrequencies();
+        return this.freqX;
+    }
+
+    public int getFreqY() {
+        ensureFrequencies();
+        return this.freqY;
+    }
+
+    public int getFreqZ() {
+        ensureFrequencies();
+        return this.freqZ;
+    }
+
+    public void setFreqX(int freqX) {
+        ensureFrequencies();
+        this.freqX = freqX;
+    }
+
+    public void setFreqY(int freqY) {
+        ensureFrequencies();
+        this.freqY = freqY;
+    }
+
+    public void setFreqZ(int freqZ) {
+        ensureFrequencies();
+        this.freqZ = freqZ;
+    }
+
+    private void ensureFrequencies() {
+        if (this.frequenciesVersion != this.version && this.dataset != null) {
+            updateFrequencies();
+        }
+    }
+
+    /**
+     * Records a change of X or Y: the supports and the measures are computed
+     * again when next read.
+     */
+    private void changed() {
+        this.version++;
     }
 
     // --- LE RESTE DU CODE EXISTANT (Identique) ---
 
     public void expandSimpleCopy(DecisionRule originalRule) {
+        clearSteps();
         this.dataset = originalRule.getDataset();
-        this.itemsMap = getDataset().getItemsMap();
         computeItemsInZ();
         setMaxSizeX(originalRule.getMaxSizeX());
         setMaxSizeZ(originalRule.getMaxSizeZ());
-        initializeMemoization(getMaxSizeX(), getMaxSizeZ());
         this.coverComputer = new CoverParallelCompute(getDataset());
         computeNewCover(new String[] { "x", "y", "z" });
-        updateFrequencies(new String[] { "x", "y", "z" });
         setMeasureNames(originalRule.getMeasureNames());
-        this.alternative = AlternativeUtil.computeAlternativeOrZero(this, getDataset().getNbTransactions(),
-                smoothCounts, getMeasureNames());
-    }
-
-    private void initializeMemoization(int maxSizeX, int maxSizeZ) {
-        this.memoizedCoverX = new LinkedHashMap<Set<String>, SparseBitSet>(maxSizeX, 1.0f, true) {
-            @Override protected boolean removeEldestEntry(Map.Entry<Set<String>, SparseBitSet> eldest) { return size() > maxSizeX; }
-        };
-        this.memoizedCoverZ = new LinkedHashMap<Set<String>, SparseBitSet>(maxSizeZ, 1.0f, true) {
-            @Override protected boolean removeEldestEntry(Map.Entry<Set<String>, SparseBitSet> eldest) { return size() > maxSizeZ; }
-        };
+        changed();
     }
 
     private void computeItemsInZ() {
+        this.key = null;
         this.itemsInZ = new HashSet<>(this.itemsInX);
         if (!this.Y.isEmpty()) this.itemsInZ.add(this.Y);
     }
 
-    private void updateFrequencies(String[] directions) {
-        for (String direction : directions) {
-            switch (direction) {
-                case "x": updateFrequency(this.itemsInX, this.coverX, this::setFreqX); break;
-                case "y": updateFrequency(this.Y, this.coverY, this::setFreqY); break;
-                case "z": updateFrequency(this.itemsInZ, this.coverZ, this::setFreqZ); break;
-            }
-        }
+    private void updateFrequencies() {
+        this.freqX = countX();
+        this.freqY = this.Y.isEmpty() ? 0 : this.dataset.support(this.coverY);
+        this.freqZ = countZ();
+        this.frequenciesVersion = this.version;
     }
 
-    private void updateFrequency(Set<?> items, SparseBitSet cover, IntConsumer frequencySetter) {
-        frequencySetter.accept(items.isEmpty() ? 0 : cover.cardinality());
-    }
-    private void updateFrequency(String item, SparseBitSet cover, IntConsumer frequencySetter) {
-        frequencySetter.accept(item.isEmpty() ? 0 : cover.cardinality());
+    /**
+     * Support of X, read from its cover when it is materialized and counted by
+     * the fused intersection kernel otherwise.
+     */
+    private int countX() {
+        if (this.itemsInX.isEmpty()) return 0;
+        return this.coverX != null ? this.dataset.support(this.coverX) : coverComputer.count(this.itemsInX);
     }
 
-    private void updateAlternative() {
-        this.alternative = AlternativeUtil.computeAlternativeOrZero(this, getDataset().getNbTransactions(),
-                smoothCounts, getMeasureNames());
+    private int countZ() {
+        if (this.itemsInZ.isEmpty()) return 0;
+        if (this.coverZ != null) return this.dataset.support(this.coverZ);
+        if (this.Y.isEmpty()) return countX();
+        if (this.coverX != null) return this.dataset.support(this.coverX, this.coverY);
+        return coverComputer.count(this.itemsInZ);
     }
 
     private void computeNewCover(String[] directions) {
@@ -143,105 +257,502 @@ public class DecisionRule implements IRule, IAlternative {
         }
     }
 
+    /**
+     * Covers of X and Z are read from the cover cache of the dataset and
+     * otherwise only materialized on demand (see {@link #getCoverX()}), their
+     * supports being enough to evaluate the rule: a null cover stands for a
+     * cover that was not computed yet.
+     */
     private void updateCoverX() {
         if (!this.itemsInX.isEmpty()) {
-            SparseBitSet fromMemory = memoizedCoverX.get(this.itemsInX);
-            if (fromMemory != null) {
-                this.coverX = SetUtil.copyCover(fromMemory);
-            } else {
-                this.coverX = coverComputer.compute(itemsInX);
-                memoizedCoverX.put(SetUtil.copySet(this.itemsInX), SetUtil.copyCover(this.coverX));
-            }
+            this.coverX = coverComputer.cached(this.itemsInX);
         } else {
-            this.coverX = SetUtil.createSparseBitSetAllOnes(this.dataset.getNbTransactions());
+            this.coverX = SetUtil.createCoverAllOnes(this.dataset.getNbRows());
         }
     }
 
     private void updateCoverY() {
         if (!this.Y.isEmpty()) {
-            SparseBitSet mapCover = this.itemsMap.get(this.Y);
-            this.coverY = (mapCover != null) ? mapCover : new SparseBitSet();
+            Cover mapCover = this.dataset.getCover(this.Y);
+            this.coverY = (mapCover != null) ? mapCover : Covers.empty(this.dataset.getNbRows());
         }
     }
 
     private void updateCoverZ() {
         if (!this.itemsInZ.isEmpty()) {
-            SparseBitSet fromMemory = memoizedCoverZ.get(this.itemsInZ);
-            if (fromMemory != null) {
-                this.coverZ = SetUtil.copyCover(fromMemory);
-            } else {
-                this.coverZ = coverComputer.compute(itemsInZ);
-                memoizedCoverZ.put(SetUtil.copySet(this.itemsInZ), SetUtil.copyCover(this.coverZ));
-            }
+            this.coverZ = coverComputer.cached(this.itemsInZ);
         } else {
-            this.coverZ = SetUtil.createSparseBitSetAllOnes(this.dataset.getNbTransactions());
+            this.coverZ = SetUtil.createCoverAllOnes(this.dataset.getNbRows());
         }
     }
 
+    /**
+     * @return The cover of X, computed and cached if needed.
+     */
+    public Cover getCoverX() {
+        if (this.coverX == null) {
+            this.coverX = coverComputer.compute(this.itemsInX);
+        }
+        return this.coverX;
+    }
+
+    /**
+     * @return The cover of Z, computed and cached if needed.
+     */
+    public Cover getCoverZ() {
+        if (this.coverZ == null) {
+            this.coverZ = this.Y.isEmpty() ? getCoverX()
+                    : coverComputer.put(this.itemsInZ, getCoverX().and(this.coverY));
+        }
+        return this.coverZ;
+    }
+
     public void setX(Set<String> itemsInX) {
+        clearSteps();
         this.itemsInX = itemsInX;
         computeItemsInZ();
         computeNewCover(new String[] { "x", "z" });
-        updateFrequencies(new String[] { "x", "z" });
-        updateAlternative();
+        changed();
     }
 
     public void addToX(String itemValue) {
+        if (this.itemsInX.contains(itemValue)) {
+            return;
+        }
+        Cover previousCoverX = this.itemsInX.isEmpty() ? null : this.coverX;
+        Cover previousCoverZ = this.itemsInZ.isEmpty() ? null : this.coverZ;
+        pushStep(new Step(this, itemValue));
         this.itemsInX.add(itemValue);
-        SparseBitSet fromMemoryX = memoizedCoverX.get(this.itemsInX);
-        if (fromMemoryX != null) {
-            this.coverX = SetUtil.copyCover(fromMemoryX);
+        Cover itemCover = this.dataset.getCover(itemValue);
+        if (itemCover == null) {
+            itemCover = Covers.empty(this.dataset.getNbRows());
+        }
+        // Covers already materialized are extended incrementally, the others
+        // stay lazy
+        Cover fromCacheX = coverComputer.cached(this.itemsInX);
+        if (fromCacheX != null || previousCoverX == null) {
+            this.coverX = fromCacheX;
         } else {
-            this.coverX.and(this.itemsMap.get(itemValue));
-            memoizedCoverX.put(SetUtil.copySet(this.itemsInX), SetUtil.copyCover(this.coverX));
+            this.coverX = coverComputer.put(this.itemsInX, previousCoverX.and(itemCover));
         }
         computeItemsInZ();
-        SparseBitSet fromMemoryZ = memoizedCoverZ.get(this.itemsInZ);
-        if (fromMemoryZ != null) {
-            this.coverZ = SetUtil.copyCover(fromMemoryZ);
+        Cover fromCacheZ = coverComputer.cached(this.itemsInZ);
+        if (fromCacheZ != null || previousCoverZ == null) {
+            this.coverZ = fromCacheZ;
         } else {
-            this.coverZ.and(this.itemsMap.get(itemValue));
-            memoizedCoverZ.put(SetUtil.copySet(this.itemsInZ), SetUtil.copyCover(this.coverZ));
+            this.coverZ = coverComputer.put(this.itemsInZ, previousCoverZ.and(itemCover));
         }
-        updateFrequencies(new String[] { "x", "z" });
-        updateAlternative();
+        changed();
     }
 
+    /**
+     * Removes an item from X. Undoing the last addToX restores the previous
+     * covers and supports from the journal; removing an item added earlier
+     * rebuilds the cover of X from the cover recorded before that item was
+     * added and the covers of the items added since.
+     */
     public void removeFromX(String itemValue) {
-        if (this.itemsInX.contains(itemValue)) {
-            this.itemsInX.remove(itemValue);
-            computeItemsInZ();
-            computeNewCover(new String[] { "x", "z" });
-            updateFrequencies(new String[] { "x", "z" });
-            updateAlternative();
-        } else {
+        if (!this.itemsInX.contains(itemValue)) {
             throw new RuntimeException("Item index " + itemValue + " not found in item set X.");
         }
+        Step top = this.steps == null ? null : this.steps.peekFirst();
+        if (top != null && itemValue.equals(top.item)) {
+            this.steps.removeFirst();
+            this.itemsInX.remove(itemValue);
+            top.restore(this);
+            return;
+        }
+        Cover prefixCoverX = removeFromPrefix(itemValue);
+        this.itemsInX.remove(itemValue);
+        computeItemsInZ();
+        computeNewCover(new String[] { "x", "z" });
+        if (this.coverX == null && prefixCoverX != null) {
+            this.coverX = coverComputer.put(this.itemsInX, prefixCoverX);
+        }
+        changed();
     }
 
+    /**
+     * Finds the step that added an item to X and clears the journal, whose
+     * steps can no longer be undone without the item.
+     *
+     * @return The cover of X without the item when the cover recorded before
+     *         the item was added is materialized, null otherwise.
+     */
+    private Cover removeFromPrefix(String itemValue) {
+        if (this.steps == null) {
+            return null;
+        }
+        int depth = 0;
+        for (Step step : this.steps) {
+            depth++;
+            if (itemValue.equals(step.item)) {
+                Cover[] covers = new Cover[depth];
+                int n = 0;
+                Iterator<Step> iterator = this.steps.iterator();
+                for (int i = 0; i < depth; i++) {
+                    Step later = iterator.next();
+                    if (later.item != null && !later.item.equals(itemValue)) {
+                        Cover itemCover = this.dataset.getCover(later.item);
+                        covers[n++] = itemCover != null ? itemCover : Covers.empty(this.dataset.getNbRows());
+                    }
+                }
+                // The older steps recorded covers of X with the item in it
+                clearSteps();
+                if (step.coverX == null || step.itemsInXSize == 0) {
+                    return null;
+                }
+                covers[n++] = step.coverX;
+                return Covers.and(Arrays.copyOf(covers, n));
+            }
+        }
+        clearSteps();
+        return null;
+    }
+
+    /**
+     * Changes the consequent. Setting back the consequent replaced by the last
+     * setY restores the previous covers and supports from the journal.
+     */
     public void setY(String Y) {
+        Step top = this.steps == null ? null : this.steps.peekFirst();
+        if (top != null && top.item == null && Objects.equals(top.Y, Y)) {
+            this.steps.removeFirst();
+            top.restore(this);
+            return;
+        }
+        pushStep(new Step(this, null));
         this.Y = Y;
         computeItemsInZ();
         computeNewCover(new String[] { "y", "z" });
-        updateFrequencies(new String[] { "y", "z" });
-        updateAlternative();
+        changed();
+    }
+
+    /**
+     * Evaluates, without changing the rule, the rules obtained by adding each
+     * candidate item to X.
+     *
+     * @param candidateItems The ids of the candidate items.
+     * @return The frequencies and measures of the resulting rules.
+     */
+    public RuleMoves evaluateAdditions(int[] candidateItems) {
+        return RuleMoves.additions(this, candidateItems);
     }
 
+    /**
+     * Evaluates, without changing the rule, the rules obtained by removing
+     * each item of X.
+     *
+     * @return The frequencies and measures of the resulting rules, the i-th
+     *         move removing the i-th item of X in iteration order.
+     */
+    public RuleMoves evaluateRemovals() {
+        return RuleMoves.removals(this, this.dataset.getDictionary().encode(this.itemsInX));
+    }
+
+    /**
+     * Evaluates, without changing the rule, the rules obtained by replacing Y
+     * with each consequent item of the dataset.
+     *
+     * @return The frequencies and measures of the resulting rules.
+     */
+    public RuleMoves evaluateConsequents() {
+        return evaluateConsequents(this.dataset.getConsequentItemIds());
+    }
+
+    /**
+     * Evaluates, without changing the rule, the rules obtained by replacing Y
+     * with each candidate item.
+     *
+     * @param candidateItems The ids of the candidate items.
+     * @return The frequencies and measures of the resulting rules.
+     */
+    public RuleMoves evaluateConsequents(int[] candidateItems) {
+        return RuleMoves.consequents(this, candidateItems);
+    }
+
+    /**
+     * Applies a move evaluated on the current state of the rule, with its
+     * evaluated frequencies and measures: the covers of X and Z are read from
+     * the cover cache, or left to be computed on demand. The move is undone as
+     * an addToX or a setY, by removeFromX or by setting back the previous Y; a
+     * removal is made as by removeFromX.
+     *
+     * @param moves The moves evaluated from the rule.
+     * @param i     The index of the move to apply.
+     * @throws IllegalStateException If the rule changed since the moves were
+     *                               evaluated.
+     */
+    public void apply(RuleMoves moves, int i) {
+        if (!moves.getRuleKey().equals(getKey())) {
+            throw new IllegalStateException("The moves were evaluated on another state of the rule.");
+        }
+        String item = this.dataset.getDictionary().getItem(moves.getItem(i));
+        if (moves.getKind() == RuleMoves.Kind.REMOVALS) {
+            if (!this.itemsInX.contains(item)) {
+                return;
+            }
+            removeFromX(item);
+            setEvaluated(moves, i);
+            return;
+        }
+        if (moves.isConsequents()) {
+            pushStep(new Step(this, null));
+            this.Y = item;
+            computeItemsInZ();
+            updateCoverY();
+        } else {
+            if (this.itemsInX.contains(item)) {
+                return;
+            }
+            pushStep(new Step(this, item));
+            this.itemsInX.add(item);
+            computeItemsInZ();
+            this.coverX = coverComputer.cached(this.itemsInX);
+        }
+        this.coverZ = coverComputer.cached(this.itemsInZ);
+        changed();
+        setEvaluated(moves, i);
+    }
+
+    /**
+     * Builds the rule obtained by a move evaluated on the current state of the
+     * rule, without changing it. The neighbour has the evaluated frequencies
+     * and measures, the dataset and the key of the rule it stands for, but no
+     * cover: it is meant to be scored, copied or hashed, not moved.
+     *
+     * @param moves The moves evaluated from the rule.
+     * @param i     The index of the move.
+     * @return The rule after the i-th move.
+     * @throws IllegalStateException If the rule changed since the moves were
+     *                               evaluated.
+     */
+    public DecisionRule neighbour(RuleMoves moves, int i) {
+        if (!moves.getRuleKey().equals(getKey())) {
+            throw new IllegalStateException("The moves were evaluated on another state of the rule.");
+        }
+        String item = this.dataset.getDictionary().getItem(moves.getItem(i));
+        Set<String> neighbourX = new HashSet<>(this.itemsInX);
+        String neighbourY = this.Y;
+        switch (moves.getKind()) {
+            case ADDITIONS:
+                neighbourX.add(item);
+                break;
+            case REMOVALS:
+                neighbourX.remove(item);
+                break;
+            default:
+                neighbourY = item;
+        }
+        Set<String> neighbourZ = new HashSet<>(neighbourX);
+        if (!neighbourY.isEmpty()) {
+            neighbourZ.add(neighbourY);
+        }
+        return DecisionRule.builder()
+                .dataset(this.dataset)
+                .itemsInX(neighbourX)
+                .Y(neighbourY)
+                .itemsInZ(neighbourZ)
+                .key(RuleKey.of(neighbourX, neighbourY, this.dataset.getDictionary()))
+                .maxSizeX(this.maxSizeX)
+                .maxSizeZ(this.maxSizeZ)
+                .freqX(moves.getFreqX(i))
+                .freqY(moves.getFreqY(i))
+                .freqZ(moves.getFreqZ(i))
+                .alternative(moves.getAlternative(i))
+                .smoothCounts(this.smoothCounts)
+                .measureNames(this.measureNames)
+                .build();
+    }
+
+    /**
+     * Records the frequencies and measures of the i-th move as those of the
+     * current version.
+     */
+    private void setEvaluated(RuleMoves moves, int i) {
+        this.freqX = moves.getFreqX(i);
+        this.freqY = moves.getFreqY(i);
+        this.freqZ = moves.getFreqZ(i);
+        this.frequenciesVersion = this.version;
+        this.alternative = moves.getAlternative(i);
+        this.alternativeVersion = this.version;
+    }
+
+    /**
+     * Changes X and Y at once: the changes made by the editor are applied to
+     * a copy of X, then swapped in, the covers are looked up once and the
+     * supports and measures are computed once, when next read. The rule is
+     * left unchanged when the edit or the covers fail. The changes are not
+     * undone by the journal, which is cleared.
+     *
+     * @param edit The changes to make.
+     */
+    public void mutate(Consumer<RuleEditor> edit) {
+        RuleEditor editor = new RuleEditor(new HashSet<>(this.itemsInX), this.Y);
+        edit.accept(editor);
+        boolean changedX = editor.isChangedX();
+        boolean changedY = !this.Y.equals(editor.getY());
+        if (!changedX && !changedY) {
+            return;
+        }
+        Set<String> previousX = this.itemsInX;
+        String previousY = this.Y;
+        Set<String> previousZ = this.itemsInZ;
+        Cover previousCoverX = this.coverX, previousCoverY = this.coverY, previousCoverZ = this.coverZ;
+        RuleKey previousKey = this.key;
+        try {
+            this.itemsInX = editor.getItemsInX();
+            this.Y = editor.getY();
+            computeItemsInZ();
+            if (changedX) {
+                updateCoverX();
+            }
+            if (changedY) {
+                updateCoverY();
+            }
+            updateCoverZ();
+        } catch (RuntimeException e) {
+            this.itemsInX = previousX;
+            this.Y = previousY;
+            this.itemsInZ = previousZ;
+            this.coverX = previousCoverX;
+            this.coverY = previousCoverY;
+            this.coverZ = previousCoverZ;
+            this.key = previousKey;
+            throw e;
+        }
+        clearSteps();
+        changed();
+    }
+
+    private void pushStep(Step step) {
+        if (this.steps == null) {
+            this.steps = new ArrayDeque<>();
+        }
+        this.steps.addFirst(step);
+        if (this.steps.size() > MAX_STEPS) {
+            this.steps.removeLast();
+        }
+    }
+
+    private void clearSteps() {
+        if (this.steps != null) {
+            this.steps.clear();
+        }
+    }
+
+    /**
+     * State of the rule before an addToX (the added item is recorded) or a
+     * setY (no item). Covers are immutable, so the previous covers are kept
+     * as is and restored without any set operation.
+     */
+    private static final class Step {
+        final String item;
+        final String Y;
+        final int itemsInXSize;
+        final Cover coverX, coverY, coverZ;
+        /** Whether the supports were counted (the measures are null when not computed). */
+        final boolean frequencies;
+        final int freqX, freqY, freqZ;
+        final IAlternative alternative;
+
+        Step(DecisionRule rule, String item) {
+            this.item = item;
+            this.Y = rule.Y;
+            this.itemsInXSize = rule.itemsInX.size();
+            this.coverX = rule.coverX;
+            this.coverY = rule.coverY;
+            this.coverZ = rule.coverZ;
+            this.frequencies = rule.frequenciesVersion == rule.version;
+            this.freqX = rule.freqX;
+            this.freqY = rule.freqY;
+            this.freqZ = rule.freqZ;
+            this.alternative = rule.alternativeVersion == rule.version ? rule.alternative : null;
+        }
+
+        void restore(DecisionRule rule) {
+            rule.Y = this.Y;
+            rule.computeItemsInZ();
+            rule.coverX = this.coverX;
+            rule.coverY = this.coverY;
+            rule.coverZ = this.coverZ;
+            rule.changed();
+            if (this.frequencies) {
+                rule.freqX = this.freqX;
+                rule.freqY = this.freqY;
+                rule.freqZ = this.freqZ;
+                rule.frequenciesVersion = rule.version;
+            }
+            if (this.alternative != null) {
+                rule.alternative = this.alternative;
+                rule.alternativeVersion = rule.version;
+            }
+        }
+    }
+
+    /**
+     * @return The identity of the rule, its items encoded with the dictionary
+     *         of its dataset.
+     * @throws IllegalStateException    If the rule has neither a key nor a
+     *                                  dataset to compute it.
+     * @throws IllegalArgumentException If an item of the rule is unknown to the
+     *                                  dictionary of its dataset.
+     */
+    public RuleKey getKey() {
+        RuleKey ruleKey = keyOrNull();
+        if (ruleKey == null) {
+            if (this.dataset == null) {
+                throw new IllegalStateException("The rule has no dataset to encode its items.");
+            }
+            return RuleKey.of(this.itemsInX, this.Y, this.dataset.getDictionary());
+        }
+        return ruleKey;
+    }
+
+    /**
+     * @return The key of the rule, null when it has neither a key nor a
+     *         dataset knowing all its items to compute it.
+     */
+    private RuleKey keyOrNull() {
+        RuleKey ruleKey = this.key;
+        if (ruleKey == null && this.dataset != null && isEncodable(this.dataset.getDictionary())) {
+            ruleKey = RuleKey.of(this.itemsInX, this.Y, this.dataset.getDictionary());
+            this.key = ruleKey;
+        }
+        return ruleKey;
+    }
+
+    private boolean isEncodable(ItemDictionary dictionary) {
+        for (String item : this.itemsInX) {
+            if (dictionary.getId(item) == ItemDictionary.UNKNOWN_ITEM) {
+                return false;
+            }
+        }
+        return this.Y == null || this.Y.isEmpty() || dictionary.getId(this.Y) != ItemDictionary.UNKNOWN_ITEM;
+    }
+
+    /**
+     * Two rules are equal when they have the same items (see {@link RuleKey}),
+     * whatever their frequencies. Rules without a key (built without a
+     * dataset, or with items unknown to its dictionary) are compared by their item values; they are hashed differently
+     * from the rules with a key, so they are never equal to them.
+     */
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
-        DecisionRule rule = (DecisionRule) obj;
-        if (Objects.equals(itemsInX, rule.itemsInX) && Objects.equals(Y, rule.Y)) {
-            return true;
+        DecisionRule other = (DecisionRule) obj;
+        RuleKey ruleKey = keyOrNull();
+        RuleKey otherKey = other.keyOrNull();
+        if (ruleKey != null || otherKey != null) {
+            return ruleKey != null && ruleKey.equals(otherKey);
         }
-        return Objects.equals(freqX, rule.getFreqX()) &&
-               Objects.equals(freqY, rule.getFreqY()) &&
-               Objects.equals(freqZ, rule.getFreqZ());
-    }    
+        return Objects.equals(itemsInX, other.itemsInX) && Objects.equals(Y, other.Y);
+    }
 
     @Override
     public int hashCode() {
-        return Objects.hash(itemsInX, Y, freqX, freqY, freqZ);
+        RuleKey ruleKey = keyOrNull();
+        return ruleKey != null ? ruleKey.hashCode() : Objects.hash(itemsInX, Y);
     }
 }
\ No newline at end of file
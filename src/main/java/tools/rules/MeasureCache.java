@@ -0,0 +1,166 @@
+package tools.rules;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of the measure vectors of rules keyed by their contingency counts
+ * (freqX, freqY, freqZ): for a given dataset size, smoothing factor and list
+ * of measures, rules with the same supports have the same measures. The
+ * caches are scoped by {@link tools.data.Dataset#getMeasureCache}.
+ *
+ * The three supports are packed in a long, 21 bits each, and the vectors are
+ * stored in a bounded open-addressing table probed linearly over a few slots:
+ * when they are all taken by other triples, the first one is overwritten.
+ * Entries are immutable and published atomically, so lookups and insertions
+ * are lock free and the cache is shared by concurrent chains. Datasets of
+ * 2^21 transactions or more are not cached.
+ */
+public final class MeasureCache {
+
+    /** Number of vectors held by default. */
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+    private static final int MAX_PROBES = 4;
+    private static final int BITS = 21;
+    private static final int MAX_SUPPORT = (1 << BITS) - 1;
+
+    private final MeasureKernel kernel;
+    private final String[] measureNames;
+    private final int nbTransactions;
+    private final double smoothCounts;
+    private final boolean cacheable;
+    private final AtomicReferenceArray<Entry> table;
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param measureNames   The names of the measures of the vectors.
+     * @param nbTransactions The total number of transactions in the dataset.
+     * @param smoothCounts   The smoothing factor for the counts.
+     * @param capacity       The number of vectors held, rounded up to a power
+     *                       of two.
+     */
+    public MeasureCache(String[] measureNames, int nbTransactions, double smoothCounts, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity of the measure cache must be positive.");
+        }
+        this.kernel = MeasureKernel.compile(measureNames);
+        this.measureNames = measureNames;
+        this.nbTransactions = nbTransactions;
+        this.smoothCounts = smoothCounts;
+        this.cacheable = nbTransactions <= MAX_SUPPORT;
+        int size = Integer.highestOneBit(Math.max(MAX_PROBES, capacity - 1) << 1);
+        this.table = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return Whether the cache computes the measures of these names for this
+     *         number of transactions and smoothing factor (the names being
+     *         compared by identity).
+     */
+    public boolean isScopeOf(String[] measureNames, int nbTransactions, double smoothCounts) {
+        return this.measureNames == measureNames && this.nbTransactions == nbTransactions
+                && this.smoothCounts == smoothCounts;
+    }
+
+    public int size() {
+        return kernel.size();
+    }
+
+    /**
+     * Copies the measures of a rule into an array, computing and caching them
+     * if needed.
+     *
+     * @param measures The array receiving the measures.
+     * @param offset   The index of the first measure in the array.
+     */
+    public void evaluate(int freqX, int freqY, int freqZ, double[] measures, int offset) {
+        if (!cacheable) {
+            misses.increment();
+            kernel.evaluate(nbTransactions, freqZ, freqX, freqY, smoothCounts, measures, offset);
+            return;
+        }
+        long key = ((long) freqX << (2 * BITS)) | ((long) freqY << BITS) | freqZ;
+        int home = spread(key) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (home + probe) & mask;
+            Entry entry = table.get(slot);
+            if (entry == null) {
+                break;
+            }
+            if (entry.key == key) {
+                hits.increment();
+                System.arraycopy(entry.vector, 0, measures, offset, entry.vector.length);
+                return;
+            }
+        }
+        misses.increment();
+        double[] vector = kernel.evaluate(nbTransactions, freqZ, freqX, freqY, smoothCounts);
+        System.arraycopy(vector, 0, measures, offset, vector.length);
+        Entry inserted = new Entry(key, vector);
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (home + probe) & mask;
+            if (table.get(slot) == null && table.compareAndSet(slot, null, inserted)) {
+                return;
+            }
+        }
+        table.set(home, inserted);
+    }
+
+    /**
+     * @return The measures of a rule, in a new array.
+     */
+    public double[] evaluate(int freqX, int freqY, int freqZ) {
+        double[] measures = new double[kernel.size()];
+        evaluate(freqX, freqY, freqZ, measures, 0);
+        return measures;
+    }
+
+    private static int spread(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return (int) (key ^ (key >>> 33));
+    }
+
+    public void clear() {
+        for (int slot = 0; slot < table.length(); slot++) {
+            table.set(slot, null);
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public double hitRate() {
+        long hitCount = hitCount();
+        long requests = hitCount + missCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "MeasureCache[measures=" + Arrays.toString(measureNames) + ", smoothCounts=" + smoothCounts
+                + ", hits=" + hitCount() + ", misses=" + missCount() + ", hitRate="
+                + String.format(Locale.ROOT, "%.3f", hitRate()) + "]";
+    }
+
+    private static final class Entry {
+        final long key;
+        final double[] vector;
+
+        Entry(long key, double[] vector) {
+            this.key = key;
+            this.vector = vector;
+        }
+    }
+}
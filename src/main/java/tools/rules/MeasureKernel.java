@@ -0,0 +1,337 @@
+package tools.rules;
+
+import static java.lang.Math.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The measures of {@link RuleMeasures} compiled once from a list of measure
+ * names into an array of opcodes. A kernel evaluates the measures of a rule
+ * straight from its contingency counts into a caller-provided array, without
+ * allocating nor comparing names.
+ *
+ * The values are range checked, as in {@link RuleMeasures}, only in debug mode,
+ * that is when the assertions are enabled for this class (-ea) or when the
+ * system property {@value #CHECK_PROPERTY} is true.
+ *
+ * Kernels are immutable and thread safe.
+ */
+public final class MeasureKernel {
+
+    /** System property enabling the range checks of the measures. */
+    public static final String CHECK_PROPERTY = "rules.checkMeasures";
+
+    /** Whether the measures of the rules are range checked, shared with {@link RuleMeasures}. */
+    static final boolean CHECK = MeasureKernel.class.desiredAssertionStatus()
+            || Boolean.getBoolean(CHECK_PROPERTY);
+
+    private static final int CONFIDENCE = 0, LIFT = 1, COSINE = 2, PHI = 3, KRUSKAL = 4, YULE_Q = 5,
+            ADDED_VALUE = 6, CERTAINTY = 7, SUPPORT = 8, REVSUPPORT = 9;
+
+    /** Valid range of each measure, by opcode. */
+    private static final double[] LOWER_BOUNDS = { 0, 0, 0, -1, 0, -1, -0.5, -1, 0, 0 };
+    private static final double[] UPPER_BOUNDS = { 1, Double.MAX_VALUE, 1, 1, 1, 1, 1, 1, 1, 1 };
+
+    /** Number of rules whose contingency counts are laid out together. */
+    private static final int BLOCK = 256;
+
+    private static final ConcurrentHashMap<List<String>, MeasureKernel> KERNELS = new ConcurrentHashMap<>();
+    /** Last kernel compiled, found again by identity of the measure names. */
+    private static volatile MeasureKernel last;
+
+    private final String[] measureNames;
+    private final int[] opcodes;
+
+    private MeasureKernel(String[] measureNames, int[] opcodes) {
+        this.measureNames = measureNames;
+        this.opcodes = opcodes;
+    }
+
+    private static MeasureKernel of(String[] measureNames) {
+        int[] opcodes = new int[measureNames.length];
+        for (int i = 0; i < measureNames.length; i++) {
+            opcodes[i] = opcode(measureNames[i]);
+        }
+        return new MeasureKernel(measureNames, opcodes);
+    }
+
+    /**
+     * @param measureNames The names of the measures, in the order of the
+     *                     vectors to compute.
+     * @return The kernel of the measures, compiled on the first call for these
+     *         names. The array of names must not be changed afterwards, the
+     *         last kernel being found again by its identity.
+     * @throws RuntimeException If an unknown measure name is encountered.
+     */
+    public static MeasureKernel compile(String[] measureNames) {
+        MeasureKernel kernel = last;
+        if (kernel != null && kernel.measureNames == measureNames) {
+            return kernel;
+        }
+        kernel = KERNELS.get(Arrays.asList(measureNames));
+        if (kernel == null) {
+            String[] names = measureNames.clone();
+            kernel = KERNELS.computeIfAbsent(Arrays.asList(names), key -> of(names));
+        }
+        if (kernel.measureNames != measureNames) {
+            kernel = new MeasureKernel(measureNames, kernel.opcodes);
+        }
+        last = kernel;
+        return kernel;
+    }
+
+    private static int opcode(String measureName) {
+        switch (measureName) {
+            case RuleMeasures.confidence: return CONFIDENCE;
+            case RuleMeasures.lift: return LIFT;
+            case RuleMeasures.cosine: return COSINE;
+            case RuleMeasures.phi: return PHI;
+            case RuleMeasures.kruskal: return KRUSKAL;
+            case RuleMeasures.yuleQ: return YULE_Q;
+            case RuleMeasures.addedValue: return ADDED_VALUE;
+            case RuleMeasures.certainty: return CERTAINTY;
+            case RuleMeasures.support: return SUPPORT;
+            case RuleMeasures.revsupport: return REVSUPPORT;
+            default: throw new RuntimeException("This measure doesn't exist : " + measureName);
+        }
+    }
+
+    /**
+     * @return The number of measures computed.
+     */
+    public int size() {
+        return opcodes.length;
+    }
+
+    /**
+     * Computes the measures of a rule.
+     *
+     * @param nbTransactions The total number of transactions in the dataset.
+     * @param freqZ          The support of X and Y together (n11).
+     * @param freqX          The support of the antecedent X (n1x).
+     * @param freqY          The support of the consequent Y (nx1).
+     * @param smoothCounts   The smoothing factor for the counts.
+     * @param measures       The array receiving the measures.
+     * @param offset         The index of the first measure in the array.
+     */
+    public void evaluate(int nbTransactions, int freqZ, int freqX, int freqY, double smoothCounts,
+            double[] measures, int offset) {
+        double n = nbTransactions;
+        double n11 = freqZ;
+        double n1x = freqX;
+        double nx1 = freqY;
+        double n0x = n - n1x;
+        double nx0 = n - nx1;
+        double n10 = n1x - n11;
+        double n01 = nx1 - n11;
+        double n00 = n0x - n01;
+        if (smoothCounts > 0) {
+            n = n + 4 * smoothCounts;
+            n11 = n11 + smoothCounts;
+            n10 = n10 + smoothCounts;
+            n01 = n01 + smoothCounts;
+            n00 = n00 + smoothCounts;
+            n0x = n0x + 2 * smoothCounts;
+            nx0 = nx0 + 2 * smoothCounts;
+            n1x = n1x + 2 * smoothCounts;
+            nx1 = nx1 + 2 * smoothCounts;
+        }
+        for (int i = 0; i < opcodes.length; i++) {
+            double value;
+            switch (opcodes[i]) {
+                case CONFIDENCE:
+                    value = n11 / n1x;
+                    if (CHECK) check(value, i);
+                    break;
+                case LIFT:
+                    value = n * n11 / (n1x * nx1);
+                    if (CHECK) check(value, i);
+                    break;
+                case COSINE:
+                    value = n11 / sqrt(n1x * nx1);
+                    if (CHECK) check(value, i);
+                    break;
+                case PHI:
+                    value = (n * n11 - n1x * nx1) / sqrt(n1x * nx1 * n0x * nx0);
+                    if (CHECK) check(value, i);
+                    break;
+                case KRUSKAL: {
+                    double max_x0x1 = max(nx1, nx0);
+                    value = (max(n11, n10) + max(n01, n00) - max_x0x1) / (n - max_x0x1);
+                    if (CHECK) check(value, i);
+                    break;
+                }
+                case YULE_Q: {
+                    double OR = n11 * n00 / (n10 * n01);
+                    value = (OR - 1) / (OR + 1);
+                    if (CHECK) check(value, i);
+                    break;
+                }
+                case ADDED_VALUE:
+                    value = n11 / n1x - nx1 / n;
+                    if (CHECK) check(value, i);
+                    break;
+                case CERTAINTY: {
+                    double value1 = (n11 / n1x - nx1 / n) / (1 - nx1 / n);
+                    double value2 = (n11 / nx1 - n1x / n) / (1 - n1x / n);
+                    value = max(value1, value2);
+                    if (CHECK) check(value, i);
+                    break;
+                }
+                case SUPPORT:
+                    value = n11 / n;
+                    if (CHECK) check(value, i);
+                    break;
+                default:
+                    value = 1 - n11 / n;
+                    if (CHECK) check(value, i);
+                    break;
+            }
+            measures[offset + i] = value;
+        }
+    }
+
+    /**
+     * @return The measures of a rule, in a new array.
+     * @see #evaluate(int, int, int, int, double, double[], int)
+     */
+    public double[] evaluate(int nbTransactions, int freqZ, int freqX, int freqY, double smoothCounts) {
+        double[] measures = new double[opcodes.length];
+        evaluate(nbTransactions, freqZ, freqX, freqY, smoothCounts, measures, 0);
+        return measures;
+    }
+
+    /**
+     * Computes the measures of rules [from, to) of a batch, into a matrix
+     * stored row after row: the measures of rule i start at index i * size()
+     * of the array. The contingency counts of the rules are laid out by blocks
+     * in columns, then each measure is computed over a block in a loop without
+     * branch.
+     *
+     * @param nbTransactions The total number of transactions in the dataset.
+     * @param freqZ          The supports of X and Y together of the rules.
+     * @param freqX          The supports of the antecedents of the rules.
+     * @param freqY          The supports of the consequents of the rules.
+     * @param smoothCounts   The smoothing factor for the counts.
+     * @param defined        Whether each rule has an antecedent and a
+     *                       consequent, null if all have: the measures of the
+     *                       other rules are zeros.
+     * @param from           The first rule.
+     * @param to             The rule after the last one.
+     * @param measures       The matrix receiving the measures.
+     */
+    public void evaluate(int nbTransactions, int[] freqZ, int[] freqX, int[] freqY, double smoothCounts,
+            boolean[] defined, int from, int to, double[] measures) {
+        int m = opcodes.length;
+        int length = Math.min(BLOCK, to - from);
+        if (length <= 0) {
+            return;
+        }
+        double[] n11 = new double[length], n1x = new double[length], nx1 = new double[length];
+        double[] n0x = new double[length], nx0 = new double[length];
+        double[] n10 = new double[length], n01 = new double[length], n00 = new double[length];
+        double rawN = nbTransactions;
+        double n = smoothCounts > 0 ? rawN + 4 * smoothCounts : rawN;
+        for (int start = from; start < to; start += BLOCK) {
+            int end = Math.min(to, start + BLOCK);
+            int len = end - start;
+            for (int j = 0; j < len; j++) {
+                double z = freqZ[start + j];
+                double x = freqX[start + j];
+                double y = freqY[start + j];
+                n11[j] = z;
+                n1x[j] = x;
+                nx1[j] = y;
+                n0x[j] = rawN - x;
+                nx0[j] = rawN - y;
+                n10[j] = x - z;
+                n01[j] = y - z;
+                n00[j] = n0x[j] - n01[j];
+            }
+            if (smoothCounts > 0) {
+                for (int j = 0; j < len; j++) {
+                    n11[j] = n11[j] + smoothCounts;
+                    n10[j] = n10[j] + smoothCounts;
+                    n01[j] = n01[j] + smoothCounts;
+                    n00[j] = n00[j] + smoothCounts;
+                    n0x[j] = n0x[j] + 2 * smoothCounts;
+                    nx0[j] = nx0[j] + 2 * smoothCounts;
+                    n1x[j] = n1x[j] + 2 * smoothCounts;
+                    nx1[j] = nx1[j] + 2 * smoothCounts;
+                }
+            }
+            for (int k = 0; k < m; k++) {
+                int index = start * m + k;
+                switch (opcodes[k]) {
+                    case CONFIDENCE:
+                        for (int j = 0; j < len; j++, index += m)
+                            measures[index] = n11[j] / n1x[j];
+                        break;
+                    case LIFT:
+                        for (int j = 0; j < len; j++, index += m)
+                            measures[index] = n * n11[j] / (n1x[j] * nx1[j]);
+                        break;
+                    case COSINE:
+                        for (int j = 0; j < len; j++, index += m)
+                            measures[index] = n11[j] / sqrt(n1x[j] * nx1[j]);
+                        break;
+                    case PHI:
+                        for (int j = 0; j < len; j++, index += m)
+                            measures[index] = (n * n11[j] - n1x[j] * nx1[j]) / sqrt(n1x[j] * nx1[j] * n0x[j] * nx0[j]);
+                        break;
+                    case KRUSKAL:
+                        for (int j = 0; j < len; j++, index += m) {
+                            double max_x0x1 = max(nx1[j], nx0[j]);
+                            measures[index] = (max(n11[j], n10[j]) + max(n01[j], n00[j]) - max_x0x1) / (n - max_x0x1);
+                        }
+                        break;
+                    case YULE_Q:
+                        for (int j = 0; j < len; j++, index += m) {
+                            double OR = n11[j] * n00[j] / (n10[j] * n01[j]);
+                            measures[index] = (OR - 1) / (OR + 1);
+                        }
+                        break;
+                    case ADDED_VALUE:
+                        for (int j = 0; j < len; j++, index += m)
+                            measures[index] = n11[j] / n1x[j] - nx1[j] / n;
+                        break;
+                    case CERTAINTY:
+                        for (int j = 0; j < len; j++, index += m) {
+                            double value1 = (n11[j] / n1x[j] - nx1[j] / n) / (1 - nx1[j] / n);
+                            double value2 = (n11[j] / nx1[j] - n1x[j] / n) / (1 - n1x[j] / n);
+                            measures[index] = max(value1, value2);
+                        }
+                        break;
+                    case SUPPORT:
+                        for (int j = 0; j < len; j++, index += m)
+                            measures[index] = n11[j] / n;
+                        break;
+                    default:
+                        for (int j = 0; j < len; j++, index += m)
+                            measures[index] = 1 - n11[j] / n;
+                        break;
+                }
+            }
+            for (int i = start; i < end; i++) {
+                if (defined != null && !defined[i]) {
+                    Arrays.fill(measures, i * m, (i + 1) * m, 0d);
+                } else if (CHECK) {
+                    for (int k = 0; k < m; k++) {
+                        check(measures[i * m + k], k);
+                    }
+                }
+            }
+        }
+    }
+
+    private void check(double value, int i) {
+        double lb = LOWER_BOUNDS[opcodes[i]];
+        double ub = UPPER_BOUNDS[opcodes[i]];
+        if (value > (ub + RuleMeasures.epsilon) || value < (lb - RuleMeasures.epsilon)) {
+            throw new IllegalArgumentException("Illegal value for measure " + measureNames[i] +
+                    ": value=" + value + ", should be between " + lb + " and " + ub);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package tools.rules;
+
+import java.util.Set;
+
+/**
+ * Changes made to the antecedent and the consequent of a rule in one
+ * {@link DecisionRule#mutate(java.util.function.Consumer)}: the items are
+ * added to or removed from a copy of X as they come, the rule taking the copy
+ * and updating its covers, supports and measures once all the changes are
+ * made.
+ */
+public final class RuleEditor {
+
+    private final Set<String> itemsInX;
+    private String Y;
+    private boolean changedX;
+
+    RuleEditor(Set<String> itemsInX, String Y) {
+        this.itemsInX = itemsInX;
+        this.Y = Y;
+    }
+
+    public RuleEditor addToX(String itemValue) {
+        changedX |= itemsInX.add(itemValue);
+        return this;
+    }
+
+    public RuleEditor removeFromX(String itemValue) {
+        if (!itemsInX.remove(itemValue)) {
+            throw new RuntimeException("Item index " + itemValue + " not found in item set X.");
+        }
+        changedX = true;
+        return this;
+    }
+
+    public RuleEditor setY(String Y) {
+        this.Y = Y;
+        return this;
+    }
+
+    /**
+     * @return The items of X with the changes made so far.
+     */
+    public Set<String> getItemsInX() {
+        return itemsInX;
+    }
+
+    public String getY() {
+        return Y;
+    }
+
+    boolean isChangedX() {
+        return changedX;
+    }
+}
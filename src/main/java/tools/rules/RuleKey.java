@@ -0,0 +1,149 @@
+package tools.rules;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import tools.data.ItemDictionary;
+
+/**
+ * Identity of a decision rule X -> Y: the sorted ids of the items of X and
+ * the id of Y in the dictionary of the dataset, with a 64 bits hash computed
+ * once. Two rules are the same rule when their keys are equal, whatever their
+ * frequencies, covers or measures.
+ *
+ * Keys are only comparable between rules encoded with the same dictionary
+ * (the rules of a dataset and of its views). They are ordered by consequent,
+ * then by antecedent, which gives rules a total order independent of the run.
+ */
+public final class RuleKey implements Comparable<RuleKey> {
+
+    private final int[] antecedent;
+    private final int consequent;
+    private final long hash;
+
+    private RuleKey(int[] antecedent, int consequent) {
+        this.antecedent = antecedent;
+        this.consequent = consequent;
+        this.hash = hash(antecedent, consequent);
+    }
+
+    /**
+     * @param antecedent The ids of the items of X, in any order (duplicates are
+     *                   ignored).
+     * @param consequent The id of Y, or {@link ItemDictionary#UNKNOWN_ITEM}
+     *                   when the rule has no consequent.
+     * @return The key of the rule.
+     */
+    public static RuleKey of(int[] antecedent, int consequent) {
+        int[] sorted = antecedent.clone();
+        Arrays.sort(sorted);
+        int length = 0;
+        for (int id : sorted) {
+            if (length == 0 || sorted[length - 1] != id) {
+                sorted[length++] = id;
+            }
+        }
+        return new RuleKey(length == sorted.length ? sorted : Arrays.copyOf(sorted, length), consequent);
+    }
+
+    /**
+     * @param itemsInX   The items of X.
+     * @param Y          The consequent item, empty when the rule has none.
+     * @param dictionary The dictionary encoding the items.
+     * @return The key of the rule.
+     * @throws IllegalArgumentException If an item of the rule is unknown to the
+     *                                  dictionary, since it would share its id
+     *                                  with every other unknown item.
+     */
+    public static RuleKey of(Collection<String> itemsInX, String Y, ItemDictionary dictionary) {
+        int[] antecedent = new int[itemsInX.size()];
+        int i = 0;
+        for (String item : itemsInX) {
+            antecedent[i++] = encode(item, dictionary);
+        }
+        int consequent = Y == null || Y.isEmpty() ? ItemDictionary.UNKNOWN_ITEM : encode(Y, dictionary);
+        return of(antecedent, consequent);
+    }
+
+    private static int encode(String item, ItemDictionary dictionary) {
+        int id = dictionary.getId(item);
+        if (id == ItemDictionary.UNKNOWN_ITEM) {
+            throw new IllegalArgumentException("The item " + item + " is unknown to the dictionary.");
+        }
+        return id;
+    }
+
+    /**
+     * Mixes the ids with the finalizer of SplitMix64, so that keys differing by
+     * one item spread over the whole 64 bits.
+     */
+    private static long hash(int[] antecedent, int consequent) {
+        long h = mix(0x9E3779B97F4A7C15L ^ consequent);
+        for (int id : antecedent) {
+            h = mix(h + 0x9E3779B97F4A7C15L + id);
+        }
+        return h;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return The sorted ids of the items of X.
+     */
+    public int[] getAntecedent() {
+        return antecedent.clone();
+    }
+
+    public int getAntecedentSize() {
+        return antecedent.length;
+    }
+
+    /**
+     * @return The id of Y, or {@link ItemDictionary#UNKNOWN_ITEM}.
+     */
+    public int getConsequent() {
+        return consequent;
+    }
+
+    public long longHash() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof RuleKey)) return false;
+        RuleKey other = (RuleKey) obj;
+        return hash == other.hash && consequent == other.consequent && Arrays.equals(antecedent, other.antecedent);
+    }
+
+    @Override
+    public int compareTo(RuleKey other) {
+        int order = Integer.compare(consequent, other.consequent);
+        if (order != 0) {
+            return order;
+        }
+        int length = Math.min(antecedent.length, other.antecedent.length);
+        for (int i = 0; i < length; i++) {
+            order = Integer.compare(antecedent[i], other.antecedent[i]);
+            if (order != 0) {
+                return order;
+            }
+        }
+        return Integer.compare(antecedent.length, other.antecedent.length);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(antecedent) + " -> " + consequent;
+    }
+}
@@ -0,0 +1,225 @@
+package tools.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Map from {@link RuleKey}s to values, by open addressing with linear probing.
+ * The 64 bits hashes of the keys are stored in a primitive array next to the
+ * keys, so that probing compares longs and only calls {@link RuleKey#equals}
+ * on a matching hash. Removals shift back the following entries of the probe
+ * sequence instead of leaving tombstones.
+ *
+ * Not thread safe.
+ *
+ * @param <V> The type of the values.
+ */
+public final class RuleKeyMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private RuleKey[] keys;
+    private long[] hashes;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    public RuleKeyMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize The number of entries the map holds without growing.
+     */
+    public RuleKeyMap(int expectedSize) {
+        allocate(tableSize(expectedSize));
+    }
+
+    private static int tableSize(int expectedSize) {
+        // Load factor of at most 1/2
+        int size = Integer.highestOneBit(Math.max(2 * expectedSize - 1, DEFAULT_CAPACITY - 1)) << 1;
+        if (size <= 0) {
+            throw new IllegalArgumentException("Too many rules: " + expectedSize);
+        }
+        return size;
+    }
+
+    private void allocate(int capacity) {
+        keys = new RuleKey[capacity];
+        hashes = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    private int slot(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * @return The slot holding the key, or the empty slot where it would be
+     *         inserted.
+     */
+    private int find(RuleKey key) {
+        long hash = key.longHash();
+        int i = slot(hash);
+        while (keys[i] != null) {
+            if (hashes[i] == hash && keys[i].equals(key)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(RuleKey key) {
+        return keys[find(key)] != null;
+    }
+
+    /**
+     * @return The value of the key, or null if it is absent.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(RuleKey key) {
+        return (V) values[find(key)];
+    }
+
+    /**
+     * @return The previous value of the key, or null if it was absent.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(RuleKey key, V value) {
+        int i = find(key);
+        if (keys[i] != null) {
+            V previous = (V) values[i];
+            values[i] = value;
+            return previous;
+        }
+        insert(i, key, value);
+        return null;
+    }
+
+    /**
+     * @return The current value of the key, or null if the value was added.
+     */
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(RuleKey key, V value) {
+        int i = find(key);
+        if (keys[i] != null) {
+            return (V) values[i];
+        }
+        insert(i, key, value);
+        return null;
+    }
+
+    /**
+     * @return The value of the key, computed and added if it was absent.
+     */
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(RuleKey key, Function<RuleKey, ? extends V> mappingFunction) {
+        int i = find(key);
+        if (keys[i] != null) {
+            return (V) values[i];
+        }
+        V value = mappingFunction.apply(key);
+        insert(i, key, value);
+        return value;
+    }
+
+    private void insert(int i, RuleKey key, V value) {
+        keys[i] = key;
+        hashes[i] = key.longHash();
+        values[i] = value;
+        if (++size > (mask + 1) >>> 1) {
+            rehash();
+        }
+    }
+
+    private void rehash() {
+        RuleKey[] oldKeys = keys;
+        long[] oldHashes = hashes;
+        Object[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = slot(oldHashes[j]);
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                hashes[i] = oldHashes[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    /**
+     * @return The value of the removed key, or null if it was absent.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(RuleKey key) {
+        int i = find(key);
+        if (keys[i] == null) {
+            return null;
+        }
+        V previous = (V) values[i];
+        // Shifts back the entries whose probe sequence crosses the freed slot
+        int free = i;
+        for (int j = (i + 1) & mask; keys[j] != null; j = (j + 1) & mask) {
+            int home = slot(hashes[j]);
+            if (((j - home) & mask) >= ((j - free) & mask)) {
+                keys[free] = keys[j];
+                hashes[free] = hashes[j];
+                values[free] = values[j];
+                free = j;
+            }
+        }
+        keys[free] = null;
+        values[free] = null;
+        size--;
+        return previous;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<RuleKey, ? super V> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return The keys of the map, in no particular order.
+     */
+    public List<RuleKey> keys() {
+        List<RuleKey> list = new ArrayList<>(size);
+        forEach((key, value) -> list.add(key));
+        return list;
+    }
+
+    /**
+     * @return The values of the map, in the order of {@link #keys()}.
+     */
+    public List<V> values() {
+        List<V> list = new ArrayList<>(size);
+        forEach((key, value) -> list.add(value));
+        return list;
+    }
+}
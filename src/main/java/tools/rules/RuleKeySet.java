@@ -0,0 +1,64 @@
+package tools.rules;
+
+import java.util.List;
+
+/**
+ * Set of {@link RuleKey}s, backed by a {@link RuleKeyMap}. Used to tell the
+ * rules already seen, sampled or selected apart from the new ones.
+ *
+ * Not thread safe.
+ */
+public final class RuleKeySet {
+
+    private static final Object PRESENT = new Object();
+
+    private final RuleKeyMap<Object> map;
+
+    public RuleKeySet() {
+        this.map = new RuleKeyMap<>();
+    }
+
+    /**
+     * @param expectedSize The number of keys the set holds without growing.
+     */
+    public RuleKeySet(int expectedSize) {
+        this.map = new RuleKeyMap<>(expectedSize);
+    }
+
+    /**
+     * @return True if the key was not in the set.
+     */
+    public boolean add(RuleKey key) {
+        return map.putIfAbsent(key, PRESENT) == null;
+    }
+
+    public boolean contains(RuleKey key) {
+        return map.containsKey(key);
+    }
+
+    /**
+     * @return True if the key was in the set.
+     */
+    public boolean remove(RuleKey key) {
+        return map.remove(key) != null;
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    public void clear() {
+        map.clear();
+    }
+
+    /**
+     * @return The keys of the set, in no particular order.
+     */
+    public List<RuleKey> keys() {
+        return map.keys();
+    }
+}
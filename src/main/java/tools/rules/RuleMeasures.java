@@ -38,14 +38,21 @@ public class RuleMeasures {
     public static final String revsupport = "revsup";
 
     public RuleMeasures(IRule rule, int nbTransactions, double smoothCounts) {
-        if (rule == null) {
-            throw new RuntimeException("Rule must not be null");
-        }
-        
+        this(requireRule(rule).getFreqX(), rule.getFreqY(), rule.getFreqZ(), nbTransactions, smoothCounts);
+    }
+
+    /**
+     * @param freqX          The support of the antecedent X.
+     * @param freqY          The support of the consequent Y.
+     * @param freqZ          The support of X and Y together.
+     * @param nbTransactions The total number of transactions in the dataset.
+     * @param smoothCounts   The smoothing factor for the counts.
+     */
+    public RuleMeasures(int freqX, int freqY, int freqZ, int nbTransactions, double smoothCounts) {
         n = nbTransactions;
-        n11 = rule.getFreqZ();
-        n1x = rule.getFreqX();
-        nx1 = rule.getFreqY();
+        n11 = freqZ;
+        n1x = freqX;
+        nx1 = freqY;
         n0x = n - n1x; // Frequency of transactions without antecedent (X)
         nx0 = n - nx1; // Frequency of transactions without consequent (Y)
         n10 = n1x - n11; // Frequency of transactions with antecedent but without consequent
@@ -65,9 +72,17 @@ public class RuleMeasures {
         }
     }
 
+    private static IRule requireRule(IRule rule) {
+        if (rule == null) {
+            throw new RuntimeException("Rule must not be null");
+        }
+        return rule;
+    }
+
     /**
      * Checks if the given value is within the specified range and throws a
-     * RuntimeException if not.
+     * RuntimeException if not. The check only runs in debug mode, see
+     * {@link MeasureKernel#CHECK_PROPERTY}.
      *
      * @param value       The value to be checked.
      * @param lb          The lower bound of the valid range.
@@ -77,7 +92,7 @@ public class RuleMeasures {
      * @throws RuntimeException If the value is outside the valid range.
      */
     private void checkMeasure(double value, double lb, double ub, String measureName) {
-        if (value > (ub + epsilon) || value < (lb - epsilon)) {
+        if (MeasureKernel.CHECK && (value > (ub + epsilon) || value < (lb - epsilon))) {
             throw new IllegalArgumentException("Illegal value for measure " + measureName + 
                 ": value=" + value + ", should be between " + lb + " and " + ub);
         }
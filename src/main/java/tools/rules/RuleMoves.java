@@ -0,0 +1,297 @@
+package tools.rules;
+
+import java.util.Arrays;
+
+import tools.alternatives.Alternative;
+import tools.alternatives.IAlternative;
+import tools.data.Cover;
+import tools.data.Covers;
+import tools.data.Dataset;
+
+/**
+ * Frequencies and measures of the neighbours of a rule: the rules obtained by
+ * adding one candidate item to its antecedent, by removing one item from it,
+ * or by replacing its consequent with one candidate item. They are all
+ * evaluated in one pass, into primitive arrays, without changing the rule (see
+ * {@link DecisionRule#evaluateAdditions(int[])},
+ * {@link DecisionRule#evaluateRemovals()} and
+ * {@link DecisionRule#evaluateConsequents(int[])}); a sampler then applies
+ * the chosen move with {@link DecisionRule#apply(RuleMoves, int)}, which
+ * intersects no cover and computes no measure.
+ *
+ * When the dataset stores its transactions and there are many candidates,
+ * the supports are counted by scanning once the transactions of the cover of
+ * X; otherwise each candidate cover is intersected with the covers of X and Z.
+ * The covers of the antecedents without one item are the intersections of the
+ * covers of the items before it and of the items after it.
+ */
+public final class RuleMoves {
+
+    /** The kind of moves evaluated. */
+    public enum Kind {
+        /** Additions of an item to the antecedent. */
+        ADDITIONS,
+        /** Removals of an item from the antecedent. */
+        REMOVALS,
+        /** Replacements of the consequent. */
+        CONSEQUENTS
+    }
+
+    /** Number of candidates from which the transactions are scanned. */
+    static final int MIN_SCANNED_CANDIDATES = 32;
+
+    private final RuleKey ruleKey;
+    private final Kind kind;
+    private final int[] items;
+    private final int[] freqX, freqY, freqZ;
+    private final boolean[] valid;
+    private final int nbMeasures;
+    /** Measures of the candidates, candidate after candidate. */
+    private final double[] measures;
+
+    private RuleMoves(RuleKey ruleKey, Kind kind, int[] items, int[] freqX, int[] freqY, int[] freqZ,
+            boolean[] valid, int nbMeasures, double[] measures) {
+        this.ruleKey = ruleKey;
+        this.kind = kind;
+        this.items = items;
+        this.freqX = freqX;
+        this.freqY = freqY;
+        this.freqZ = freqZ;
+        this.valid = valid;
+        this.nbMeasures = nbMeasures;
+        this.measures = measures;
+    }
+
+    /**
+     * Evaluates the additions of the candidates to the antecedent of a rule.
+     */
+    static RuleMoves additions(DecisionRule rule, int[] candidateItems) {
+        Dataset dataset = rule.getDataset();
+        int n = candidateItems.length;
+        int[] freqX = new int[n];
+        int[] freqY = new int[n];
+        int[] freqZ = new int[n];
+        boolean hasY = !rule.getY().isEmpty();
+        Cover coverX = rule.getCoverX();
+        Cover coverY = hasY ? rule.getCoverY() : null;
+        if (useScan(dataset, n)) {
+            scan(dataset, coverX, coverY, candidateItems, freqX, freqZ);
+        } else {
+            Cover coverZ = hasY ? rule.getCoverZ() : null;
+            for (int i = 0; i < n; i++) {
+                Cover itemCover = dataset.getCover(candidateItems[i]);
+                freqX[i] = dataset.support(coverX, itemCover);
+                freqZ[i] = hasY ? dataset.support(coverZ, itemCover) : 0;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            freqY[i] = rule.getFreqY();
+            if (!hasY) {
+                // Without consequent Z is X
+                freqZ[i] = freqX[i];
+            }
+        }
+        return evaluate(rule, Kind.ADDITIONS, candidateItems, freqX, freqY, freqZ, hasY);
+    }
+
+    /**
+     * Evaluates the removals of the items of the antecedent of a rule.
+     *
+     * @param candidateItems The ids of the items of the antecedent.
+     */
+    static RuleMoves removals(DecisionRule rule, int[] candidateItems) {
+        Dataset dataset = rule.getDataset();
+        int n = candidateItems.length;
+        int[] freqX = new int[n];
+        int[] freqY = new int[n];
+        int[] freqZ = new int[n];
+        boolean hasY = !rule.getY().isEmpty();
+        Cover coverY = hasY ? rule.getCoverY() : null;
+        // before[i] covers the items before i, after[i] the items from i on
+        // (null for no item)
+        Cover[] before = new Cover[n + 1];
+        Cover[] after = new Cover[n + 1];
+        for (int i = 0; i < n; i++) {
+            Cover itemCover = itemCover(dataset, candidateItems[i]);
+            before[i + 1] = before[i] == null ? itemCover : before[i].and(itemCover);
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            Cover itemCover = itemCover(dataset, candidateItems[i]);
+            after[i] = after[i + 1] == null ? itemCover : after[i + 1].and(itemCover);
+        }
+        for (int i = 0; i < n; i++) {
+            Cover coverX = before[i] == null ? after[i + 1]
+                    : after[i + 1] == null ? before[i] : before[i].and(after[i + 1]);
+            freqY[i] = rule.getFreqY();
+            if (coverX == null) {
+                // Without antecedent the rule is not valid, and Z is Y
+                freqZ[i] = freqY[i];
+                continue;
+            }
+            freqX[i] = dataset.support(coverX);
+            freqZ[i] = hasY ? dataset.support(coverX, coverY) : freqX[i];
+        }
+        return evaluate(rule, Kind.REMOVALS, candidateItems, freqX, freqY, freqZ, hasY);
+    }
+
+    private static Cover itemCover(Dataset dataset, int item) {
+        Cover cover = dataset.getCover(item);
+        return cover != null ? cover : Covers.empty(dataset.getNbRows());
+    }
+
+    /**
+     * Evaluates the replacements of the consequent of a rule by the candidates.
+     */
+    static RuleMoves consequents(DecisionRule rule, int[] candidateItems) {
+        Dataset dataset = rule.getDataset();
+        int n = candidateItems.length;
+        int[] freqX = new int[n];
+        int[] freqY = new int[n];
+        int[] freqZ = new int[n];
+        Cover coverX = rule.getCoverX();
+        if (useScan(dataset, n)) {
+            scan(dataset, coverX, null, candidateItems, freqZ, null);
+        } else {
+            for (int i = 0; i < n; i++) {
+                freqZ[i] = dataset.support(coverX, dataset.getCover(candidateItems[i]));
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            freqX[i] = rule.getFreqX();
+            freqY[i] = dataset.support(dataset.getCover(candidateItems[i]));
+        }
+        return evaluate(rule, Kind.CONSEQUENTS, candidateItems, freqX, freqY, freqZ, true);
+    }
+
+    private static boolean useScan(Dataset dataset, int nbCandidates) {
+        return nbCandidates >= MIN_SCANNED_CANDIDATES && dataset.hasTransactions();
+    }
+
+    /**
+     * Counts, over the transactions of cover, those containing each candidate
+     * (into counts) and, when other is not null, those also in other (into
+     * otherCounts).
+     */
+    private static void scan(Dataset dataset, Cover cover, Cover other, int[] candidateItems, int[] counts,
+            int[] otherCounts) {
+        int[] slots = new int[dataset.getDictionary().size()];
+        Arrays.fill(slots, -1);
+        for (int i = 0; i < candidateItems.length; i++) {
+            slots[candidateItems[i]] = i;
+        }
+        // Row (plus one) of the last transaction counted for each candidate:
+        // an item repeated in a transaction is counted once
+        int[] lastRows = new int[candidateItems.length];
+        for (int row = cover.nextSetBit(0); row >= 0; row = cover.nextSetBit(row + 1)) {
+            int weight = dataset.getWeight(row);
+            boolean inOther = other != null && other.contains(row);
+            for (int item : dataset.getTransaction(row)) {
+                int slot = slots[item];
+                if (slot >= 0 && lastRows[slot] != row + 1) {
+                    lastRows[slot] = row + 1;
+                    counts[slot] += weight;
+                    if (inOther) {
+                        otherCounts[slot] += weight;
+                    }
+                }
+            }
+        }
+        // A candidate listed twice gets the counts of its slot
+        for (int i = 0; i < candidateItems.length; i++) {
+            int slot = slots[candidateItems[i]];
+            counts[i] = counts[slot];
+            if (otherCounts != null) {
+                otherCounts[i] = otherCounts[slot];
+            }
+        }
+    }
+
+    /**
+     * Computes the measures of the candidates with non empty antecedent and
+     * consequent, the other ones get a vector of zeros (as
+     * {@link tools.utils.AlternativeUtil#computeAlternativeOrZero}).
+     */
+    private static RuleMoves evaluate(DecisionRule rule, Kind kind, int[] candidateItems, int[] freqX,
+            int[] freqY, int[] freqZ, boolean hasY) {
+        int n = candidateItems.length;
+        String[] measureNames = rule.getMeasureNames();
+        int nbMeasures = measureNames.length;
+        int nbTransactions = rule.getDataset().getNbTransactions();
+        MeasureKernel kernel = MeasureKernel.compile(measureNames);
+        double[] measures = new double[n * nbMeasures];
+        boolean[] valid = new boolean[n];
+        // An addition always leaves a non empty antecedent
+        boolean hasX = kind == Kind.ADDITIONS
+                || rule.getItemsInX().size() > (kind == Kind.REMOVALS ? 1 : 0);
+        for (int i = 0; i < n; i++) {
+            valid[i] = hasX && freqX[i] > 0 && freqY[i] > 0 && freqZ[i] > 0;
+            if (hasX && hasY) {
+                kernel.evaluate(nbTransactions, freqZ[i], freqX[i], freqY[i], rule.getSmoothCounts(), measures,
+                        i * nbMeasures);
+            }
+        }
+        return new RuleMoves(rule.getKey(), kind, candidateItems.clone(), freqX, freqY, freqZ, valid,
+                nbMeasures, measures);
+    }
+
+    /**
+     * @return The key of the rule the moves were evaluated from.
+     */
+    public RuleKey getRuleKey() {
+        return ruleKey;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return True for replacements of the consequent, false for changes of
+     *         the antecedent.
+     */
+    public boolean isConsequents() {
+        return kind == Kind.CONSEQUENTS;
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * @return The id of the item of the i-th move.
+     */
+    public int getItem(int i) {
+        return items[i];
+    }
+
+    public int getFreqX(int i) {
+        return freqX[i];
+    }
+
+    public int getFreqY(int i) {
+        return freqY[i];
+    }
+
+    public int getFreqZ(int i) {
+        return freqZ[i];
+    }
+
+    /**
+     * @return Whether the rule after the i-th move is valid (see
+     *         {@link tools.utils.RuleUtil#isValid(IRule)}).
+     */
+    public boolean isValid(int i) {
+        return valid[i];
+    }
+
+    public double getMeasure(int i, int measure) {
+        return measures[i * nbMeasures + measure];
+    }
+
+    /**
+     * @return The measures of the rule after the i-th move.
+     */
+    public IAlternative getAlternative(int i) {
+        return new Alternative(Arrays.copyOfRange(measures, i * nbMeasures, (i + 1) * nbMeasures));
+    }
+}
@@ -0,0 +1,131 @@
+package tools.rules;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import tools.alternatives.Alternative;
+import tools.alternatives.IAlternative;
+import tools.data.Dataset;
+import tools.data.ItemDictionary;
+
+/**
+ * Immutable record of a decision rule: its key, its frequencies and its
+ * measure vector, without any cover, item set or undo journal. Samplers
+ * record the rules they visit as snapshots, a few dozen bytes each, and
+ * rehydrate them into {@link DecisionRule}s against the dataset they were
+ * sampled from only when they are returned.
+ *
+ * Two snapshots are equal when their rules are (see {@link RuleKey}).
+ */
+public final class RuleSnapshot {
+
+    private final RuleKey key;
+    private final int freqX, freqY, freqZ;
+    private final double[] vector;
+
+    private RuleSnapshot(RuleKey key, int freqX, int freqY, int freqZ, double[] vector) {
+        this.key = key;
+        this.freqX = freqX;
+        this.freqY = freqY;
+        this.freqZ = freqZ;
+        this.vector = vector;
+    }
+
+    /**
+     * @param rule The rule to record.
+     * @return The snapshot of the current state of the rule.
+     */
+    public static RuleSnapshot of(DecisionRule rule) {
+        IAlternative alternative = rule.getAlternative();
+        double[] vector = alternative != null ? alternative.getVector().clone() : new double[0];
+        return new RuleSnapshot(rule.getKey(), rule.getFreqX(), rule.getFreqY(), rule.getFreqZ(), vector);
+    }
+
+    /**
+     * Rebuilds the rule on the dataset it was recorded from, with its recorded
+     * frequencies and measures. The covers of X and Z are taken from the cover
+     * cache of the dataset, or computed when needed.
+     *
+     * @return The rule.
+     */
+    public DecisionRule toRule(Dataset dataset, int maxSizeX, int maxSizeZ, double smoothCounts,
+            String[] measureNames) {
+        return new DecisionRule(this, dataset, maxSizeX, maxSizeZ, smoothCounts, measureNames);
+    }
+
+    /**
+     * @return The items of X, decoded with the dictionary of the dataset.
+     */
+    public Set<String> itemsInX(ItemDictionary dictionary) {
+        int[] antecedent = key.getAntecedent();
+        Set<String> items = new HashSet<>(2 * antecedent.length);
+        for (int id : antecedent) {
+            items.add(dictionary.getItem(id));
+        }
+        return items;
+    }
+
+    /**
+     * @return The consequent item decoded with the dictionary of the dataset,
+     *         empty when the rule has none.
+     */
+    public String getY(ItemDictionary dictionary) {
+        int consequent = key.getConsequent();
+        return consequent == ItemDictionary.UNKNOWN_ITEM ? "" : dictionary.getItem(consequent);
+    }
+
+    public RuleKey getKey() {
+        return key;
+    }
+
+    public int getFreqX() {
+        return freqX;
+    }
+
+    public int getFreqY() {
+        return freqY;
+    }
+
+    public int getFreqZ() {
+        return freqZ;
+    }
+
+    /**
+     * @return The value of a measure of the rule.
+     */
+    public double getMeasure(int i) {
+        return vector[i];
+    }
+
+    /**
+     * @return A copy of the measure vector of the rule.
+     */
+    public IAlternative getAlternative() {
+        return new Alternative(vector.clone());
+    }
+
+    /**
+     * @return Whether the rule is valid (see
+     *         {@link tools.utils.RuleUtil#isValid(IRule)}).
+     */
+    public boolean isValid() {
+        return freqZ > 0 && freqX > 0 && freqY > 0 && key.getAntecedentSize() > 0;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof RuleSnapshot)) return false;
+        return key.equals(((RuleSnapshot) obj).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "RuleSnapshot[" + key + ", freqX=" + freqX + ", freqY=" + freqY + ", freqZ=" + freqZ + "]";
+    }
+}
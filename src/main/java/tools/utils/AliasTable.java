@@ -0,0 +1,76 @@
+package tools.utils;
+
+/**
+ * Walker's alias table (in Vose's construction): draws an index of a
+ * categorical distribution in constant time, with one uniform index and one
+ * uniform double, once the table is built in linear time from the weights.
+ */
+public final class AliasTable {
+
+    private final double[] probabilities;
+    private final int[] aliases;
+
+    /**
+     * @param weights The non-negative weights of the indices, not all zero;
+     *                they need not sum to one.
+     */
+    public AliasTable(double[] weights) {
+        int n = weights.length;
+        double sum = 0;
+        for (double weight : weights) {
+            if (!(weight >= 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("The weights must be non-negative and finite.");
+            }
+            sum += weight;
+        }
+        if (!(sum > 0)) {
+            throw new IllegalArgumentException("At least one weight must be positive.");
+        }
+
+        this.probabilities = new double[n];
+        this.aliases = new int[n];
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int nbSmall = 0, nbLarge = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / sum;
+            if (scaled[i] < 1) {
+                small[nbSmall++] = i;
+            } else {
+                large[nbLarge++] = i;
+            }
+        }
+        while (nbSmall > 0 && nbLarge > 0) {
+            int less = small[--nbSmall];
+            int more = large[--nbLarge];
+            probabilities[less] = scaled[less];
+            aliases[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1) {
+                small[nbSmall++] = more;
+            } else {
+                large[nbLarge++] = more;
+            }
+        }
+        // The remaining columns are full, up to rounding errors
+        while (nbLarge > 0) {
+            probabilities[large[--nbLarge]] = 1;
+        }
+        while (nbSmall > 0) {
+            probabilities[small[--nbSmall]] = 1;
+        }
+    }
+
+    public int size() {
+        return probabilities.length;
+    }
+
+    /**
+     * @return An index drawn with a probability proportional to its weight.
+     */
+    public int sample(RandomUtil random) {
+        int column = random.nextInt(probabilities.length);
+        return random.nextDouble() < probabilities[column] ? column : aliases[column];
+    }
+}
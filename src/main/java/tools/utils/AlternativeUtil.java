@@ -1,15 +1,18 @@
 package tools.utils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import tools.alternatives.Alternative;
 import tools.alternatives.IAlternative;
+import tools.data.Dataset;
+import tools.rules.ContingencyBatch;
 import tools.rules.DecisionRule;
 import tools.rules.IRule;
-import tools.rules.RuleMeasures;
+import tools.rules.MeasureKernel;
 
 public class AlternativeUtil {
     /**
@@ -29,12 +32,20 @@ public class AlternativeUtil {
             double smoothCounts,
             String[] measureNames) {
 
-        // Compute the value of the measures
-        double[] measuresValue = new RuleMeasures(
-                rule,
-                nbTransactions,
-                smoothCounts)
-                .computeMeasures(measureNames);
+        if (rule == null) {
+            throw new RuntimeException("Rule must not be null");
+        }
+        // Compute the value of the measures with the kernel compiled for them,
+        // or read them from the measure cache of the dataset of the rule
+        double[] measuresValue;
+        Dataset dataset = rule instanceof DecisionRule ? ((DecisionRule) rule).getDataset() : null;
+        if (dataset != null && dataset.getNbTransactions() == nbTransactions) {
+            measuresValue = dataset.getMeasureCache(measureNames, smoothCounts)
+                    .evaluate(rule.getFreqX(), rule.getFreqY(), rule.getFreqZ());
+        } else {
+            measuresValue = MeasureKernel.compile(measureNames)
+                    .evaluate(nbTransactions, rule.getFreqZ(), rule.getFreqX(), rule.getFreqY(), smoothCounts);
+        }
 
         return new Alternative(measuresValue);
     }
@@ -69,6 +80,43 @@ public class AlternativeUtil {
         }
     }
 
+    /**
+     * Computes the alternatives of a pool of rules at once, from the arrays of
+     * their supports (see {@link ContingencyBatch}), and stores them in the
+     * rules. The rules are expected to share their dataset, smoothing factor
+     * and measure names, the other ones are evaluated one by one.
+     *
+     * @param rules A pool of rules, such as mined or sampled rules
+     */
+    public static void evaluateRules(List<DecisionRule> rules) {
+        if (rules.isEmpty()) {
+            return;
+        }
+        DecisionRule first = rules.get(0);
+        Dataset dataset = first.getDataset();
+        String[] measureNames = first.getMeasureNames();
+        double smoothCounts = first.getSmoothCounts();
+        if (dataset == null || measureNames == null) {
+            return;
+        }
+        List<DecisionRule> pool = new ArrayList<>(rules.size());
+        for (DecisionRule rule : rules) {
+            if (rule.getDataset() == dataset && rule.getSmoothCounts() == smoothCounts
+                    && Arrays.equals(measureNames, rule.getMeasureNames())) {
+                pool.add(rule);
+            } else {
+                rule.getAlternative();
+            }
+        }
+        MeasureKernel kernel = MeasureKernel.compile(measureNames);
+        double[] measures = ContingencyBatch.of(pool).evaluate(kernel, dataset.getNbTransactions(), smoothCounts);
+        int nbMeasures = kernel.size();
+        for (int i = 0; i < pool.size(); i++) {
+            pool.get(i).setAlternative(
+                    new Alternative(Arrays.copyOfRange(measures, i * nbMeasures, (i + 1) * nbMeasures)));
+        }
+    }
+
     /**
      * This method computes a list of alternatives given a set of rules.
      * The measures of which the alternatives are made of are the measures
@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.SplittableRandom;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -17,9 +18,21 @@ import java.util.stream.IntStream;
 
 public class RandomUtil {
 
-    private Random random = new Random();
+    private Random random;
     private static RandomUtil INSTANCE;
 
+    public RandomUtil() {
+        this.random = new Random();
+    }
+
+    /**
+     * @param stream The stream the random values are drawn from, such as one
+     *               split from a master stream for each sampling chain.
+     */
+    public RandomUtil(SplittableRandom stream) {
+        this.random = new SplittableRandomAdapter(stream);
+    }
+
     /**
      * Returns the singleton instance of the RandomUtil class.
      *
@@ -278,6 +291,26 @@ public class RandomUtil {
         return arr;
     }
 
+    /**
+     * Generates a random shuffle of integers from 0 to n-1 with this generator.
+     *
+     * @param n the number of integers to shuffle
+     * @return a shuffled array of integers
+     */
+    public int[] randomPermutation(int n) {
+        int[] arr = new int[n];
+        for (int i = 0; i < n; i++) {
+            arr[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = arr[i];
+            arr[i] = arr[j];
+            arr[j] = temp;
+        }
+        return arr;
+    }
+
     /**
      * Chooses a value randomly.
      *
@@ -298,4 +331,43 @@ public class RandomUtil {
         // In this case, return null
         return null;
     }
-}
\ No newline at end of file
+
+    /**
+     * Random drawing its bits from a {@link SplittableRandom}, so that the
+     * methods taking a {@link Random} can use a split stream.
+     */
+    private static final class SplittableRandomAdapter extends Random {
+        private static final long serialVersionUID = 1L;
+        private SplittableRandom stream;
+
+        SplittableRandomAdapter(SplittableRandom stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        protected int next(int bits) {
+            return stream.nextInt() >>> (32 - bits);
+        }
+
+        @Override
+        public int nextInt(int bound) {
+            return stream.nextInt(bound);
+        }
+
+        @Override
+        public double nextDouble() {
+            return stream.nextDouble();
+        }
+
+        @Override
+        public synchronized void setSeed(long seed) {
+            // Also resets the Gaussian cached by Random
+            super.setSeed(seed);
+            // Called by the constructor of Random before the stream is set,
+            // which is then seeded by its master stream
+            if (stream != null) {
+                stream = new SplittableRandom(seed);
+            }
+        }
+    }
+}
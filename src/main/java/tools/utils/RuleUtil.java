@@ -4,7 +4,6 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -37,6 +36,8 @@ public class RuleUtil {
                 .freqY(originalRule.getFreqY())
                 .freqZ(originalRule.getFreqZ())
                 .smoothCounts(1e-6d)
+                // The copy has no dataset to encode its items
+                .key(originalRule.getKey())
                 .build();
 
         return copiedRule;
@@ -51,25 +52,19 @@ public class RuleUtil {
     public static DecisionRule deepCopy(DecisionRule originalRule) {
         return originalRule.toBuilder()
                 .dataset(originalRule.getDataset())
-                .itemsMap(new HashMap<>(originalRule.getItemsMap()))
                 .freqX(originalRule.getFreqX())
                 .freqY(originalRule.getFreqY())
                 .freqZ(originalRule.getFreqZ())
                 .smoothCounts(originalRule.getSmoothCounts())
                 .measureNames(originalRule.getMeasureNames() != null ? originalRule.getMeasureNames().clone() : null)
                 .alternative(originalRule.getAlternative() != null ? originalRule.getAlternative().deepCopy() : null)
-                .coverX(originalRule.getCoverX() != null ? originalRule.getCoverX().clone() : null)
-                .coverY(originalRule.getCoverY() != null ? originalRule.getCoverY().clone() : null)
-                .coverZ(originalRule.getCoverZ() != null ? originalRule.getCoverZ().clone() : null)
-                .memoizedCoverX(
-                        originalRule.getMemoizedCoverX() != null ? new HashMap<>(originalRule.getMemoizedCoverX())
-                                : null)
-                .memoizedCoverZ(
-                        originalRule.getMemoizedCoverZ() != null ? new HashMap<>(originalRule.getMemoizedCoverZ())
-                                : null)
+                // Covers are immutable and are shared by toBuilder(), including
+                // the ones not materialized yet
                 .Y(new String(originalRule.getY()))
                 .itemsInX(SetUtil.copySet(originalRule.getItemsInX()))
                 .itemsInZ(SetUtil.copySet(originalRule.getItemsInZ()))
+                // The undo journal belongs to the original rule
+                .steps(null)
                 .build();
     }
 
@@ -186,6 +181,8 @@ public class RuleUtil {
                 decisionRules.add(rule);
             }
         }
+        // The measures of the rules are computed at once
+        AlternativeUtil.evaluateRules(decisionRules);
 
         return decisionRules.toArray(new DecisionRule[0]);
     }
@@ -1,11 +1,18 @@
 package tools.utils;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
 import java.util.stream.IntStream;
 
+import tools.rules.DecisionRule;
+import tools.utils.statistics.SamplingStatistics;
+
 public class SamplingUtil {
 
     public static double calculateEntropy(Collection<Integer> ruleSampleFrequencies, int totalSamples) {
@@ -55,4 +62,34 @@ public class SamplingUtil {
         return scoreCumulativeDistribution;
     }
 
+    /**
+     * Computes the statistics of a sample.
+     * 
+     * @param sample               The sampled rules, a rule appearing once per
+     *                             draw.
+     * @param scoreFunction        The score of a rule.
+     * @param convergenceIteration The iteration at which the sampler converged,
+     *                             -1 if it did not stop early.
+     * @return The frequencies of the distinct rules of the sample (by
+     *         descending order), their scores and the entropy of the
+     *         frequencies.
+     */
+    public static SamplingStatistics computeStatistics(List<DecisionRule> sample,
+            ToDoubleFunction<DecisionRule> scoreFunction, int convergenceIteration) {
+        Map<DecisionRule, Integer> frequencies = new LinkedHashMap<>();
+        for (DecisionRule rule : sample) {
+            frequencies.merge(rule, 1, Integer::sum);
+        }
+        List<Map.Entry<DecisionRule, Integer>> entries = new ArrayList<>(frequencies.entrySet());
+        entries.sort(Map.Entry.<DecisionRule, Integer>comparingByValue().reversed());
+
+        List<Integer> alternativeFrequencies = new ArrayList<>(entries.size());
+        List<Double> alternativeScores = new ArrayList<>(entries.size());
+        for (Map.Entry<DecisionRule, Integer> entry : entries) {
+            alternativeFrequencies.add(entry.getValue());
+            alternativeScores.add(scoreFunction.applyAsDouble(entry.getKey()));
+        }
+        double entropy = calculateEntropy(alternativeFrequencies, sample.size());
+        return new SamplingStatistics(alternativeFrequencies, alternativeScores, entropy, convergenceIteration);
+    }
 }
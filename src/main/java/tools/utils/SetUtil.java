@@ -4,7 +4,8 @@ import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Set;
 
-import com.zaxxer.sparsebits.SparseBitSet;
+import tools.data.Cover;
+import tools.data.Covers;
 
 public class SetUtil {
 
@@ -75,29 +76,13 @@ public class SetUtil {
     }
 
     /**
-     * Creates a new SparseBitSet with all bits set to 1.
+     * Creates a cover holding every transaction.
      *
-     * @param length The length of the SparseBitSet.
-     * @return A SparseBitSet with all bits set to 1.
+     * @param length The number of transactions.
+     * @return A cover with all transactions set.
      */
-    public static SparseBitSet createSparseBitSetAllOnes(int length) {
-        SparseBitSet bitSet = new SparseBitSet(length);
-        bitSet.set(0, length);
-        bitSet.cardinality(); // Updating the sets statistics
-        return bitSet;
-    }
-
-    /**
-     * Copies the elements of the original cover to a new SparseBitSet.
-     * 
-     * @param originalCover The original cover to be copied.
-     * @return A copy of the original cover.
-     */
-    public static SparseBitSet copyCover(SparseBitSet originalCover) {
-        SparseBitSet copiedCover = new SparseBitSet(originalCover.size());
-        copiedCover.or(originalCover); // Copy elements from the original cover
-        copiedCover.cardinality(); // Updating the set statistics
-        return copiedCover;
+    public static Cover createCoverAllOnes(int length) {
+        return Covers.full(length);
     }
 
     /**
@@ -0,0 +1,179 @@
+package tools.utils.statistics;
+
+import java.util.List;
+
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+import tools.rules.RuleKey;
+import tools.rules.RuleKeySet;
+
+/**
+ * Online convergence diagnostics of Markov chains, computed on the histories
+ * of the scores of their states.
+ */
+public class ConvergenceDiagnostics {
+
+    private static final FastFourierTransformer FFT = new FastFourierTransformer(DftNormalization.STANDARD);
+
+    /**
+     * Computes the split potential scale reduction factor (split-R-hat): each
+     * chain is cut in two halves, and the variance between the halves is
+     * compared to the variance within them. It tends to 1 as the chains mix.
+     *
+     * @param chains The histories of the chains, cut down to the length of
+     *               the shortest one.
+     * @return The split-R-hat, NaN when the chains have less than 4 values, 1
+     *         when all the values are equal, and infinity when the halves are
+     *         constant but different.
+     */
+    public static double splitRHat(List<double[]> chains) {
+        int length = Integer.MAX_VALUE;
+        for (double[] chain : chains) {
+            length = Math.min(length, chain.length);
+        }
+        int half = chains.isEmpty() ? 0 : length / 2;
+        if (half < 2) {
+            return Double.NaN;
+        }
+
+        int nbHalves = 2 * chains.size();
+        double[] means = new double[nbHalves];
+        double within = 0;
+        for (int c = 0; c < chains.size(); c++) {
+            double[] chain = chains.get(c);
+            for (int h = 0; h < 2; h++) {
+                // The middle value of an odd length is dropped
+                int from = h == 0 ? 0 : length - half;
+                double mean = 0;
+                for (int i = from; i < from + half; i++) {
+                    mean += chain[i];
+                }
+                mean /= half;
+                double variance = 0;
+                for (int i = from; i < from + half; i++) {
+                    variance += (chain[i] - mean) * (chain[i] - mean);
+                }
+                means[2 * c + h] = mean;
+                within += variance / (half - 1);
+            }
+        }
+        within /= nbHalves;
+
+        double grandMean = 0;
+        for (double mean : means) {
+            grandMean += mean;
+        }
+        grandMean /= nbHalves;
+        double between = 0;
+        for (double mean : means) {
+            between += (mean - grandMean) * (mean - grandMean);
+        }
+        between *= (double) half / (nbHalves - 1);
+
+        if (within == 0) {
+            return between == 0 ? 1 : Double.POSITIVE_INFINITY;
+        }
+        double pooled = (half - 1d) / half * within + between / half;
+        return Math.sqrt(pooled / within);
+    }
+
+    /**
+     * Estimates the effective sample size of a chain from the autocorrelations
+     * of its history, computed by FFT and summed over Geyer's initial positive
+     * sequence.
+     *
+     * @param chain The history of the chain.
+     * @return The effective sample size, the length of the history when its
+     *         values are all equal.
+     */
+    public static double effectiveSampleSize(double[] chain) {
+        int n = chain.length;
+        if (n < 4) {
+            return n;
+        }
+        double[] autocovariances = autocovariances(chain);
+        if (autocovariances[0] <= 0) {
+            return n;
+        }
+
+        // Sums of pairs of autocorrelations, while they are positive and
+        // decreasing
+        double sum = 0;
+        double previousPair = Double.POSITIVE_INFINITY;
+        for (int lag = 0; lag + 1 < n; lag += 2) {
+            double pair = (autocovariances[lag] + autocovariances[lag + 1]) / autocovariances[0];
+            if (pair <= 0) {
+                break;
+            }
+            pair = Math.min(pair, previousPair);
+            sum += pair;
+            previousPair = pair;
+        }
+        double autocorrelationTime = Math.max(2 * sum - 1, 1d / Math.log10(n));
+        return n / autocorrelationTime;
+    }
+
+    /**
+     * @return The sum of the effective sample sizes of the chains.
+     */
+    public static double effectiveSampleSize(List<double[]> chains) {
+        double sum = 0;
+        for (double[] chain : chains) {
+            sum += effectiveSampleSize(chain);
+        }
+        return sum;
+    }
+
+    /**
+     * @return The autocovariances of a history at lags 0 to n - 1 (biased,
+     *         divided by n).
+     */
+    private static double[] autocovariances(double[] chain) {
+        int n = chain.length;
+        double mean = 0;
+        for (double value : chain) {
+            mean += value;
+        }
+        mean /= n;
+        // Zero padding to at least 2n avoids the circular wrap
+        int size = Integer.highestOneBit(2 * n - 1) << 1;
+        double[] centered = new double[size];
+        for (int i = 0; i < n; i++) {
+            centered[i] = chain[i] - mean;
+        }
+        Complex[] spectrum = FFT.transform(centered, TransformType.FORWARD);
+        double[] power = new double[size];
+        for (int i = 0; i < size; i++) {
+            double modulus = spectrum[i].abs();
+            power[i] = modulus * modulus;
+        }
+        Complex[] correlations = FFT.transform(power, TransformType.INVERSE);
+        double[] autocovariances = new double[n];
+        for (int lag = 0; lag < n; lag++) {
+            autocovariances[lag] = correlations[lag].getReal() / n;
+        }
+        return autocovariances;
+    }
+
+    /**
+     * @param previous The keys of the top rules at the previous check.
+     * @param current  The keys of the top rules now.
+     * @return The share of the current top rules that were already top rules,
+     *         1 when there are none.
+     */
+    public static double topKStability(RuleKeySet previous, List<RuleKey> current) {
+        if (current.isEmpty()) {
+            return 1;
+        }
+        int kept = 0;
+        for (RuleKey key : current) {
+            if (previous.contains(key)) {
+                kept++;
+            }
+        }
+        return (double) kept / current.size();
+    }
+}
@@ -17,4 +17,7 @@ public class SamplingStatistics {
 
     // The entropy of the frequencies of the alternatives in the sample. 
     private double entropy;
+
+    // The iteration at which the sampler converged (-1 if it did not stop early).
+    private int convergenceIteration;
 }
@@ -0,0 +1,55 @@
+package sampling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import tools.data.Dataset;
+import tools.functions.singlevariate.LinearScoreFunction;
+import tools.utils.RandomUtil;
+
+public class EarlyStoppingTest {
+
+    @Test
+    public void testSamplersStopOnceConverged() throws IOException {
+        Dataset dataset = new Dataset("iris.dat", "src/test/resources/",
+                new HashSet<>(Arrays.asList("13", "14", "15")));
+        String[] measureNames = new String[] { "confidence", "support", "lift" };
+        EarlyStopping earlyStopping = new EarlyStopping();
+        earlyStopping.setMinIterations(200);
+        earlyStopping.setMinEffectiveSampleSize(50);
+        earlyStopping.setMaxRHat(1.2);
+
+        SMAS smas = new SMAS(20_000, dataset, new LinearScoreFunction(), measureNames, 5);
+        smas.setEarlyStopping(earlyStopping);
+        smas.setRandom(new RandomUtil(new SplittableRandom(3)));
+        assertFalse(smas.sample().isEmpty());
+        int converged = smas.getConvergenceIteration();
+        assertTrue(converged >= 200 && converged < 20_000);
+        assertEquals(0, converged % earlyStopping.getCheckInterval());
+        assertEquals(converged, smas.getRunHistory().length);
+        assertEquals(converged, smas.getStatistics().getConvergenceIteration());
+
+        // Without policy all the iterations are run
+        smas.setEarlyStopping(null);
+        smas.setMaximumIterations(300);
+        smas.sample();
+        assertEquals(-1, smas.getConvergenceIteration());
+        assertEquals(-1, smas.getStatistics().getConvergenceIteration());
+        assertEquals(300, smas.getRunHistory().length);
+
+        ParallelSMAS parallel = new ParallelSMAS(
+                c -> new SMAS(20_000, dataset, new LinearScoreFunction(), measureNames, 5), 3, 5L, 5);
+        parallel.setEarlyStopping(earlyStopping);
+        assertFalse(parallel.sample().isEmpty());
+        assertTrue(parallel.getConvergenceIteration() >= 200 && parallel.getConvergenceIteration() < 20_000);
+        assertEquals(parallel.getConvergenceIteration(), parallel.getStatistics().getConvergenceIteration());
+    }
+}
@@ -0,0 +1,107 @@
+package sampling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import tools.data.Dataset;
+import tools.alternatives.IAlternative;
+import tools.functions.singlevariate.ISinglevariateFunction;
+import tools.functions.singlevariate.LinearScoreFunction;
+import tools.normalization.Normalizer.NormalizationMethod;
+import tools.rules.DecisionRule;
+import tools.rules.RuleKey;
+import tools.rules.RuleMoves;
+import tools.utils.RandomUtil;
+import tools.utils.RuleUtil;
+
+public class GibbsSMASTest {
+
+    @Test
+    public void testColdStepsClimb() throws IOException {
+        Dataset dataset = new Dataset("iris.dat", "src/test/resources/",
+                new HashSet<>(Arrays.asList("13", "14", "15")));
+        String[] measureNames = new String[] { "confidence", "support", "lift" };
+
+        GibbsSMAS sampler = new GibbsSMAS(50, dataset, new LinearScoreFunction(), measureNames, 5);
+        sampler.setNormalizationTechnique(NormalizationMethod.NO_NORMALIZATION);
+        sampler.setRandom(new RandomUtil(new SplittableRandom(11)));
+        // Near zero temperature, each step moves to the best neighbour
+        sampler.setTemperature(1e-9);
+        List<DecisionRule> sample = sampler.sample();
+
+        assertFalse(sample.isEmpty());
+        assertTrue(sample.size() <= 5);
+        for (DecisionRule rule : sample) {
+            assertTrue(RuleUtil.isValid(rule));
+        }
+        List<Double> scores = sampler.getScoreHistory();
+        for (int i = 1; i < scores.size(); i++) {
+            assertTrue(scores.get(i) >= scores.get(i - 1) - 1e-12);
+        }
+    }
+
+    @Test
+    public void testStepsFollowTheSoftmax() throws IOException {
+        Dataset dataset = new Dataset("iris.dat", "src/test/resources/",
+                new HashSet<>(Arrays.asList("13", "14", "15")));
+        String[] measureNames = new String[] { "confidence", "support" };
+        Set<DecisionRule> scoredRules = new HashSet<>();
+        LinearScoreFunction linear = new LinearScoreFunction();
+        // Scoring functions may hash the rules they score, neighbours included
+        ISinglevariateFunction hashing = new LinearScoreFunction() {
+            @Override
+            public double computeScore(IAlternative alternative, DecisionRule rule) {
+                scoredRules.add(rule);
+                return linear.computeScore(alternative, rule);
+            }
+        };
+
+        GibbsSMAS sampler = new GibbsSMAS(1, dataset, hashing, measureNames, 5);
+        sampler.setNormalizationTechnique(NormalizationMethod.NO_NORMALIZATION);
+        sampler.setRandom(new RandomUtil(new SplittableRandom(3)));
+        sampler.setTemperature(0.1);
+        DecisionRule rule = new DecisionRule(new HashSet<>(Arrays.asList("1")), "13", dataset, 10, 10,
+                SMAS.DEFAULT_SMOOTH_COUNTS, measureNames);
+
+        // Exact distribution of the next rule, over the rule and its neighbours
+        Map<RuleKey, Double> expected = new HashMap<>();
+        expected.put(rule.getKey(), Math.exp(sampler.getValidRuleScore(rule) / 0.1));
+        for (RuleMoves moves : new RuleMoves[] { rule.evaluateAdditions(sampler.candidateAdditions(rule)),
+                rule.evaluateRemovals(), rule.evaluateConsequents(sampler.candidateConsequents(rule)) }) {
+            for (int i = 0; i < moves.size(); i++) {
+                if (moves.isValid(i)) {
+                    DecisionRule neighbour = rule.neighbour(moves, i);
+                    expected.merge(neighbour.getKey(), Math.exp(sampler.getValidRuleScore(neighbour) / 0.1),
+                            Double::sum);
+                }
+            }
+        }
+        double sum = expected.values().stream().mapToDouble(Double::doubleValue).sum();
+        assertTrue(expected.size() > 3);
+        assertTrue(scoredRules.size() >= expected.size());
+
+        int nbSteps = 20000;
+        Map<RuleKey, Integer> counts = new HashMap<>();
+        for (int step = 0; step < nbSteps; step++) {
+            counts.merge(sampler.updateRule(RuleUtil.deepCopy(rule)).getKey(), 1, Integer::sum);
+        }
+        assertTrue(expected.keySet().containsAll(counts.keySet()));
+        for (Map.Entry<RuleKey, Double> entry : expected.entrySet()) {
+            double p = entry.getValue() / sum;
+            double frequency = counts.getOrDefault(entry.getKey(), 0) / (double) nbSteps;
+            assertEquals(p, frequency, 5 * Math.sqrt(p * (1 - p) / nbSteps) + 1e-3);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package sampling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import tools.data.Dataset;
+import tools.functions.singlevariate.LinearScoreFunction;
+import tools.rules.DecisionRule;
+import tools.rules.RuleKey;
+
+public class ParallelSMASTest {
+
+    @Test
+    public void testSameSeedSameSample() throws IOException {
+        Dataset dataset = new Dataset("iris.dat", "src/test/resources/",
+                new HashSet<>(Arrays.asList("13", "14", "15")));
+        String[] measureNames = new String[] { "confidence", "support", "lift" };
+
+        ParallelSMAS sampler = new ParallelSMAS(
+                c -> new SMAS(300, dataset, new LinearScoreFunction(), measureNames, 5), 4, 42L, 5);
+        sampler.setMergeInterval(50);
+        List<RuleKey> first = keys(sampler.sample());
+        List<RuleKey> second = keys(sampler.sample());
+
+        assertFalse(first.isEmpty());
+        assertTrue(first.size() <= 5);
+        assertEquals(first, second);
+        assertEquals(first.size(), new HashSet<>(first).size());
+    }
+
+    private static List<RuleKey> keys(List<DecisionRule> rules) {
+        return rules.stream().map(DecisionRule::getKey).collect(Collectors.toList());
+    }
+}
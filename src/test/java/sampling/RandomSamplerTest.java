@@ -0,0 +1,63 @@
+package sampling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import tools.data.Dataset;
+import tools.rules.DecisionRule;
+
+public class RandomSamplerTest {
+
+    @Test
+    public void testSampleToFile() throws IOException {
+        Dataset dataset = new Dataset("iris.dat", "src/test/resources/",
+                new HashSet<>(Arrays.asList("13", "14", "15")));
+        String[] measureNames = new String[] { "confidence", "support", "lift" };
+        RandomSampler sampler = new RandomSampler(dataset, 4, 5, measureNames, 0.1);
+
+        Path path = Files.createTempFile("rules", ".json");
+        try {
+            Set<DecisionRule> rules = sampler.sampleToFile(10, dataset.getConsequentItemsSet(),
+                    dataset.getAntecedentItemsSet(), path.toString());
+            assertFalse(rules.isEmpty());
+
+            JsonArray saved = JsonParser.parseString(new String(Files.readAllBytes(path), StandardCharsets.UTF_8))
+                    .getAsJsonArray();
+            assertEquals(rules.size(), saved.size());
+            Set<List<Object>> savedRules = new HashSet<>();
+            for (JsonElement element : saved) {
+                JsonObject rule = element.getAsJsonObject();
+                assertFalse(rule.has("dataset"));
+                assertFalse(rule.has("coverX"));
+                Set<String> itemsInX = new HashSet<>();
+                rule.getAsJsonArray("itemsInX").forEach(item -> itemsInX.add(item.getAsString()));
+                savedRules.add(Arrays.asList(itemsInX, rule.get("Y").getAsString()));
+                assertTrue(rule.getAsJsonObject("alternative").has("vector"));
+            }
+            Set<List<Object>> sampledRules = new HashSet<>();
+            for (DecisionRule rule : rules) {
+                sampledRules.add(Arrays.asList(new HashSet<>(rule.getItemsInX()), rule.getY()));
+            }
+            assertEquals(sampledRules, savedRules);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package sampling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import tools.data.Dataset;
+import tools.functions.multivariate.outRankingCertainties.BradleyTerry;
+import tools.functions.singlevariate.LinearScoreFunction;
+import tools.rules.DecisionRule;
+import tools.rules.RuleKey;
+
+public class ReplicaExchangeSMASTest {
+
+    @Test
+    public void testSwapsBetweenReplicas() throws IOException {
+        Dataset dataset = new Dataset("iris.dat", "src/test/resources/",
+                new HashSet<>(Arrays.asList("13", "14", "15")));
+        String[] measureNames = new String[] { "confidence", "support", "lift" };
+        double[] temperatures = ReplicaExchangeSMAS.geometricLadder(4, 8);
+        assertEquals(1, temperatures[0], 1e-12);
+        assertEquals(8, temperatures[3], 1e-12);
+
+        ReplicaExchangeSMAS sampler = new ReplicaExchangeSMAS(c -> {
+            LinearScoreFunction scoringFunction = new LinearScoreFunction();
+            return new SMAS(200, dataset, new BradleyTerry(scoringFunction), scoringFunction, measureNames, 1e-6, 5);
+        }, temperatures, 7L, 5);
+        sampler.setMergeInterval(20);
+        List<RuleKey> first = keys(sampler.sample());
+
+        assertFalse(first.isEmpty());
+        assertTrue(first.size() <= 5);
+        for (int c = 0; c < temperatures.length - 1; c++) {
+            // 9 exchanges between the 10 segments, pairs alternating
+            assertEquals(c % 2 == 0 ? 5 : 4, sampler.getSwapAttempts(c));
+            double rate = sampler.getSwapAcceptanceRate(c);
+            assertTrue(rate >= 0 && rate <= 1);
+        }
+        long accepted = sampler.getSwapAcceptances(0);
+        assertEquals(first, keys(sampler.sample()));
+        assertEquals(accepted, sampler.getSwapAcceptances(0));
+    }
+
+    @Test
+    public void testTemperaturesMustBePositive() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ReplicaExchangeSMAS(c -> null, new double[] { 1, 0 }, 0L, 1));
+    }
+
+    private static List<RuleKey> keys(List<DecisionRule> rules) {
+        return rules.stream().map(DecisionRule::getKey).collect(Collectors.toList());
+    }
+}
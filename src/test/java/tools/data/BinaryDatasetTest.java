@@ -0,0 +1,88 @@
+package tools.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class BinaryDatasetTest {
+
+    @Test
+    public void testConvertAndLoad() throws IOException {
+        Set<String> classItemValues = new HashSet<>(Arrays.asList("young", "adult", "senior"));
+        Dataset parsed = new Dataset("groceries_test_file.dat", "src/test/resources/", classItemValues);
+
+        Path binPath = Files.createTempFile("groceries_test_file", BinaryDataset.EXTENSION);
+        try {
+            BinaryDataset.convert(Paths.get("src/test/resources/groceries_test_file.dat"), binPath);
+            Dataset loaded = BinaryDataset.load(binPath, classItemValues);
+
+            assertEquals(parsed.getNbTransactions(), loaded.getNbTransactions());
+            assertEquals(parsed.getItemsMap(), loaded.getItemsMap());
+            assertArrayEquals(parsed.getTransactions(), loaded.getTransactions());
+            assertEquals(parsed.getConsequentItemsSet(), loaded.getConsequentItemsSet());
+            assertEquals(parsed.getAntecedentItemsSet(), loaded.getAntecedentItemsSet());
+        } finally {
+            Files.deleteIfExists(binPath);
+        }
+    }
+
+    @Test
+    public void testSnapshotFollowsSource() throws IOException {
+        Set<String> classItemValues = new HashSet<>(Arrays.asList("y", "z"));
+        Path dir = Files.createTempDirectory("snapshot");
+        Path datPath = dir.resolve("data.dat");
+        Path binPath = dir.resolve("data" + BinaryDataset.EXTENSION);
+        try {
+            StringBuilder content = new StringBuilder();
+            for (int tid = 0; tid < 2000; tid++) {
+                content.append(tid % 3 == 0 ? "a b y\n" : tid % 3 == 1 ? "c " + (tid % 70) + " z\n" : "d y\n");
+            }
+            Files.write(datPath, content.toString().getBytes(StandardCharsets.UTF_8));
+            String expDir = dir.toString() + File.separator;
+
+            BinaryDataset.read("data.dat", expDir, classItemValues);
+            assertFalse(Files.exists(binPath));
+
+            Dataset parsed = BinaryDataset.read("data.dat", expDir, classItemValues, true);
+            assertTrue(Files.isRegularFile(binPath));
+            assertTrue(BinaryDataset.isSnapshotOf(binPath, datPath));
+
+            Dataset loaded = Dataset.load(binPath, classItemValues);
+            assertArrayEquals(parsed.getDictionary().getItems(), loaded.getDictionary().getItems());
+            assertArrayEquals(parsed.getCovers(), loaded.getCovers());
+            assertArrayEquals(parsed.getClassOf(), loaded.getClassOf());
+            assertArrayEquals(parsed.getTransactions(), loaded.getTransactions());
+            assertEquals(parsed.getClassOf("a"), loaded.getClassOf("y"));
+
+            // Same length and an unchanged modification time: only the checksum
+            // tells the source changed
+            FileTime modified = Files.getLastModifiedTime(datPath);
+            Files.write(datPath, content.toString().replace("d y", "d z").getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(datPath, FileTime.fromMillis(modified.toMillis() + 1000));
+            assertFalse(BinaryDataset.isSnapshotOf(binPath, datPath));
+
+            Dataset rebuilt = BinaryDataset.read("data.dat", expDir, classItemValues, true);
+            assertTrue(BinaryDataset.isSnapshotOf(binPath, datPath));
+            assertEquals(parsed.getCover("y").cardinality() - rebuilt.getCover("y").cardinality(),
+                    rebuilt.getCover("d").cardinality());
+        } finally {
+            Files.deleteIfExists(binPath);
+            Files.deleteIfExists(datPath);
+            Files.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package tools.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class CoverCacheTest {
+
+    private static final int SIZE = 1000;
+
+    @Test
+    public void testCanonicalKey() {
+        ItemDictionary dictionary = new ItemDictionary();
+        for (String item : new String[] { "a", "b", "c" }) {
+            dictionary.getOrAdd(item);
+        }
+        Set<String> abc = new LinkedHashSet<>(Arrays.asList("a", "b", "c"));
+        Set<String> cba = new LinkedHashSet<>(Arrays.asList("c", "b", "a"));
+        assertEquals(ItemsetKey.of(dictionary, abc), ItemsetKey.of(dictionary, cba));
+        assertEquals(ItemsetKey.of(dictionary, abc).hashCode(), ItemsetKey.of(dictionary, cba).hashCode());
+        assertEquals(ItemsetKey.of(0, 1, 2), ItemsetKey.of(dictionary, cba));
+        assertTrue(!ItemsetKey.of(0, 1).equals(ItemsetKey.of(dictionary, abc)));
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        CoverCache cache = new CoverCache(100, 1 << 20);
+        Cover cover = Covers.full(SIZE);
+        assertNull(cache.getIfPresent(ItemsetKey.of(1, 2)));
+        assertSame(cover, cache.computeIfAbsent(ItemsetKey.of(2, 1), key -> cover));
+        assertSame(cover, cache.computeIfAbsent(ItemsetKey.of(1, 2), key -> Covers.empty(SIZE)));
+        assertSame(cover, cache.put(ItemsetKey.of(1, 2), Covers.empty(SIZE)));
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertEquals(1, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    public void testEntryBound() {
+        CoverCache cache = new CoverCache(50, 1L << 30);
+        for (int i = 0; i < 500; i++) {
+            cache.put(ItemsetKey.of(i, i + 1), Covers.empty(SIZE));
+        }
+        assertEquals(50, cache.size());
+        assertEquals(450, cache.evictionCount());
+    }
+
+    @Test
+    public void testByteBound() {
+        long coverBytes = Covers.sizeInBytes(Covers.full(SIZE));
+        CoverCache cache = new CoverCache(1000, 20 * (coverBytes + 128));
+        for (int i = 0; i < 100; i++) {
+            cache.put(ItemsetKey.of(i, i + 1), Covers.full(SIZE));
+        }
+        assertTrue(cache.weightedSize() <= 20 * (coverBytes + 128));
+        assertEquals(100, cache.size() + cache.evictionCount());
+    }
+
+    @Test
+    public void testFrequentCoversSurviveScans() {
+        CoverCache cache = new CoverCache(100, 1L << 30);
+        Set<ItemsetKey> frequent = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            ItemsetKey key = ItemsetKey.of(-i - 1, -i - 2);
+            frequent.add(key);
+            cache.put(key, Covers.empty(SIZE));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (ItemsetKey key : frequent) {
+                assertNotNull(cache.getIfPresent(key));
+            }
+        }
+        // A scan of one shot itemsets must not flush the frequently used ones
+        for (int i = 0; i < 1000; i++) {
+            cache.put(ItemsetKey.of(i, i + 1), Covers.empty(SIZE));
+        }
+        int retained = 0;
+        for (ItemsetKey key : frequent) {
+            if (cache.getIfPresent(key) != null) retained++;
+        }
+        assertTrue("retained " + retained, retained >= 45);
+    }
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        CoverCache cache = new CoverCache(64, 1L << 30);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    int item = (i * 31 + seed) % 200;
+                    Cover cover = cache.computeIfAbsent(ItemsetKey.of(item, item + 1),
+                            key -> Covers.fromSortedTids(new int[] { item }, 1, SIZE));
+                    assertTrue(cover.contains(item));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(cache.size() <= 64);
+        assertEquals(80000, cache.hitCount() + cache.missCount());
+    }
+}
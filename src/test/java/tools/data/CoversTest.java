@@ -0,0 +1,165 @@
+package tools.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.zaxxer.sparsebits.SparseBitSet;
+
+public class CoversTest {
+
+    private static final int SIZE = 1000;
+
+    @Test
+    public void testRepresentationChoice() {
+        SparseBitSet dense = new SparseBitSet();
+        dense.set(0, SIZE / 2);
+        assertTrue(Covers.of(dense, SIZE) instanceof DenseCover);
+
+        SparseBitSet rare = new SparseBitSet();
+        rare.set(3);
+        rare.set(500);
+        rare.set(900);
+        assertTrue(Covers.of(rare, SIZE) instanceof ArrayCover);
+
+        SparseBitSet clustered = new SparseBitSet();
+        clustered.set(128, 148);
+        assertTrue(Covers.of(clustered, SIZE) instanceof SparseCover);
+    }
+
+    @Test
+    public void testFullAndEmpty() {
+        Cover full = Covers.full(SIZE);
+        assertEquals(SIZE, full.cardinality());
+        assertTrue(full.contains(SIZE - 1));
+        assertTrue(!full.contains(SIZE));
+        assertEquals(-1, full.nextSetBit(SIZE));
+        assertTrue(Covers.empty(SIZE).isEmpty());
+        assertEquals(-1, Covers.empty(SIZE).nextSetBit(0));
+    }
+
+    @Test
+    public void testWordsOfTheLastTransactions() {
+        int last = Integer.MAX_VALUE - 1;
+        Cover cover = new ArrayCover(new int[] { 5, last }, Integer.MAX_VALUE);
+        assertEquals(1L << 5, cover.word(0));
+        assertEquals(1L << last, cover.word(last >>> 6));
+        assertEquals(0L, cover.word((last >>> 6) + 1));
+        assertEquals(0L, cover.word(-1));
+        assertEquals(cover.word(last >>> 6), Covers.and(cover, cover).word(last >>> 6));
+    }
+
+    @Test
+    public void testKernelsOnEveryPairOfRepresentations() {
+        Random random = new Random(42);
+        List<SparseBitSet> bitsets = new ArrayList<>();
+        for (double density : new double[] { 0.002, 0.01, 0.1, 0.5, 0.95 }) {
+            bitsets.add(randomBits(random, density));
+        }
+        SparseBitSet clustered = new SparseBitSet();
+        clustered.set(64, 100);
+        clustered.set(700, 720);
+        bitsets.add(clustered);
+
+        for (SparseBitSet bitsA : bitsets) {
+            for (SparseBitSet bitsB : bitsets) {
+                for (Cover a : allRepresentations(bitsA)) {
+                    for (Cover b : allRepresentations(bitsB)) {
+                        SparseBitSet expectedAnd = bitsA.clone();
+                        expectedAnd.and(bitsB);
+                        SparseBitSet expectedAndNot = bitsA.clone();
+                        expectedAndNot.andNot(bitsB);
+
+                        String pair = a.getClass().getSimpleName() + " / " + b.getClass().getSimpleName();
+                        assertEquals(pair, expectedAnd, a.and(b).toSparseBitSet());
+                        assertEquals(pair, expectedAnd.cardinality(), a.and(b).cardinality());
+                        assertEquals(pair, expectedAnd.cardinality(), a.andCardinality(b));
+                        assertEquals(pair, expectedAndNot, a.andNot(b).toSparseBitSet());
+                        assertEquals(pair, expectedAndNot.cardinality(), a.andNot(b).cardinality());
+                        assertEquals(pair, expectedAndNot.cardinality(), a.andNotCardinality(b));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMultiWayKernels() {
+        Random random = new Random(13);
+        double[] densities = { 0.002, 0.05, 0.3, 0.6, 0.9 };
+        for (int k = 1; k <= 5; k++) {
+            for (int trial = 0; trial < 20; trial++) {
+                Cover[] covers = new Cover[k];
+                SparseBitSet expected = null;
+                for (int i = 0; i < k; i++) {
+                    SparseBitSet bits = randomBits(random, densities[random.nextInt(densities.length)]);
+                    List<Cover> representations = allRepresentations(bits);
+                    covers[i] = representations.get(random.nextInt(representations.size()));
+                    if (expected == null) {
+                        expected = bits.clone();
+                    } else {
+                        expected.and(bits);
+                    }
+                }
+                assertEquals(expected, Covers.and(covers).toSparseBitSet());
+                assertEquals(expected.cardinality(), Covers.and(covers).cardinality());
+                assertEquals(expected.cardinality(), Covers.andCardinality(covers));
+            }
+        }
+    }
+
+    @Test
+    public void testEqualityAcrossRepresentations() {
+        SparseBitSet bits = randomBits(new Random(7), 0.05);
+        List<Cover> covers = allRepresentations(bits);
+        assertEquals(1, new HashSet<>(covers).size());
+        for (Cover cover : covers) {
+            assertArrayEquals(covers.get(0).toArray(), cover.toArray());
+            for (int tid = 0; tid < SIZE; tid++) {
+                assertEquals(bits.get(tid), cover.contains(tid));
+            }
+            for (int word = 0; word < Covers.wordCount(SIZE); word++) {
+                assertEquals(covers.get(0).word(word), cover.word(word));
+            }
+        }
+    }
+
+    private static SparseBitSet randomBits(Random random, double density) {
+        SparseBitSet bits = new SparseBitSet();
+        for (int tid = 0; tid < SIZE; tid++) {
+            if (random.nextDouble() < density) {
+                bits.set(tid);
+            }
+        }
+        return bits;
+    }
+
+    private static List<Cover> allRepresentations(SparseBitSet bits) {
+        int[] tids = Covers.of(bits, SIZE).toArray();
+        long[] words = new long[Covers.wordCount(SIZE)];
+        for (int tid : tids) {
+            words[tid >>> 6] |= 1L << tid;
+        }
+        int[] wordIndexes = new int[words.length];
+        long[] sparseWords = new long[words.length];
+        int n = 0;
+        for (int i = 0; i < words.length; i++) {
+            if (words[i] != 0) {
+                wordIndexes[n] = i;
+                sparseWords[n++] = words[i];
+            }
+        }
+        return Arrays.asList(
+                new DenseCover(words, SIZE),
+                new ArrayCover(tids, SIZE),
+                new SparseCover(Arrays.copyOf(wordIndexes, n), Arrays.copyOf(sparseWords, n), SIZE, tids.length));
+    }
+}
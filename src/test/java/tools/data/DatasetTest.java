@@ -6,16 +6,27 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Test;
 
 import com.zaxxer.sparsebits.SparseBitSet;
 
+import tools.rules.DecisionRule;
+import tools.utils.RandomUtil;
 import tools.utils.TestUtils;
 
 public class DatasetTest {
@@ -70,6 +81,34 @@ public class DatasetTest {
         }
     }
 
+    @Test
+    public void testEmptyTransactionsAreKept() {
+        String[][] transactions = { { "a", "y" }, {}, { "b", "y" } };
+        Dataset dataset = new Dataset(transactions, new HashSet<>(Arrays.asList("y")));
+
+        assertEquals(3, dataset.getNbTransactions());
+        assertEquals(0, dataset.getTransaction(1).length);
+        assertEquals(2, dataset.getCover("y").cardinality());
+        assertArrayEquals(transactions, dataset.getTransactions());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedSetters() {
+        Dataset dataset = new Dataset(new String[][] { { "a", "y" } }, new HashSet<>(Arrays.asList("y")));
+        String[][] transactions = { { "a", "y" }, { "b", "z" }, { "a", "b", "y" } };
+        dataset.setTransactions(transactions);
+        assertEquals(3, dataset.getNbTransactions());
+        assertArrayEquals(transactions, dataset.getTransactions());
+        assertEquals(2, dataset.getCover("y").cardinality());
+
+        Map<String, SparseBitSet> itemsMap = dataset.getItemsMap();
+        itemsMap.get("z").set(3);
+        dataset.setItemsMap(itemsMap);
+        assertEquals(4, dataset.getNbTransactions());
+        assertEquals(itemsMap, dataset.getItemsMap());
+    }
+
     @Test
     public void testClassItems() {
         try {
@@ -189,6 +228,54 @@ public class DatasetTest {
         }
     }
 
+    @Test
+    public void testEncodedTransactions() throws IOException {
+        Set<String> classItemValues = new HashSet<>(Arrays.asList("young", "adult", "senior"));
+        Dataset dataset = new Dataset("groceries_test_file.dat", "src/test/resources/", classItemValues);
+
+        String[][] transactions = dataset.getTransactionalDataset();
+        int[][] encodedTransactions = dataset.getEncodedTransactions();
+        ItemDictionary dictionary = dataset.getDictionary();
+
+        assertEquals(transactions.length, encodedTransactions.length);
+        for (int i = 0; i < transactions.length; i++) {
+            assertArrayEquals(transactions[i], dictionary.decode(encodedTransactions[i]));
+        }
+
+        // Covers indexed by id match the String keyed covers
+        for (int id = 0; id < dictionary.size(); id++) {
+            assertEquals(dataset.getItemsMap().get(dictionary.getItem(id)), dataset.getCover(id).toSparseBitSet());
+        }
+
+        assertEquals(3, dataset.getConsequentItemIds().length);
+        for (int id : dataset.getConsequentItemIds()) {
+            assertTrue(classItemValues.contains(dictionary.getItem(id)));
+            assertTrue(dataset.isConsequentItem(id));
+        }
+        assertEquals(dataset.getNbAntecedentItems(), dataset.getAntecedentItemIds().length);
+    }
+
+    @Test
+    public void testVerticalOnlyBuilder() throws IOException {
+        Set<String> classItemValues = new HashSet<>(Arrays.asList("young", "adult", "senior"));
+        Dataset full = new Dataset("groceries_test_file.dat", "src/test/resources/", classItemValues);
+        Dataset vertical = new DatasetBuilder().storeTransactions(false)
+                .readFile("groceries_test_file.dat", "src/test/resources/").build(classItemValues);
+
+        assertTrue(full.hasTransactions());
+        assertTrue(!vertical.hasTransactions());
+        assertEquals(full.getNbTransactions(), vertical.getNbTransactions());
+        assertEquals(full.getItemsMap(), vertical.getItemsMap());
+        for (int tid = 0; tid < full.getNbTransactions(); tid++) {
+            int[] transaction = full.getTransaction(tid).clone();
+            Arrays.sort(transaction);
+            assertArrayEquals(transaction, vertical.getTransaction(tid));
+        }
+        assertEquals(full.getEquivalenceClasses().countClasses(), vertical.getEquivalenceClasses().countClasses());
+        vertical.findEquivalenceClasses();
+        assertEquals(full.getEquivalenceClasses().countClasses(), vertical.getEquivalenceClasses().countClasses());
+    }
+
     private static SparseBitSet createSparseBitSet(int[] values) {
         SparseBitSet bitSet = new SparseBitSet();
         for (int value : values) {
@@ -227,6 +314,246 @@ public class DatasetTest {
         assertTrue("2 should be connected with 4", uf.find("2").equals(uf.find("4")));
     }
 
+    @Test
+    public void testClassOf() {
+        // Two components linked by chains of transactions: {a, b, c, y} and {d, e, z}
+        String[][] transactions = new String[5000][];
+        for (int tid = 0; tid < transactions.length; tid++) {
+            switch (tid % 4) {
+                case 0: transactions[tid] = new String[] { "a", "b", "y" }; break;
+                case 1: transactions[tid] = new String[] { "d", "z" }; break;
+                case 2: transactions[tid] = new String[] { "c", "b" }; break;
+                default: transactions[tid] = tid == 4999 ? new String[] { "e", "d" } : new String[] { "d" };
+            }
+        }
+        Dataset dataset = new Dataset(transactions, new HashSet<>(Arrays.asList("y", "z")));
+        int[] builderClasses = dataset.getClassOf().clone();
+        dataset.findEquivalenceClasses();
+        assertArrayEquals(builderClasses, dataset.getClassOf());
+
+        assertEquals(2, dataset.getEquivalenceClasses().countClasses());
+        assertEquals(dataset.getClassOf("a"), dataset.getClassOf("c"));
+        assertEquals(dataset.getClassOf("a"), dataset.getClassOf("y"));
+        assertEquals(dataset.getClassOf("d"), dataset.getClassOf("e"));
+        assertEquals(dataset.getClassOf("d"), dataset.getClassOf("z"));
+        assertTrue(dataset.getClassOf("a") != dataset.getClassOf("e"));
+        assertEquals(-1, dataset.getClassOf("unknown"));
+        assertEquals(dataset.getEquivalenceClasses().find("d"), dataset.getEquivalenceClasses().find("e"));
+    }
+
+    @Test
+    public void testParallelParsingMatchesLineParsing() throws IOException {
+        Random random = new Random(3);
+        String[] separators = { " ", ",", "\t", " , ", "  " };
+        String[] lineEnds = { "\n", "\r\n", "\n\n", "\r" };
+        StringBuilder content = new StringBuilder();
+        for (int tid = 0; tid < 3000; tid++) {
+            if (random.nextInt(10) == 0) content.append(' ');
+            int length = 1 + random.nextInt(6);
+            for (int i = 0; i < length; i++) {
+                if (i > 0) content.append(separators[random.nextInt(separators.length)]);
+                content.append(random.nextInt(200));
+            }
+            if (random.nextInt(10) == 0) content.append(',');
+            content.append(lineEnds[random.nextInt(lineEnds.length)]);
+        }
+        Path file = Files.createTempFile("parallel", ".dat");
+        try {
+            Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+            String dir = file.getParent().toString() + File.separator;
+            String name = file.getFileName().toString();
+            Set<String> consequents = new HashSet<>(Arrays.asList("0", "1"));
+
+            // Reference: lines split on [,\s]+ as read by a BufferedReader
+            List<String[]> lines = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(file)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    List<String> items = new ArrayList<>();
+                    for (String value : line.split("[,\\s]+")) {
+                        if (!value.trim().isEmpty()) items.add(value.trim());
+                    }
+                    if (!items.isEmpty()) lines.add(items.toArray(new String[0]));
+                }
+            }
+            Dataset expected = new Dataset(lines.toArray(new String[0][]), consequents);
+
+            for (int nbRanges : new int[] { 1, 2, 7, 64 }) {
+                Dataset dataset = new DatasetBuilder().readFile(name, dir, nbRanges).build(consequents);
+                assertArrayEquals(expected.getDictionary().getItems(), dataset.getDictionary().getItems());
+                assertEquals(expected.getNbTransactions(), dataset.getNbTransactions());
+                for (int tid = 0; tid < expected.getNbTransactions(); tid++) {
+                    assertArrayEquals(expected.getTransaction(tid), dataset.getTransaction(tid));
+                }
+                assertArrayEquals(expected.getCovers(), dataset.getCovers());
+                assertArrayEquals(expected.getClassOf(), dataset.getClassOf());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testViewMatchesCopiedTransactions() {
+        Random random = new Random(5);
+        String[][] transactions = new String[3000][];
+        for (int tid = 0; tid < transactions.length; tid++) {
+            Set<String> items = new HashSet<>();
+            items.add(random.nextBoolean() ? "y" : "z");
+            int length = 1 + random.nextInt(8);
+            for (int i = 0; i < length; i++) items.add(Integer.toString(random.nextInt(150)));
+            transactions[tid] = items.toArray(new String[0]);
+        }
+        Set<String> consequents = new HashSet<>(Arrays.asList("y", "z"));
+        Dataset dataset = new Dataset(transactions, consequents);
+
+        List<Integer> kept = new ArrayList<>();
+        for (int tid = 0; tid < transactions.length; tid++) {
+            if (random.nextInt(3) == 0) kept.add(tid);
+        }
+        DatasetView view = DatasetView.of(dataset, kept.stream().mapToInt(Integer::intValue).toArray());
+        String[][] copiedTransactions = new String[kept.size()][];
+        for (int i = 0; i < copiedTransactions.length; i++) {
+            copiedTransactions[i] = transactions[kept.get(i)];
+        }
+        Dataset copy = new Dataset(copiedTransactions, consequents);
+
+        assertEquals(copy.getNbTransactions(), view.getNbTransactions());
+        for (int tid = 0; tid < view.getNbTransactions(); tid++) {
+            assertEquals(kept.get(tid).intValue(), view.getParentTid(tid));
+            assertEquals(new HashSet<>(Arrays.asList(copiedTransactions[tid])),
+                    new HashSet<>(Arrays.asList(view.getTransactions()[tid])));
+        }
+        for (String item : dataset.getDictionary().getItems()) {
+            Cover expected = copy.getCover(item);
+            assertEquals(expected == null ? Covers.empty(copy.getNbTransactions()) : expected, view.getCover(item));
+        }
+
+        DatasetView[][] folds = DatasetView.kFolds(dataset, 3, new RandomUtil());
+        for (DatasetView[] fold : folds) {
+            assertEquals(0, fold[0].getMask().andCardinality(fold[1].getMask()));
+            assertEquals(dataset.getNbTransactions(), fold[0].getNbTransactions() + fold[1].getNbTransactions());
+            for (String item : consequents) {
+                assertEquals(dataset.getCover(item).cardinality(),
+                        fold[0].getCover(item).cardinality() + fold[1].getCover(item).cardinality());
+            }
+        }
+    }
+
+    @Test
+    public void testCoOccurrenceIndex() {
+        Random random = new Random(11);
+        String[][] transactions = new String[4000][];
+        for (int tid = 0; tid < transactions.length; tid++) {
+            // Items 0-29 only appear with y, items 30-59 only with z
+            int offset = tid % 2 == 0 ? 0 : 30;
+            List<String> items = new ArrayList<>();
+            items.add(tid % 2 == 0 ? "y" : "z");
+            for (int i = 0; i < 4; i++) items.add(Integer.toString(offset + random.nextInt(30)));
+            items.add(items.get(1));
+            transactions[tid] = items.toArray(new String[0]);
+        }
+        Set<String> consequents = new HashSet<>(Arrays.asList("y", "z", "never"));
+        Dataset horizontal = new Dataset(transactions, consequents);
+        Dataset vertical = new DatasetBuilder().storeTransactions(false).addTransactions(transactions)
+                .build(consequents);
+
+        for (Dataset dataset : new Dataset[] { horizontal, vertical }) {
+            dataset.indexCoOccurrences(40);
+            CoOccurrenceIndex index = dataset.getCoOccurrenceIndex();
+            assertEquals(40, index.getNbIndexedItems());
+            int nbItems = dataset.getDictionary().size();
+            for (int i = 0; i < nbItems; i++) {
+                assertEquals(dataset.getCover(i).cardinality(), index.support(i));
+                for (int j = 0; j < nbItems; j++) {
+                    int expected = Covers.andCardinality(dataset.getCover(i), dataset.getCover(j));
+                    if (index.isIndexed(i) && index.isIndexed(j)) {
+                        assertEquals(expected, index.coSupport(i, j));
+                    } else if (i != j) {
+                        assertEquals(CoOccurrenceIndex.UNKNOWN, index.coSupport(i, j));
+                    }
+                    if (expected > 0) {
+                        assertTrue(index.mayCoOccur(i, j));
+                    }
+                }
+            }
+            assertTrue(dataset.canCoOccur(Arrays.asList("3", "7"), "y"));
+            assertTrue(!dataset.canCoOccur(Arrays.asList("3"), "z"));
+            assertTrue(!dataset.canCoOccur(new ArrayList<>(), "never"));
+            assertTrue(dataset.canCoOccur(Arrays.asList("3"), "unknown"));
+        }
+    }
+
+    @Test
+    public void testDeduplicationKeepsFrequencies() throws IOException {
+        Random random = new Random(13);
+        String[][] transactions = new String[3000][];
+        for (int tid = 0; tid < transactions.length; tid++) {
+            List<String> items = new ArrayList<>();
+            items.add(random.nextInt(3) == 0 ? "y" : "z");
+            for (int i = 0; i < 6; i++) {
+                if (random.nextBoolean()) items.add("a" + i);
+            }
+            Collections.shuffle(items, random);
+            transactions[tid] = items.toArray(new String[0]);
+        }
+        Set<String> consequents = new HashSet<>(Arrays.asList("y", "z"));
+        Dataset dataset = new Dataset(transactions, consequents);
+        Dataset deduplicated = new DatasetBuilder().deduplicate(true).addTransactions(transactions)
+                .build(consequents);
+
+        assertEquals(dataset.getNbTransactions(), deduplicated.getNbTransactions());
+        assertTrue(deduplicated.getNbRows() <= 128);
+        assertEquals(deduplicated.getNbRows(), deduplicated.getCover("y").size());
+
+        String[] measures = { "support", "confidence", "lift" };
+        for (int r = 0; r < 200; r++) {
+            Set<String> x = new HashSet<>();
+            for (int i = 0; i < 6; i++) {
+                if (random.nextInt(3) == 0) x.add("a" + i);
+            }
+            String y = random.nextBoolean() ? "y" : "z";
+            DecisionRule expected = new DecisionRule(new HashSet<>(x), y, dataset, 10, 10, 1e-6, measures);
+            DecisionRule rule = new DecisionRule(new HashSet<>(x), y, deduplicated, 10, 10, 1e-6, measures);
+            assertEquals(expected.getFreqX(), rule.getFreqX());
+            assertEquals(expected.getFreqY(), rule.getFreqY());
+            assertEquals(expected.getFreqZ(), rule.getFreqZ());
+            assertArrayEquals(expected.getAlternative().getVector(), rule.getAlternative().getVector(), 0);
+
+            expected.addToX("a" + r % 6);
+            rule.addToX("a" + r % 6);
+            assertEquals(expected.getFreqZ(), rule.getFreqZ());
+            assertEquals(expected.getFreqZ(), deduplicated.support(rule.getCoverZ()));
+        }
+
+        CoOccurrenceIndex index = dataset.getCoOccurrenceIndex();
+        CoOccurrenceIndex deduplicatedIndex = deduplicated.getCoOccurrenceIndex();
+        for (String a : dataset.getDictionary().getItems()) {
+            int i = dataset.getDictionary().getId(a);
+            assertEquals(index.support(i), deduplicatedIndex.support(i));
+            for (String b : dataset.getDictionary().getItems()) {
+                int j = dataset.getDictionary().getId(b);
+                assertEquals(index.coSupport(i, j), deduplicatedIndex.coSupport(i, j));
+            }
+        }
+
+        // Views select weighted rows, snapshots keep the weights
+        DatasetView[][] folds = DatasetView.kFolds(deduplicated, 2, new RandomUtil());
+        assertEquals(dataset.getNbTransactions(), folds[0][0].getNbTransactions() + folds[0][1].getNbTransactions());
+        assertEquals(dataset.getCover("y").cardinality(),
+                folds[0][0].support(folds[0][0].getCover("y")) + folds[0][1].support(folds[0][1].getCover("y")));
+        Path snapshot = Files.createTempFile("deduplicated", BinaryDataset.EXTENSION);
+        try {
+            deduplicated.save(snapshot);
+            Dataset loaded = Dataset.load(snapshot, consequents);
+            assertArrayEquals(deduplicated.getWeights(), loaded.getWeights());
+            assertEquals(dataset.getNbTransactions(), loaded.getNbTransactions());
+            assertEquals(dataset.getTransactions().length, loaded.getTransactions().length);
+        } finally {
+            Files.delete(snapshot);
+        }
+    }
+
     private Set<String> getClassItems(String datasetName) {
         switch (datasetName) {
             case "adult":
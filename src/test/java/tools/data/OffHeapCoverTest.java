@@ -0,0 +1,158 @@
+package tools.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.zaxxer.sparsebits.SparseBitSet;
+
+public class OffHeapCoverTest {
+
+    private static final int SIZE = 1000;
+
+    @Test
+    public void testKernelsMatchHeapCovers() throws IOException {
+        Random random = new Random(5);
+        List<Cover> heapCovers = new ArrayList<>();
+        for (double density : new double[] { 0.002, 0.01, 0.1, 0.5, 0.95 }) {
+            heapCovers.addAll(allRepresentations(randomBits(random, density)));
+        }
+        try (CoverArena arena = CoverArena.direct()) {
+            List<Cover> offHeapCovers = new ArrayList<>();
+            for (Cover cover : heapCovers) {
+                OffHeapCover copy = arena.store(cover);
+                assertEquals(cover, copy);
+                assertEquals(cover, copy.toHeap());
+                assertArrayEquals(cover.toArray(), copy.toArray());
+                for (int word = 0; word < Covers.wordCount(SIZE); word++) {
+                    assertEquals(cover.word(word), copy.word(word));
+                }
+                offHeapCovers.add(copy);
+            }
+            for (int i = 0; i < heapCovers.size(); i++) {
+                for (int j = 0; j < heapCovers.size(); j++) {
+                    Cover a = heapCovers.get(i);
+                    Cover b = heapCovers.get(j);
+                    Cover offHeapA = offHeapCovers.get(i);
+                    Cover offHeapB = offHeapCovers.get(j);
+                    assertEquals(a.and(b), offHeapA.and(offHeapB));
+                    assertEquals(a.and(b), offHeapA.and(b));
+                    assertEquals(a.andCardinality(b), offHeapA.andCardinality(offHeapB));
+                    assertEquals(a.andCardinality(b), a.andCardinality(offHeapB));
+                    assertEquals(a.andNot(b), offHeapA.andNot(offHeapB));
+                    assertEquals(Covers.andCardinality(a, b, a), Covers.andCardinality(offHeapA, b, offHeapA));
+                }
+            }
+            assertTrue(arena.getUsedBytes() > 0);
+        }
+    }
+
+    @Test
+    public void testMappedArena() throws IOException {
+        Path directory = Files.createTempDirectory("arena");
+        Cover cover = Covers.of(randomBits(new Random(3), 0.3), SIZE);
+        try (CoverArena arena = CoverArena.mapped(directory)) {
+            assertEquals(cover, arena.store(cover));
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testDatasetCoversOffHeap() throws IOException {
+        Set<String> classItemValues = new HashSet<>(Arrays.asList("1", "2", "3"));
+        Dataset heap = new Dataset("iris.dat", "src/test/resources/", classItemValues);
+        Dataset dataset = new Dataset("iris.dat", "src/test/resources/", classItemValues);
+        dataset.storeCoversOffHeap(CoverArena.direct());
+
+        Dataset.MemoryUsage usage = dataset.getMemoryUsage();
+        assertTrue(usage.getOffHeapCoverBytes() > 0);
+        assertTrue(usage.getHeapCoverBytes() < heap.getMemoryUsage().getHeapCoverBytes());
+        for (int a = 0; a < heap.getDictionary().size(); a++) {
+            assertTrue(dataset.getCover(a) instanceof OffHeapCover);
+            assertEquals(heap.getCover(a), dataset.getCover(a));
+            for (int b = a; b < heap.getDictionary().size(); b++) {
+                assertEquals(heap.support(heap.getCover(a), heap.getCover(b)),
+                        dataset.support(dataset.getCover(a), dataset.getCover(b)));
+            }
+        }
+
+        dataset.close();
+        assertTrue(dataset.getCoverArena().isClosed());
+        try {
+            dataset.getCover(0).contains(0);
+            throw new AssertionError("The covers of a closed dataset must not be readable.");
+        } catch (IllegalStateException expected) {
+            // Released with the arena
+        }
+    }
+
+    @Test
+    public void testCloseWhileReading() throws Exception {
+        Cover cover = Covers.of(randomBits(new Random(7), 0.5), SIZE);
+        CoverArena arena = CoverArena.direct();
+        OffHeapCover copy = arena.store(cover);
+        int expected = cover.andCardinality(cover);
+        AtomicInteger wrongReads = new AtomicInteger();
+        Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(() -> {
+                try {
+                    while (true) {
+                        if (copy.andCardinality(cover) != expected) {
+                            wrongReads.incrementAndGet();
+                        }
+                    }
+                } catch (IllegalStateException closed) {
+                    // Stops reading once the arena is closed
+                }
+            });
+            readers[t].start();
+        }
+        Thread.sleep(20);
+        arena.close();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(0, wrongReads.get());
+    }
+
+    private static SparseBitSet randomBits(Random random, double density) {
+        SparseBitSet bits = new SparseBitSet();
+        for (int tid = 0; tid < SIZE; tid++) {
+            if (random.nextDouble() < density) {
+                bits.set(tid);
+            }
+        }
+        return bits;
+    }
+
+    private static List<Cover> allRepresentations(SparseBitSet bits) {
+        int[] tids = Covers.of(bits, SIZE).toArray();
+        long[] words = new long[Covers.wordCount(SIZE)];
+        for (int tid : tids) {
+            words[tid >>> 6] |= 1L << tid;
+        }
+        List<Cover> covers = new ArrayList<>();
+        covers.add(new DenseCover(words, SIZE));
+        covers.add(new ArrayCover(tids, SIZE));
+        covers.add(Covers.fromSortedTids(tids, tids.length, SIZE));
+        return covers;
+    }
+}
@@ -0,0 +1,40 @@
+package tools.ranking.heuristics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import tools.data.Dataset;
+import tools.functions.singlevariate.LinearScoreFunction;
+import tools.oracles.OWAOracle;
+import tools.rules.DecisionRule;
+import tools.train.LearnStep;
+
+public class MinGapsRankingsProviderTest {
+
+    @Test
+    public void testRepeatsAPairOnceAllPairsWereSelected() throws IOException {
+        Set<String> classItemValues = new HashSet<>(Arrays.asList("4"));
+        Dataset dataset = new Dataset("dataset_test_file.dat", "src/test/resources/", classItemValues);
+        String[] measures = new String[] { "confidence", "support" };
+        DecisionRule[] sample = new DecisionRule[3];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = new DecisionRule(new HashSet<>(Arrays.asList(String.valueOf(i + 1))), "4", dataset, 10, 10,
+                    0.01d, measures);
+        }
+
+        MinGapsRankingsProvider provider = new MinGapsRankingsProvider(new OWAOracle(0.01, measures.length), sample);
+        LearnStep step = LinearScoreFunction::new;
+
+        // The three pairs of the sample are selected first, the fourth call
+        // falls back to one of them
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, provider.provideRankings(step).size());
+        }
+    }
+}
@@ -6,12 +6,9 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
-import com.zaxxer.sparsebits.SparseBitSet;
-
+import tools.data.Cover;
 import tools.data.Dataset;
-import tools.utils.SetUtil;
 import tools.utils.TestUtils;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -20,14 +17,12 @@ class CoverParallelComputeTest {
     private CoverParallelCompute coverParallelCompute;
     private Dataset dataset;
     private String[][] transactions;
-    private Map<String, SparseBitSet> itemsMap;
 
     @BeforeEach
     public void setUp() throws IOException {
         // Create dataset and items map for testing
         Set<String> classItemValues = new HashSet<>(Arrays.asList("young", "adult", "senior"));
         dataset = new Dataset("groceries_test_file.dat", "src/test/resources/", classItemValues);
-        itemsMap = dataset.getItemsMap();
         transactions = dataset.getTransactionalDataset();
 
         // Initialize CoverParallelCompute instance
@@ -53,7 +48,7 @@ class CoverParallelComputeTest {
                 itemsInSet.add(items[j]);
             }
 
-            SparseBitSet cover = coverParallelCompute.compute(itemsInSet);
+            Cover cover = coverParallelCompute.compute(itemsInSet);
             assertNotNull(cover);
 
             // Perform assertions on the computed cover
@@ -81,7 +76,7 @@ class CoverParallelComputeTest {
                 itemsInSet.add(items[j]);
             }
 
-            SparseBitSet cover = coverParallelCompute.compute(itemsInSet);
+            Cover cover = coverParallelCompute.compute(itemsInSet);
             assertNotNull(cover);
 
             // Perform assertions on the computed cover
@@ -91,78 +86,43 @@ class CoverParallelComputeTest {
     }
 
     /**
-     * Test the {@link CoverParallelCompute#copyItemsInSetCovers(Set)} method of the
+     * Test the {@link CoverParallelCompute#itemCovers(Set)} method of the
      * {@link CoverParallelCompute} class.
-     * This method tests that the copied covers have the correct size for each item
-     * in the input set.
+     * This method tests that the collected covers have the correct size for each
+     * item in the input set, in the iteration order of the set.
      */
     @Test
-    public void testCopyItemsInSetCovers() {
+    public void testItemCovers() {
         Set<String> itemsInSet = new HashSet<>();
         itemsInSet.add("milk");
         itemsInSet.add("eggs");
-        Set<SparseBitSet> copiedCovers = coverParallelCompute.copyItemsInSetCovers(itemsInSet);
-
-        assertNotNull(copiedCovers);
+        Cover[] covers = coverParallelCompute.itemCovers(itemsInSet);
 
-        // Perform assertions on the copied covers
-        assertEquals(2, copiedCovers.size());
+        assertNotNull(covers);
+        assertEquals(2, covers.length);
 
-        // Check the size of each cover, we assume that the set preserves the order
-        // which is incorrect
         int i = 0;
-        for (SparseBitSet itemCover : copiedCovers) {
-            int expected = TestUtils.countTransactionsWithItems(transactions, itemsInSet.toArray(new String[0])[i]);
-            assertEquals(expected, itemCover.cardinality());
+        for (String item : itemsInSet) {
+            int expected = TestUtils.countTransactionsWithItems(transactions, item);
+            assertEquals(expected, covers[i].cardinality());
             i++;
         }
     }
 
     /**
-     * Test the {@link CoverParallelCompute#pairCovers(Set)} method of the
-     * {@link CoverParallelCompute} class.
-     * This method tests the number of pairs returned by the
-     * {@link CoverParallelCompute#pairCovers(Set)} method for different
-     * item set sizes. If the number of items is odd, it checks that one of the
-     * pairs contains a sparse bit set with all bits set.
+     * Tests that {@link CoverParallelCompute#count(Set)} matches the cardinality
+     * of the cover built by {@link CoverParallelCompute#compute(Set)}.
      */
     @Test
-    public void testPairCovers() {
-        // Create an instance of CoverParallelCompute
-        CoverParallelCompute coverParallelCompute = new CoverParallelCompute(dataset);
-
-        // Items to test the cover compute function for
+    public void testCount() {
         String[] items = { "milk", "eggs", "butter", "cheese", "adult" };
 
         for (int i = 1; i <= items.length; i++) {
-            Set<String> itemsInSet = new HashSet<>();
-            for (int j = 0; j < i; j++) {
-                itemsInSet.add(items[j]);
-            }
-
-            Set<SparseBitSet> covers = new HashSet<>();
-            for (String item : items) {
-                covers.add(itemsMap.get(item));
-            }
+            Set<String> itemsInSet = new HashSet<>(Arrays.asList(items).subList(0, i));
 
-            // Test the number of pairs
-            Set<SparseBitSet[]> coverPairs = coverParallelCompute.pairCovers(covers);
-            int expected = covers.size() / 2 + 1;
-            assertEquals(expected, coverPairs.size());
-
-            // If there is an odd number of covers, verify that one of the pairs contains a
-            // sparse bit set with all bits set
-            if (covers.size() % 2 == 1) {
-                SparseBitSet SparseBitSetAllOnes = SetUtil.createSparseBitSetAllOnes(dataset.getNbTransactions());
-                boolean hasAllOnes = false;
-                for (SparseBitSet[] pair : coverPairs) {
-                    if (pair[0].equals(SparseBitSetAllOnes) || pair[1].equals(SparseBitSetAllOnes)) {
-                        hasAllOnes = true;
-                        break;
-                    }
-                }
-                assertTrue(hasAllOnes);
-            }
+            int expected = TestUtils.countTransactionsWithItems(transactions, itemsInSet.toArray(new String[0]));
+            assertEquals(expected, coverParallelCompute.count(itemsInSet));
+            assertEquals(coverParallelCompute.compute(itemsInSet).cardinality(), coverParallelCompute.count(itemsInSet));
         }
     }
 }
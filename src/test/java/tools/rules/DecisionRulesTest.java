@@ -1,6 +1,9 @@
 package tools.rules;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -10,6 +13,7 @@ import java.util.Set;
 import org.junit.Test;
 
 import tools.data.Dataset;
+import tools.utils.RuleUtil;
 import tools.utils.TestUtils;
 
 public class DecisionRulesTest {
@@ -194,4 +198,200 @@ public class DecisionRulesTest {
 
     }
 
+    @Test
+    public void testUndoSteps() throws IOException {
+        Set<String> classItemValues = new HashSet<>(Arrays.asList("13", "14", "15"));
+        Dataset dataset = new Dataset("iris.dat", "src/test/resources/", classItemValues);
+        String[][] irisTransactions = dataset.getTransactionalDataset();
+
+        DecisionRule rule = new DecisionRule(new HashSet<>(Arrays.asList("2")), "13", dataset, 10, 10, 0.01d,
+                new String[] { "confidence" });
+        rule.addToX("4");
+        rule.addToX("7");
+        assertFrequencies(irisTransactions, rule);
+
+        // Rejected proposals: undo the last addToX and the last setY
+        rule.addToX("5");
+        rule.removeFromX("5");
+        assertEquals(new HashSet<>(Arrays.asList("2", "4", "7")), rule.getItemsInX());
+        assertFrequencies(irisTransactions, rule);
+        rule.setY("14");
+        assertFrequencies(irisTransactions, rule);
+        rule.setY("13");
+        assertEquals("13", rule.getY());
+        assertFrequencies(irisTransactions, rule);
+
+        // Removing an item added earlier
+        rule.getCoverX();
+        rule.addToX("10");
+        rule.removeFromX("4");
+        assertEquals(new HashSet<>(Arrays.asList("2", "7", "10")), rule.getItemsInX());
+        assertEquals(38, rule.getFreqX());
+        assertFrequencies(irisTransactions, rule);
+        rule.removeFromX("2");
+        assertFrequencies(irisTransactions, rule);
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+        Set<String> classItemValues = new HashSet<>(Arrays.asList("13", "14", "15"));
+        Dataset dataset = new Dataset("iris.dat", "src/test/resources/", classItemValues);
+        String[] measures = new String[] { "confidence", "support" };
+        DecisionRule rule = new DecisionRule(new HashSet<>(Arrays.asList("2", "7")), "13", dataset, 10, 10, 0.01d,
+                measures);
+
+        RuleSnapshot snapshot = RuleSnapshot.of(rule);
+        rule.addToX("10");
+        DecisionRule rehydrated = snapshot.toRule(dataset, 10, 10, 0.01d, measures);
+
+        assertEquals(new HashSet<>(Arrays.asList("2", "7")), rehydrated.getItemsInX());
+        assertEquals("13", rehydrated.getY());
+        assertEquals(snapshot.getKey(), rehydrated.getKey());
+        assertArrayEquals(snapshot.getAlternative().getVector(), rehydrated.getVector(), 0);
+        assertFrequencies(dataset.getTransactionalDataset(), rehydrated);
+        assertTrue(snapshot.isValid());
+
+        // A rehydrated rule is a working cursor
+        rehydrated.addToX("10");
+        assertEquals(rule, rehydrated);
+        assertEquals(rule.getFreqZ(), rehydrated.getFreqZ());
+        assertFrequencies(dataset.getTransactionalDataset(), rehydrated);
+    }
+
+    @Test
+    public void testEvaluateMoves() throws IOException {
+        Set<String> classItemValues = new HashSet<>(Arrays.asList("13", "14", "15"));
+        Dataset dataset = new Dataset("iris.dat", "src/test/resources/", classItemValues);
+        String[] measures = new String[] { "confidence", "lift", "support" };
+        int[] antecedents = dataset.getAntecedentItemIds();
+        // Repeated candidates, enough for the transactions to be scanned
+        int[] manyAntecedents = new int[3 * antecedents.length];
+        for (int i = 0; i < manyAntecedents.length; i++) {
+            manyAntecedents[i] = antecedents[i % antecedents.length];
+        }
+
+        for (String y : new String[] { "13", "" }) {
+            DecisionRule rule = new DecisionRule(new HashSet<>(Arrays.asList("2")), y, dataset, 10, 10, 0.01d,
+                    measures);
+            for (int[] candidates : new int[][] { antecedents, manyAntecedents }) {
+                RuleMoves moves = rule.evaluateAdditions(candidates);
+                for (int i = 0; i < candidates.length; i++) {
+                    String item = dataset.getDictionary().getItem(candidates[i]);
+                    DecisionRule expected = new DecisionRule(new HashSet<>(rule.getItemsInX()), y, dataset, 10, 10,
+                            0.01d, measures);
+                    expected.addToX(item);
+                    assertMove(expected, moves, i);
+                }
+            }
+        }
+
+        DecisionRule rule = new DecisionRule(new HashSet<>(Arrays.asList("2", "7")), "13", dataset, 10, 10, 0.01d,
+                measures);
+        RuleMoves moves = rule.evaluateConsequents();
+        for (int i = 0; i < moves.size(); i++) {
+            DecisionRule expected = new DecisionRule(new HashSet<>(rule.getItemsInX()),
+                    dataset.getDictionary().getItem(moves.getItem(i)), dataset, 10, 10, 0.01d, measures);
+            assertMove(expected, moves, i);
+        }
+
+        // Applying a move then undoing it
+        String[][] irisTransactions = dataset.getTransactionalDataset();
+        RuleKey key = rule.getKey();
+        double[] vector = rule.getVector().clone();
+        rule.apply(moves, 1);
+        assertEquals(dataset.getDictionary().getItem(moves.getItem(1)), rule.getY());
+        assertFrequencies(irisTransactions, rule);
+        rule.setY("13");
+        assertEquals(key, rule.getKey());
+        assertArrayEquals(vector, rule.getVector(), 0);
+        moves = rule.evaluateAdditions(antecedents);
+        rule.apply(moves, 3);
+        assertFrequencies(irisTransactions, rule);
+        rule.removeFromX(dataset.getDictionary().getItem(antecedents[3]));
+        assertEquals(key, rule.getKey());
+        assertFrequencies(irisTransactions, rule);
+
+        // Removals, down to an empty antecedent
+        for (String[] x : new String[][] { { "2", "7", "10" }, { "2" } }) {
+            DecisionRule longRule = new DecisionRule(new HashSet<>(Arrays.asList(x)), "13", dataset, 10, 10, 0.01d,
+                    measures);
+            RuleMoves removals = longRule.evaluateRemovals();
+            assertEquals(x.length, removals.size());
+            for (int i = 0; i < removals.size(); i++) {
+                Set<String> itemsInX = new HashSet<>(longRule.getItemsInX());
+                itemsInX.remove(dataset.getDictionary().getItem(removals.getItem(i)));
+                DecisionRule expected = new DecisionRule(itemsInX, "13", dataset, 10, 10, 0.01d, measures);
+                assertMove(expected, removals, i);
+            }
+            if (x.length > 1) {
+                longRule.apply(removals, 0);
+                assertEquals(x.length - 1, longRule.getItemsInX().size());
+                assertFrequencies(irisTransactions, longRule);
+            }
+        }
+    }
+
+    @Test
+    public void testMutateRecomputesOnDemand() throws IOException {
+        Set<String> classItemValues = new HashSet<>(Arrays.asList("4"));
+        Dataset dataset = new Dataset("dataset_test_file.dat", "src/test/resources/", classItemValues);
+        String[] measures = new String[] { "confidence", "support" };
+        DecisionRule rule = new DecisionRule(new HashSet<>(Arrays.asList("1", "2", "3")), "4", dataset, 10, 10,
+                0.01d, measures);
+        double[] vector = rule.getVector().clone();
+        long version = rule.getVersion();
+
+        rule.mutate(editor -> editor.removeFromX("2").removeFromX("3"));
+        assertEquals(version + 1, rule.getVersion());
+        DecisionRule expected = new DecisionRule(new HashSet<>(Arrays.asList("1")), "4", dataset, 10, 10, 0.01d,
+                measures);
+        assertEquals(expected.getFreqX(), rule.getFreqX());
+        assertEquals(expected.getFreqZ(), rule.getFreqZ());
+        assertArrayEquals(expected.getVector(), rule.getVector(), 0);
+        assertEquals(expected.getCoverX().cardinality(), rule.getCoverX().cardinality());
+
+        rule.mutate(editor -> editor.addToX("2").addToX("3"));
+        assertArrayEquals(vector, rule.getVector(), 0);
+        assertEquals(expected.getFreqY(), rule.getFreqY());
+
+        // The measures of a state are computed once
+        assertTrue(rule.getAlternative() == rule.getAlternative());
+        rule.mutate(editor -> editor.addToX("1"));
+        assertEquals(version + 2, rule.getVersion());
+    }
+
+    @Test
+    public void testFailedMutateLeavesTheRule() throws IOException {
+        Set<String> classItemValues = new HashSet<>(Arrays.asList("4"));
+        Dataset dataset = new Dataset("dataset_test_file.dat", "src/test/resources/", classItemValues);
+        String[] measures = new String[] { "confidence", "support" };
+        Set<String> itemsInX = new HashSet<>(Arrays.asList("1", "2"));
+        DecisionRule rule = new DecisionRule(itemsInX, "4", dataset, 10, 10, 0.01d, measures);
+        int freqZ = rule.getFreqZ();
+        long version = rule.getVersion();
+
+        assertThrows(RuntimeException.class, () -> rule.mutate(editor -> editor.addToX("3").removeFromX("5")));
+        assertEquals(new HashSet<>(Arrays.asList("1", "2")), rule.getItemsInX());
+        assertEquals(itemsInX, rule.getItemsInX());
+        assertEquals(version, rule.getVersion());
+        assertEquals(freqZ, rule.getFreqZ());
+    }
+
+    private static void assertMove(DecisionRule expected, RuleMoves moves, int i) {
+        assertEquals(expected.getFreqX(), moves.getFreqX(i));
+        assertEquals(expected.getFreqY(), moves.getFreqY(i));
+        assertEquals(expected.getFreqZ(), moves.getFreqZ(i));
+        assertEquals(RuleUtil.isValid(expected), moves.isValid(i));
+        assertArrayEquals(expected.getVector(), moves.getAlternative(i).getVector(), 1e-12);
+    }
+
+    private static void assertFrequencies(String[][] transactions, DecisionRule rule) {
+        assertEquals(TestUtils.countTransactionsWithItems(transactions, rule.getItemsInX().toArray(new String[0])),
+                rule.getFreqX());
+        assertEquals(TestUtils.countTransactionsWithItems(transactions, rule.getY()), rule.getFreqY());
+        assertEquals(TestUtils.countTransactionsWithItems(transactions, rule.getItemsInZ().toArray(new String[0])),
+                rule.getFreqZ());
+        assertEquals(rule.getFreqX(), rule.getCoverX().cardinality());
+        assertEquals(rule.getFreqZ(), rule.getCoverZ().cardinality());
+    }
 }
@@ -0,0 +1,77 @@
+package tools.rules;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import tools.data.Dataset;
+
+public class MeasureCacheTest {
+
+    private static final String[] MEASURES = new String[] { RuleMeasures.confidence, RuleMeasures.lift,
+            RuleMeasures.phi, RuleMeasures.certainty };
+
+    @Test
+    public void testCacheMatchesKernel() throws InterruptedException, ExecutionException {
+        int n = 1000;
+        MeasureKernel kernel = MeasureKernel.compile(MEASURES);
+        // A small cache, so that entries are overwritten
+        MeasureCache cache = new MeasureCache(MEASURES, n, 0.01d, 64);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> chains = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Random random = new Random(t);
+                chains.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        int freqX = 1 + random.nextInt(30);
+                        int freqY = 1 + random.nextInt(30);
+                        int freqZ = random.nextInt(Math.min(freqX, freqY) + 1);
+                        assertArrayEquals(kernel.evaluate(n, freqZ, freqX, freqY, 0.01d),
+                                cache.evaluate(freqX, freqY, freqZ), 0);
+                    }
+                }));
+            }
+            for (Future<?> chain : chains) {
+                chain.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(80_000, cache.hitCount() + cache.missCount());
+        assertTrue(cache.hitCount() > 0);
+    }
+
+    @Test
+    public void testCacheScopedByDataset() throws IOException {
+        Dataset dataset = new Dataset("dataset_test_file.dat", "src/test/resources/",
+                new HashSet<>(Arrays.asList("4")));
+        MeasureCache cache = dataset.getMeasureCache(MEASURES, 0.01d);
+        assertSame(cache, dataset.getMeasureCache(MEASURES, 0.01d));
+        assertNotSame(cache, dataset.getMeasureCache(MEASURES, 0.1d));
+
+        DecisionRule rule = new DecisionRule(new HashSet<>(Arrays.asList("1", "2")), "4", dataset, 10, 10, 0.01d,
+                MEASURES);
+        DecisionRule same = new DecisionRule(new HashSet<>(Arrays.asList("2")), "4", dataset, 10, 10, 0.01d,
+                MEASURES);
+        assertArrayEquals(rule.getVector(), same.getVector(), 0);
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, dataset.getMeasureCaches().size());
+    }
+}
@@ -0,0 +1,108 @@
+package tools.rules;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import tools.data.Dataset;
+import tools.utils.AlternativeUtil;
+import tools.utils.RuleUtil;
+
+public class MeasureKernelTest {
+
+    private static final String[] ALL_MEASURES = new String[] { RuleMeasures.confidence, RuleMeasures.lift,
+            RuleMeasures.cosine, RuleMeasures.phi, RuleMeasures.kruskal, RuleMeasures.yuleQ,
+            RuleMeasures.addedValue, RuleMeasures.certainty, RuleMeasures.support, RuleMeasures.revsupport };
+
+    @Test
+    public void testKernelMatchesRuleMeasures() {
+        Random random = new Random(5);
+        MeasureKernel kernel = MeasureKernel.compile(ALL_MEASURES);
+        double[] measures = new double[ALL_MEASURES.length + 2];
+        for (int i = 0; i < 1000; i++) {
+            int n = 10 + random.nextInt(1000);
+            int freqX = 1 + random.nextInt(n - 1);
+            int freqY = 1 + random.nextInt(n - 1);
+            int freqZ = Math.max(0, freqX + freqY - n) + random.nextInt(Math.min(freqX, freqY) + 1
+                    - Math.max(0, freqX + freqY - n));
+            double smoothCounts = random.nextBoolean() ? 0.01d : 1e-6d;
+
+            double[] expected = new RuleMeasures(freqX, freqY, freqZ, n, smoothCounts).computeMeasures(ALL_MEASURES);
+            kernel.evaluate(n, freqZ, freqX, freqY, smoothCounts, measures, 2);
+            for (int m = 0; m < expected.length; m++) {
+                assertEquals(expected[m], measures[m + 2], 0);
+            }
+            assertArrayEquals(expected, kernel.evaluate(n, freqZ, freqX, freqY, smoothCounts), 0);
+        }
+    }
+
+    @Test
+    public void testBatchMatchesKernel() {
+        Random random = new Random(7);
+        MeasureKernel kernel = MeasureKernel.compile(ALL_MEASURES);
+        int m = kernel.size();
+        int n = 5000;
+        for (int size : new int[] { 0, 1, 300, ContingencyBatch.PARALLEL_THRESHOLD + 1000 }) {
+            int[] freqX = new int[size];
+            int[] freqY = new int[size];
+            int[] freqZ = new int[size];
+            for (int i = 0; i < size; i++) {
+                freqX[i] = 1 + random.nextInt(n - 1);
+                freqY[i] = 1 + random.nextInt(n - 1);
+                freqZ[i] = Math.max(0, freqX[i] + freqY[i] - n) + random.nextInt(Math.min(freqX[i], freqY[i]) + 1
+                        - Math.max(0, freqX[i] + freqY[i] - n));
+            }
+            double[] measures = new ContingencyBatch(freqX, freqY, freqZ).evaluate(kernel, n, 1e-6d);
+            assertEquals(size * m, measures.length);
+            double[] expected = new double[m];
+            for (int i = 0; i < size; i++) {
+                kernel.evaluate(n, freqZ[i], freqX[i], freqY[i], 1e-6d, expected, 0);
+                for (int k = 0; k < m; k++) {
+                    assertEquals(expected[k], measures[i * m + k], 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBatchOfRules() throws IOException {
+        Dataset dataset = new Dataset("dataset_test_file.dat", "src/test/resources/",
+                new HashSet<>(Arrays.asList("4")));
+        List<DecisionRule> rules = new ArrayList<>();
+        rules.add(new DecisionRule(new HashSet<>(Arrays.asList("1", "2")), "4", dataset, 10, 10, 0.01d, ALL_MEASURES));
+        rules.add(new DecisionRule(new HashSet<>(Arrays.asList("2")), "4", dataset, 10, 10, 0.01d, ALL_MEASURES));
+        rules.add(new DecisionRule(new HashSet<>(), "4", dataset, 10, 10, 0.01d, ALL_MEASURES));
+        double[][] expected = new double[rules.size()][];
+        for (int i = 0; i < rules.size(); i++) {
+            expected[i] = RuleUtil.deepCopy(rules.get(i)).getVector();
+        }
+
+        AlternativeUtil.evaluateRules(rules);
+        for (int i = 0; i < rules.size(); i++) {
+            assertArrayEquals(expected[i], rules.get(i).getVector(), 0);
+        }
+    }
+
+    @Test
+    public void testKernelCompiledOnce() {
+        String[] names = new String[] { RuleMeasures.support, RuleMeasures.confidence };
+        MeasureKernel kernel = MeasureKernel.compile(names);
+        assertSame(kernel, MeasureKernel.compile(names));
+        assertEquals(2, MeasureKernel.compile(names.clone()).size());
+    }
+
+    @Test
+    public void testUnknownMeasure() {
+        assertThrows(RuntimeException.class, () -> MeasureKernel.compile(new String[] { "unknown" }));
+    }
+}
@@ -0,0 +1,136 @@
+package tools.rules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import tools.data.Dataset;
+import tools.utils.RuleUtil;
+
+public class RuleKeyTest {
+
+    @Test
+    public void testRulesEqualByItems() throws IOException {
+        Set<String> classItemValues = new HashSet<>(Arrays.asList("4"));
+        Dataset dataset = new Dataset("dataset_test_file.dat", "src/test/resources/", classItemValues);
+        String[] measures = new String[] { "confidence" };
+
+        DecisionRule rule = new DecisionRule(new HashSet<>(Arrays.asList("1", "2")), "4", dataset, 10, 10, 0.01d,
+                measures);
+        DecisionRule same = new DecisionRule(new HashSet<>(Arrays.asList("2", "1")), "4", dataset, 10, 10, 0.01d,
+                measures);
+        DecisionRule other = new DecisionRule(new HashSet<>(Arrays.asList("1", "3")), "4", dataset, 10, 10, 0.01d,
+                measures);
+        other.setFreqX(rule.getFreqX());
+        other.setFreqY(rule.getFreqY());
+        other.setFreqZ(rule.getFreqZ());
+
+        assertEquals(rule, same);
+        assertEquals(rule.hashCode(), same.hashCode());
+        assertNotEquals(rule, other);
+        assertEquals(rule.getKey(), RuleUtil.simpleCopy(rule).getKey());
+        assertEquals(rule, RuleUtil.deepCopy(rule));
+
+        // The key follows the changes of the rule
+        same.addToX("3");
+        assertNotEquals(rule.getKey(), same.getKey());
+        same.removeFromX("3");
+        assertEquals(rule.getKey(), same.getKey());
+        same.setY("");
+        assertNotEquals(rule.getKey(), same.getKey());
+    }
+
+    @Test
+    public void testRulesWithoutDatasetEqualByValues() {
+        DecisionRule rule = DecisionRule.builder().itemsInX(new HashSet<>(Arrays.asList("1", "2"))).Y("4").build();
+        DecisionRule same = DecisionRule.builder().itemsInX(new HashSet<>(Arrays.asList("2", "1"))).Y("4").build();
+        DecisionRule other = DecisionRule.builder().itemsInX(new HashSet<>(Arrays.asList("1"))).Y("4").build();
+
+        assertEquals(rule, same);
+        assertEquals(rule.hashCode(), same.hashCode());
+        assertNotEquals(rule, other);
+        assertEquals(2, new HashSet<>(Arrays.asList(rule, same, other)).size());
+    }
+
+    @Test
+    public void testMapMatchesHashMap() {
+        Random random = new Random(11);
+        RuleKeyMap<Integer> map = new RuleKeyMap<>(4);
+        RuleKeySet set = new RuleKeySet();
+        Map<RuleKey, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            int[] antecedent = new int[1 + random.nextInt(3)];
+            for (int j = 0; j < antecedent.length; j++) {
+                antecedent[j] = random.nextInt(12);
+            }
+            RuleKey key = RuleKey.of(antecedent, random.nextInt(3));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+                set.remove(key);
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+                set.add(key);
+            }
+            assertEquals(expected.size(), map.size());
+            assertEquals(expected.size(), set.size());
+        }
+        for (Map.Entry<RuleKey, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+            assertTrue(set.contains(entry.getKey()));
+        }
+        assertEquals(new HashSet<>(expected.keySet()), new HashSet<>(map.keys()));
+        RuleKey absent = RuleKey.of(new int[] { 100 }, 0);
+        assertNull(map.get(absent));
+        assertFalse(set.add(map.keys().get(0)));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testKeyIgnoresOrderAndDuplicates() {
+        assertEquals(RuleKey.of(new int[] { 3, 1, 3 }, 2), RuleKey.of(new int[] { 1, 3 }, 2));
+        assertNotEquals(RuleKey.of(new int[] { 1, 3 }, 2), RuleKey.of(new int[] { 1, 3 }, 1));
+        assertEquals(2, RuleKey.of(new int[] { 3, 1, 3 }, 2).getAntecedentSize());
+    }
+
+    @Test
+    public void testKeysOrderedByConsequentThenAntecedent() {
+        assertTrue(RuleKey.of(new int[] { 5 }, 1).compareTo(RuleKey.of(new int[] { 1 }, 2)) < 0);
+        assertTrue(RuleKey.of(new int[] { 1, 2 }, 2).compareTo(RuleKey.of(new int[] { 1, 3 }, 2)) < 0);
+        assertTrue(RuleKey.of(new int[] { 1 }, 2).compareTo(RuleKey.of(new int[] { 1, 2 }, 2)) < 0);
+        assertEquals(0, RuleKey.of(new int[] { 2, 1 }, 2).compareTo(RuleKey.of(new int[] { 1, 2 }, 2)));
+    }
+
+    @Test
+    public void testUnknownItemsAreNotEncoded() throws IOException {
+        Set<String> classItemValues = new HashSet<>(Arrays.asList("4"));
+        Dataset dataset = new Dataset("dataset_test_file.dat", "src/test/resources/", classItemValues);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> RuleKey.of(Arrays.asList("1", "unknown"), "4", dataset.getDictionary()));
+        assertThrows(IllegalArgumentException.class,
+                () -> RuleKey.of(Arrays.asList("1"), "unknown", dataset.getDictionary()));
+
+        // Rules with unknown items fall back to their values instead of sharing a key
+        DecisionRule rule = DecisionRule.builder().dataset(dataset).itemsInX(new HashSet<>(Arrays.asList("1", "a")))
+                .Y("4").build();
+        DecisionRule other = DecisionRule.builder().dataset(dataset).itemsInX(new HashSet<>(Arrays.asList("1", "b")))
+                .Y("4").build();
+        assertNotEquals(rule, other);
+        assertThrows(IllegalArgumentException.class, rule::getKey);
+    }
+}
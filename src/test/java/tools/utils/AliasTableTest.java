@@ -0,0 +1,34 @@
+package tools.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class AliasTableTest {
+
+    @Test
+    public void testFrequenciesFollowWeights() {
+        double[] weights = new double[] { 1, 0, 3, 0.5, 5.5 };
+        AliasTable table = new AliasTable(weights);
+        RandomUtil random = new RandomUtil(new SplittableRandom(3));
+        int draws = 200_000;
+        int[] counts = new int[weights.length];
+        for (int i = 0; i < draws; i++) {
+            counts[table.sample(random)]++;
+        }
+        assertEquals(0, counts[1]);
+        for (int i = 0; i < weights.length; i++) {
+            assertEquals(weights[i] / 10, (double) counts[i] / draws, 0.005);
+        }
+    }
+
+    @Test
+    public void testInvalidWeights() {
+        assertThrows(IllegalArgumentException.class, () -> new AliasTable(new double[] { 0, 0 }));
+        assertThrows(IllegalArgumentException.class, () -> new AliasTable(new double[] { 1, -1 }));
+        assertThrows(IllegalArgumentException.class, () -> new AliasTable(new double[] { 1, Double.NaN }));
+    }
+}
@@ -0,0 +1,80 @@
+package tools.utils.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import tools.rules.RuleKey;
+import tools.rules.RuleKeySet;
+
+public class ConvergenceDiagnosticsTest {
+
+    private static double[] autoregressive(Random random, int n, double phi, double mean) {
+        double[] chain = new double[n];
+        double value = 0;
+        for (int i = 0; i < n; i++) {
+            value = phi * value + random.nextGaussian();
+            chain[i] = mean + value;
+        }
+        return chain;
+    }
+
+    @Test
+    public void testIndependentChains() {
+        Random random = new Random(1);
+        List<double[]> chains = Arrays.asList(autoregressive(random, 4000, 0, 0), autoregressive(random, 4000, 0, 0));
+        assertEquals(1, ConvergenceDiagnostics.splitRHat(chains), 0.02);
+        double ess = ConvergenceDiagnostics.effectiveSampleSize(chains.get(0));
+        assertTrue(ess > 3000 && ess < 5500);
+    }
+
+    @Test
+    public void testCorrelatedChain() {
+        // The autocorrelation time of an AR(1) chain is (1 + phi) / (1 - phi)
+        double[] chain = autoregressive(new Random(2), 20_000, 0.9, 0);
+        double ess = ConvergenceDiagnostics.effectiveSampleSize(chain);
+        assertTrue(ess > 20_000 / 19d / 2 && ess < 20_000 / 19d * 2);
+    }
+
+    @Test
+    public void testSeparatedChains() {
+        Random random = new Random(3);
+        List<double[]> chains = Arrays.asList(autoregressive(random, 1000, 0.5, 0),
+                autoregressive(random, 1000, 0.5, 5));
+        assertTrue(ConvergenceDiagnostics.splitRHat(chains) > 1.5);
+        // A trend within a chain is caught by the split
+        double[] trend = new double[1000];
+        for (int i = 0; i < trend.length; i++) {
+            trend[i] = i / 100d + random.nextGaussian();
+        }
+        assertTrue(ConvergenceDiagnostics.splitRHat(Collections.singletonList(trend)) > 1.5);
+    }
+
+    @Test
+    public void testConstantChain() {
+        double[] chain = new double[100];
+        Arrays.fill(chain, 0.5);
+        assertEquals(1, ConvergenceDiagnostics.splitRHat(Collections.singletonList(chain)), 0);
+        assertEquals(100, ConvergenceDiagnostics.effectiveSampleSize(chain), 0);
+        assertTrue(Double.isNaN(ConvergenceDiagnostics.splitRHat(Collections.singletonList(new double[3]))));
+    }
+
+    @Test
+    public void testTopKStability() {
+        RuleKey a = RuleKey.of(new int[] { 1 }, 5);
+        RuleKey b = RuleKey.of(new int[] { 2 }, 5);
+        RuleKey c = RuleKey.of(new int[] { 1, 2 }, 5);
+        RuleKeySet previous = new RuleKeySet();
+        previous.add(a);
+        previous.add(b);
+        assertEquals(0.5, ConvergenceDiagnostics.topKStability(previous, Arrays.asList(a, c)), 0);
+        assertEquals(1, ConvergenceDiagnostics.topKStability(previous, Arrays.asList(b, a)), 0);
+        assertEquals(1, ConvergenceDiagnostics.topKStability(previous, Collections.emptyList()), 0);
+    }
+}